@@ -20,7 +20,9 @@
 package org.sonar.plugins.resharper;
 
 import com.google.common.collect.ImmutableList;
-import org.sonar.api.rules.XMLRuleParser;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.config.Settings;
 
 import java.util.List;
 
@@ -34,21 +36,32 @@ public class CSharpReSharperProvider {
   public static List extensions() {
     return ImmutableList.of(
       CSharpReSharperRuleRepository.class,
-      CSharpReSharperSensor.class);
+      CSharpReSharperSensor.class,
+      CSharpReSharperEarlyLauncher.class);
   }
 
   public static class CSharpReSharperRuleRepository extends ReSharperRuleRepository {
 
-    public CSharpReSharperRuleRepository(XMLRuleParser xmlRuleParser) {
-      super(RESHARPER_CONF, xmlRuleParser);
+    public CSharpReSharperRuleRepository(ReSharperRuleCatalog ruleCatalog) {
+      super(RESHARPER_CONF, ruleCatalog);
     }
 
   }
 
   public static class CSharpReSharperSensor extends ReSharperSensor {
 
-    public CSharpReSharperSensor(ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer) {
-      super(RESHARPER_CONF, executor, parser, writer);
+    public CSharpReSharperSensor(ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer, ReSharperReportCache cache,
+      ReSharperShardDispatcher dispatcher, CSharpReSharperEarlyLauncher launcher) {
+      super(RESHARPER_CONF, executor, parser, writer, cache, dispatcher, launcher);
+    }
+
+  }
+
+  public static class CSharpReSharperEarlyLauncher extends ReSharperEarlyLauncher {
+
+    public CSharpReSharperEarlyLauncher(Settings settings, FileSystem fileSystem, ActiveRules activeRules, ReSharperExecutor executor,
+      ReSharperDotSettingsWriter writer, ReSharperReportCache cache, ReSharperShardDispatcher dispatcher) {
+      super(RESHARPER_CONF, settings, fileSystem, activeRules, executor, writer, cache, dispatcher);
     }
 
   }
@@ -0,0 +1,128 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Throwables;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fingerprints of the issues of an accepted analysis, against which later analyses only save new issues.
+ * <p>
+ * An issue is identified by its rule, the relative path of its file and the hash of the content of its line,
+ * so that it is still recognized when lines are inserted above it. Issues of the same rule on identical lines of the same file,
+ * such as two empty catch blocks, are told apart by their occurrence, counted in the order of the analysis: the first one keeps
+ * the fingerprint of its line. The fingerprints are stored as a sorted array
+ * of longs, 8 bytes per issue, after a header made of the magic "RSBL", a format version and the number of fingerprints.
+ */
+public class ReSharperBaseline {
+
+  private static final int MAGIC = 0x5253424C;
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final long[] fingerprints;
+
+  private ReSharperBaseline(long[] fingerprints) {
+    this.fingerprints = fingerprints;
+  }
+
+  public static long fingerprint(String ruleKey, String relativePath, long lineHash) {
+    return new ReSharperFingerprint().add(ruleKey).add(relativePath).add(lineHash).value();
+  }
+
+  public static long fingerprint(long lineFingerprint, int occurrence) {
+    return occurrence == 0 ? lineFingerprint : new ReSharperFingerprint().add(lineFingerprint).add(occurrence).value();
+  }
+
+  public boolean contains(long fingerprint) {
+    return Arrays.binarySearch(fingerprints, fingerprint) >= 0;
+  }
+
+  public int size() {
+    return fingerprints.length;
+  }
+
+  public static ReSharperBaseline load(File file) {
+    DataInputStream is = null;
+    try {
+      is = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+      if (is.readInt() != MAGIC) {
+        throw new IllegalStateException("Not a ReSharper baseline file: " + file.getAbsolutePath());
+      }
+      int version = is.readInt();
+      if (version != VERSION) {
+        throw new IllegalStateException("Unsupported version " + version + " of the ReSharper baseline file: " + file.getAbsolutePath());
+      }
+
+      long[] fingerprints = new long[is.readInt()];
+      for (int i = 0; i < fingerprints.length; i++) {
+        fingerprints[i] = is.readLong();
+      }
+      return new ReSharperBaseline(fingerprints);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  /**
+   * Replaces the baseline file, only once the new one is completely written.
+   */
+  public static void write(File file, ReSharperFingerprintSet fingerprints) {
+    File partial = null;
+    try {
+      FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+      partial = File.createTempFile(file.getName(), ".part", file.getAbsoluteFile().getParentFile());
+      DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial), BUFFER_SIZE));
+      try {
+        long[] sorted = fingerprints.toSortedArray();
+        os.writeInt(MAGIC);
+        os.writeInt(VERSION);
+        os.writeInt(sorted.length);
+        for (long fingerprint : sorted) {
+          os.writeLong(fingerprint);
+        }
+      } finally {
+        os.close();
+      }
+
+      FileUtils.deleteQuietly(file);
+      if (!partial.renameTo(file)) {
+        throw new IOException("Unable to rename " + partial.getAbsolutePath() + " to " + file.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(partial);
+      throw Throwables.propagate(e);
+    }
+  }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Content hash of everything that can influence an InspectCode report:
+ * the sources and project files under the solution directory, the DotSettings file, the project name and the tool version.
+ * <p>
+ * The tool version is approximated by the size and modification date of the InspectCode executable.
+ * <p>
+ * Hashing the sources is by far the most expensive part, so it is done once per solution with {@link #sourceDigest}, and
+ * the digest is then shared by the keys of all the projects and rule groups of the solution. The directories given as
+ * excluded, such as the cache and working directories, are not hashed, as they change from one analysis to the next.
+ */
+public class ReSharperCacheKey {
+
+  private static final Set<String> IGNORED_DIRECTORIES = ImmutableSet.of("bin", "obj", "packages", ".git", ".svn", ".hg", ".sonar");
+
+  private final MessageDigest digest;
+  private final byte[] buffer = new byte[64 * 1024];
+
+  private ReSharperCacheKey() {
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static String compute(File inspectCode, String project, File solutionFile, File dotSettingsFile) throws IOException {
+    return compute(inspectCode, project, solutionFile, dotSettingsFile, sourceDigest(solutionFile, Collections.<File>emptyList()));
+  }
+
+  public static String compute(File inspectCode, String project, File solutionFile, File dotSettingsFile, String sourceDigest) throws IOException {
+    ReSharperCacheKey key = new ReSharperCacheKey();
+
+    key.update("tool", inspectCode.getName() + ':' + inspectCode.length() + ':' + inspectCode.lastModified());
+    key.update("project", project);
+    key.update("solution", solutionFile.getName());
+    key.updateFile("settings", dotSettingsFile);
+    key.update("sources", sourceDigest);
+
+    return key.hex();
+  }
+
+  /**
+   * Hash of the files under the directory of the solution, skipping the excluded directories and files.
+   */
+  public static String sourceDigest(File solutionFile, Collection<File> excluded) throws IOException {
+    ReSharperCacheKey key = new ReSharperCacheKey();
+    Set<String> excludedPaths = Sets.newHashSet();
+    for (File file : excluded) {
+      excludedPaths.add(file.getCanonicalPath());
+    }
+
+    File solutionDir = solutionFile.getAbsoluteFile().getParentFile();
+    if (solutionDir != null && solutionDir.isDirectory()) {
+      key.updateDirectory(solutionDir, "", excludedPaths);
+    }
+
+    return key.hex();
+  }
+
+  private void updateDirectory(File dir, String relativePath, Set<String> excludedPaths) throws IOException {
+    File[] children = dir.listFiles();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+
+    for (File child : children) {
+      String childPath = relativePath + '/' + child.getName();
+      if (!excludedPaths.isEmpty() && excludedPaths.contains(child.getCanonicalPath())) {
+        continue;
+      }
+      if (child.isDirectory()) {
+        if (!isIgnored(child.getName().toLowerCase(Locale.ENGLISH))) {
+          updateDirectory(child, childPath, excludedPaths);
+        }
+      } else {
+        updateFile(childPath, child);
+      }
+    }
+  }
+
+  private static boolean isIgnored(String directoryName) {
+    return IGNORED_DIRECTORIES.contains(directoryName) || directoryName.startsWith("_resharper");
+  }
+
+  private void update(String name, String value) {
+    digest.update(name.getBytes(Charsets.UTF_8));
+    digest.update((byte) 0);
+    digest.update(value.getBytes(Charsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private void updateFile(String name, File file) throws IOException {
+    update(name, Long.toString(file.length()));
+    if (!file.isFile()) {
+      return;
+    }
+
+    InputStream is = new FileInputStream(file);
+    try {
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  private String hex() {
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compressed reports are detected by their magic bytes, not by their file extension.
+ */
+public class ReSharperCompression {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final byte[] GZIP_MAGIC = {(byte) 0x1F, (byte) 0x8B};
+  private static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD};
+
+  private ReSharperCompression() {
+  }
+
+  public static boolean isCompressed(File file) throws IOException {
+    byte[] header = header(file);
+    return startsWith(header, GZIP_MAGIC) || startsWith(header, ZSTD_MAGIC);
+  }
+
+  /**
+   * Opens the file, transparently decompressing it if needed.
+   */
+  public static InputStream open(File file) throws IOException {
+    byte[] header = header(file);
+    if (startsWith(header, ZSTD_MAGIC)) {
+      throw new IllegalStateException("Zstandard compressed reports are not supported, use gzip instead: " + file.getAbsolutePath());
+    }
+
+    InputStream is = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+    if (startsWith(header, GZIP_MAGIC)) {
+      try {
+        return new GZIPInputStream(is, BUFFER_SIZE);
+      } catch (IOException e) {
+        IOUtils.closeQuietly(is);
+        throw e;
+      }
+    }
+    return is;
+  }
+
+  public static void gzip(File source, File target) throws IOException {
+    InputStream is = new FileInputStream(source);
+    try {
+      gzip(is, target);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  public static void gzip(InputStream is, File target) throws IOException {
+    OutputStream os = new GZIPOutputStream(new FileOutputStream(target), BUFFER_SIZE);
+    try {
+      ByteStreams.copy(is, os);
+    } finally {
+      os.close();
+    }
+  }
+
+  private static byte[] header(File file) throws IOException {
+    InputStream is = new FileInputStream(file);
+    try {
+      byte[] header = new byte[ZSTD_MAGIC.length];
+      int read = ByteStreams.read(is, header, 0, header.length);
+      return read == header.length ? header : Arrays.copyOf(header, read);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  private static boolean startsWith(byte[] header, byte[] magic) {
+    if (header.length < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if (header[i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -21,32 +21,183 @@ package org.sonar.plugins.resharper;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
+import com.google.common.io.LineProcessor;
 import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
 
+import javax.annotation.Nullable;
+
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * The DotSettings file is only rewritten when the enabled rules change, so that its modification time, which
+ * inspectcode's own caches depend on, is kept from one analysis to the next.
+ * Both the rules and the existing file are fingerprinted line by line, ignoring line separators.
+ * The rules are written sorted by key, so that the file, and the cache keys it is part of, do not depend on their order.
+ * <p>
+ * inspectcode runs every inspection at its default severity unless told otherwise. When the rules are split into groups,
+ * or profiled, each run must only spend time on its own rules, so {@link #writeExclusive(List, File)} also disables all
+ * the other known rules. A single run keeps the default inspections as before.
+ */
 public class ReSharperDotSettingsWriter implements BatchComponent {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperDotSettingsWriter.class);
+  private static final Pattern RULE_KEY_PATTERN = Pattern.compile("/InspectionSeverities/=([^/]++)/@EntryIndexedValue\">WARNING<");
+
+  private List<String> knownRuleKeys;
+
+  public ReSharperDotSettingsWriter() {
+    this(null);
+  }
+
+  /**
+   * Null stands for the rules of the plugin, only read on the first write.
+   */
+  ReSharperDotSettingsWriter(@Nullable List<String> knownRuleKeys) {
+    this.knownRuleKeys = knownRuleKeys == null ? null : Ordering.natural().sortedCopy(knownRuleKeys);
+  }
+
   public void write(List<String> ruleKeys, File file) {
-    StringBuilder sb = new StringBuilder();
+    write(Ordering.natural().sortedCopy(ruleKeys), Collections.<String>emptyList(), file);
+  }
+
+  /**
+   * Same as {@link #write(List, File)}, but also disables all the other known rules.
+   */
+  public void writeExclusive(List<String> unsortedRuleKeys, File file) {
+    List<String> ruleKeys = Ordering.natural().sortedCopy(unsortedRuleKeys);
+    write(ruleKeys, disabledRuleKeys(ruleKeys), file);
+  }
+
+  private static void write(List<String> ruleKeys, List<String> disabledRuleKeys, File file) {
+    try {
+      if (file.isFile() && fingerprint(file) == fingerprint(ruleKeys, disabledRuleKeys)) {
+        LOG.debug("The ReSharper settings " + file.getAbsolutePath() + " are up to date");
+        return;
+      }
+
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+      try {
+        writeLines(ruleKeys, disabledRuleKeys, new LineWriter() {
+          @Override
+          public void line(String line) throws IOException {
+            writer.write(line);
+            writer.write(IOUtils.LINE_SEPARATOR);
+          }
+        });
+      } finally {
+        writer.close();
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private List<String> disabledRuleKeys(List<String> ruleKeys) {
+    Set<String> enabled = Sets.newHashSet(ruleKeys);
+    List<String> disabled = Lists.newArrayList();
+    for (String ruleKey : knownRuleKeys()) {
+      if (!enabled.contains(ruleKey)) {
+        disabled.add(ruleKey);
+      }
+    }
+    return disabled;
+  }
+
+  private synchronized List<String> knownRuleKeys() {
+    if (knownRuleKeys == null) {
+      knownRuleKeys = Ordering.natural().sortedCopy(ReSharperRuleCatalog.ruleKeys());
+    }
+    return knownRuleKeys;
+  }
+
+  private static long fingerprint(List<String> ruleKeys, List<String> disabledRuleKeys) throws IOException {
+    final ReSharperFingerprint fingerprint = new ReSharperFingerprint();
+    writeLines(ruleKeys, disabledRuleKeys, new LineWriter() {
+      @Override
+      public void line(String line) {
+        fingerprint.add(line);
+      }
+    });
+    return fingerprint.value();
+  }
+
+  private static long fingerprint(File file) throws IOException {
+    return Files.readLines(file, Charsets.UTF_8, new LineProcessor<Long>() {
+      private final ReSharperFingerprint fingerprint = new ReSharperFingerprint();
+
+      @Override
+      public boolean processLine(String line) {
+        fingerprint.add(line);
+        return true;
+      }
+
+      @Override
+      public Long getResult() {
+        return fingerprint.value();
+      }
+    });
+  }
 
-    sb.append("<wpf:ResourceDictionary xml:space=\"preserve\" xmlns:x=\"http://schemas.microsoft.com/winfx/2006/xaml\"");
-    sb.append(" xmlns:s=\"clr-namespace:System;assembly=mscorlib\" xmlns:ss=\"urn:shemas-jetbrains-com:settings-storage-xaml\"");
-    appendLine(sb, " xmlns:wpf=\"http://schemas.microsoft.com/winfx/2006/xaml/presentation\">");
+  private static void writeLines(List<String> ruleKeys, List<String> disabledRuleKeys, LineWriter writer) throws IOException {
+    writer.line("<wpf:ResourceDictionary xml:space=\"preserve\" xmlns:x=\"http://schemas.microsoft.com/winfx/2006/xaml\""
+      + " xmlns:s=\"clr-namespace:System;assembly=mscorlib\" xmlns:ss=\"urn:shemas-jetbrains-com:settings-storage-xaml\""
+      + " xmlns:wpf=\"http://schemas.microsoft.com/winfx/2006/xaml/presentation\">");
 
     for (String ruleKey : ruleKeys) {
-      String escapedRuleKey = escapeRuleKey(ruleKey);
-      appendLine(sb, "  <s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=" + escapedRuleKey + "/@EntryIndexedValue\">WARNING</s:String>");
+      writer.line(severityLine(ruleKey, "WARNING"));
+    }
+    for (String ruleKey : disabledRuleKeys) {
+      writer.line(severityLine(ruleKey, "DO_NOT_SHOW"));
     }
 
-    appendLine(sb, "</wpf:ResourceDictionary>");
+    writer.line("</wpf:ResourceDictionary>");
+  }
 
+  private static String severityLine(String ruleKey, String severity) {
+    return "  <s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=" + escapeRuleKey(ruleKey) + "/@EntryIndexedValue\">"
+      + severity + "</s:String>";
+  }
+
+  /**
+   * Reads back the enabled rule keys of a file written by {@link #write(List, File)}, in the order of the file.
+   */
+  public static List<String> ruleKeys(File file) {
     try {
-      Files.write(sb.toString().getBytes(Charsets.UTF_8), file);
+      return Files.readLines(file, Charsets.UTF_8, new LineProcessor<List<String>>() {
+        private final ImmutableList.Builder<String> builder = ImmutableList.builder();
+
+        @Override
+        public boolean processLine(String line) {
+          Matcher matcher = RULE_KEY_PATTERN.matcher(line);
+          if (matcher.find()) {
+            builder.add(unescapeRuleKey(matcher.group(1)));
+          }
+          return true;
+        }
+
+        @Override
+        public List<String> getResult() {
+          return builder.build();
+        }
+      });
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -56,9 +207,14 @@ public class ReSharperDotSettingsWriter implements BatchComponent {
     return ruleKey.replace(".", "_002E").replace(":", "_003A");
   }
 
-  private static void appendLine(StringBuilder sb, String s) {
-    sb.append(s);
-    sb.append(IOUtils.LINE_SEPARATOR);
+  private static String unescapeRuleKey(String escapedRuleKey) {
+    return escapedRuleKey.replace("_002E", ".").replace("_003A", ":");
+  }
+
+  private interface LineWriter {
+
+    void line(String line) throws IOException;
+
   }
 
 }
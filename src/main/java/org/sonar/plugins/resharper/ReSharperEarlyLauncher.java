@@ -0,0 +1,134 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Speculatively starts ReSharper as soon as the module container starts, so that it runs while the other sensors do.
+ * The sensor then only waits for its result. The run is wasted if the sensor does not execute, e.g. when the module
+ * has no file of the language, so this is opt-in.
+ */
+public class ReSharperEarlyLauncher implements BatchComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperEarlyLauncher.class);
+
+  private final ReSharperConfiguration reSharperConf;
+  private final Settings settings;
+  private final FileSystem fileSystem;
+  private final ActiveRules activeRules;
+  private final ReSharperInspection inspection;
+
+  private ExecutorService executorService;
+  private Future<ReSharperInspection.Result> result;
+
+  public ReSharperEarlyLauncher(ReSharperConfiguration reSharperConf, Settings settings, FileSystem fileSystem, ActiveRules activeRules,
+    ReSharperExecutor executor, ReSharperDotSettingsWriter writer, ReSharperReportCache cache, ReSharperShardDispatcher dispatcher) {
+    this.reSharperConf = reSharperConf;
+    this.settings = settings;
+    this.fileSystem = fileSystem;
+    this.activeRules = activeRules;
+    this.inspection = new ReSharperInspection(executor, writer, cache, dispatcher);
+  }
+
+  public void start() {
+    if (!settings.getBoolean(ReSharperPlugin.EARLY_START_PROPERTY_KEY)
+      || settings.hasKey(ReSharperPlugin.REPORT_PATH_PROPERTY_KEY)
+      || !settings.hasKey(ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY)
+      || !settings.hasKey(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY)
+      || activeRules.findByRepository(reSharperConf.repositoryKey()).isEmpty()) {
+      return;
+    }
+
+    // Both languages may be started at once, so each one gets its own directory
+    final File workDir = new File(fileSystem.workDir(), "resharper-" + reSharperConf.languageKey());
+    try {
+      FileUtils.forceMkdir(workDir);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+
+    LOG.info("Starting ReSharper early for the language \"" + reSharperConf.languageKey() + "\"");
+    executorService = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("resharper-early-start-" + reSharperConf.languageKey()).setDaemon(true).build());
+    result = executorService.submit(new Callable<ReSharperInspection.Result>() {
+
+      @Override
+      public ReSharperInspection.Result call() {
+        return inspection.run(settings, ReSharperInspection.enabledRuleKeys(reSharperConf, activeRules), fileSystem.baseDir(), workDir);
+      }
+
+    });
+  }
+
+  /**
+   * Waits for the run started early, if any. Its failure, if any, is rethrown.
+   */
+  @Nullable
+  public ReSharperInspection.Result awaitResult() {
+    if (result == null) {
+      return null;
+    }
+
+    Future<ReSharperInspection.Result> pending = result;
+    result = null;
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for ReSharper", e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  public void stop() {
+    if (executorService == null) {
+      return;
+    }
+
+    if (result != null) {
+      LOG.info("Cancelling the unused ReSharper run for the language \"" + reSharperConf.languageKey() + "\"");
+      result.cancel(true);
+      result = null;
+    }
+    executorService.shutdownNow();
+    executorService = null;
+  }
+
+}
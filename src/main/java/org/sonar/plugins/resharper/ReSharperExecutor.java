@@ -19,38 +19,196 @@
  */
 package org.sonar.plugins.resharper;
 
+import com.google.common.collect.Lists;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
+import org.sonar.api.config.Settings;
 import org.sonar.api.utils.command.Command;
 import org.sonar.api.utils.command.CommandException;
-import org.sonar.api.utils.command.CommandExecutor;
 
+import javax.annotation.Nullable;
+
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Runs inspectcode, logging its output and progress, and kills it once the timeout is reached,
+ * or earlier when the no-progress timeout is set and inspectcode stayed silent that long.
+ */
 public class ReSharperExecutor implements BatchComponent {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperExecutor.class);
+
   private static final String EXECUTABLE = "inspectcode.exe";
+  private static final long POLL_MILLIS = 100;
+  private static final long PROGRESS_LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long OUTPUT_DRAIN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+  private static final long SLOT_POLL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+
+  private final Settings settings;
+
+  public ReSharperExecutor(Settings settings) {
+    this.settings = settings;
+  }
 
   public void execute(String executable, String project, String solutionFile, File rulesetFile, File reportFile, int timeout) {
+    Command cmd = command(executable, project, solutionFile, rulesetFile, reportFile);
+
+    ReSharperHostLimiter.Lock slot = acquireHostSlot();
+    try {
+      execute(cmd, TimeUnit.MINUTES.toMillis(timeout), TimeUnit.MINUTES.toMillis(settings.getInt(ReSharperPlugin.STALL_TIMEOUT_MINUTES_PROPERTY_KEY)));
+    } finally {
+      if (slot != null) {
+        slot.release();
+      }
+    }
+  }
+
+  /**
+   * The report format is only passed when set, as older versions of inspectcode do not support the argument.
+   * The format of the report is detected when it is parsed, whatever the name of the report file.
+   */
+  Command command(String executable, String project, String solutionFile, File rulesetFile, File reportFile) {
     Command cmd = Command.create(getExecutable(executable))
-      .addArgument("/output=" + reportFile.getAbsolutePath())
+      .addArgument("/output=" + reportFile.getAbsolutePath());
+    String format = settings.getString(ReSharperPlugin.INSPECTCODE_FORMAT_PROPERTY_KEY);
+    if (format != null && !format.isEmpty()) {
+      cmd.addArgument("/format=" + format);
+    }
+    return cmd
       .addArgument("/no-swea")
       .addArgument("/project=" + project)
       .addArgument("/profile=" + rulesetFile.getAbsolutePath())
       .addArgument("/no-buildin-settings")
       .addArgument(solutionFile);
+  }
+
+  /**
+   * Returns null when the runs of this host are not limited.
+   */
+  @Nullable
+  private ReSharperHostLimiter.Lock acquireHostSlot() {
+    String directory = settings.getString(ReSharperPlugin.HOST_SLOTS_DIRECTORY_PROPERTY_KEY);
+    if (directory == null || directory.isEmpty()) {
+      return null;
+    }
+    int slots = Math.max(1, settings.getInt(ReSharperPlugin.HOST_SLOTS_PROPERTY_KEY));
+    return new ReSharperHostLimiter(new File(directory), slots, SLOT_POLL_MILLIS).acquire();
+  }
+
+  /**
+   * A stall timeout of 0 disables the no-progress watchdog.
+   */
+  void execute(Command cmd, long timeoutMillis, long stallTimeoutMillis) {
+    LOG.info("Executing command: " + cmd.toCommandLine());
+    long startMillis = System.currentTimeMillis();
+    ReSharperProgress progress = new ReSharperProgress(startMillis);
+
+    Process process;
+    try {
+      process = processBuilder(cmd).start();
+    } catch (IOException e) {
+      throw new CommandException(cmd, e);
+    }
+
+    Thread outputReader = startOutputReader(process, progress);
+    try {
+      int exitCode = waitFor(cmd, process, progress, startMillis, timeoutMillis, stallTimeoutMillis);
+      LOG.info("ReSharper " + progress.summary(System.currentTimeMillis()));
+      if (exitCode != 0) {
+        throw new CommandException(cmd, "ReSharper execution failed with exit code: " + exitCode, null);
+      }
+    } finally {
+      process.destroy();
+      try {
+        outputReader.join(OUTPUT_DRAIN_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      IOUtils.closeQuietly(process.getOutputStream());
+    }
+  }
+
+  private static ProcessBuilder processBuilder(Command cmd) {
+    List<String> commandLine = Lists.newArrayList(cmd.getExecutable());
+    commandLine.addAll(cmd.getArguments());
+
+    ProcessBuilder processBuilder = new ProcessBuilder(commandLine).redirectErrorStream(true);
+    processBuilder.environment().putAll(cmd.getEnvironmentVariables());
+    if (cmd.getDirectory() != null) {
+      processBuilder.directory(cmd.getDirectory());
+    }
+    return processBuilder;
+  }
+
+  /**
+   * The output is read on a separate thread, so that a full pipe never blocks inspectcode.
+   */
+  private static Thread startOutputReader(final Process process, final ReSharperProgress progress) {
+    Thread thread = new Thread("resharper-output") {
+      @Override
+      public void run() {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            LOG.info(line);
+            progress.consumeLine(line);
+          }
+        } catch (IOException e) {
+          LOG.debug("Stopped reading the output of ReSharper", e);
+        } finally {
+          IOUtils.closeQuietly(reader);
+        }
+      }
+    };
+    thread.setDaemon(true);
+    thread.start();
+    return thread;
+  }
+
+  private static int waitFor(Command cmd, Process process, ReSharperProgress progress, long startMillis, long timeoutMillis, long stallTimeoutMillis) {
+    long nextLogMillis = startMillis + PROGRESS_LOG_INTERVAL_MILLIS;
+    while (true) {
+      try {
+        return process.exitValue();
+      } catch (IllegalThreadStateException e) {
+        // Still running
+      }
 
-    int exitCode = CommandExecutor.create().execute(cmd, TimeUnit.MINUTES.toMillis(timeout));
+      long nowMillis = System.currentTimeMillis();
+      if (nowMillis - startMillis >= timeoutMillis) {
+        throw new CommandException(cmd, "ReSharper timed out after " + TimeUnit.MILLISECONDS.toSeconds(timeoutMillis) + " s, with "
+          + progress.summary(nowMillis), null);
+      }
+      if (stallTimeoutMillis > 0 && progress.idleMillis(nowMillis) >= stallTimeoutMillis) {
+        throw new CommandException(cmd, "ReSharper made no progress for " + TimeUnit.MILLISECONDS.toSeconds(stallTimeoutMillis) + " s and was killed, with "
+          + progress.summary(nowMillis), null);
+      }
+      if (nowMillis >= nextLogMillis) {
+        LOG.info("ReSharper progress: " + progress.summary(nowMillis));
+        nextLogMillis += PROGRESS_LOG_INTERVAL_MILLIS;
+      }
 
-    if (exitCode != 0) {
-      throw new CommandException(cmd, "ReSharper execution failed with exit code: " + exitCode, null);
+      try {
+        Thread.sleep(POLL_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CommandException(cmd, "Interrupted while waiting for ReSharper", e);
+      }
     }
   }
 
   /**
    * Handles deprecated property: "installDirectory", which gives the path to the directory only.
    */
-  private static String getExecutable(String path) {
+  static String getExecutable(String path) {
     return path.endsWith(EXECUTABLE) ? path : new File(path, EXECUTABLE).getAbsolutePath();
   }
 
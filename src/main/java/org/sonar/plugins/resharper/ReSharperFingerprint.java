@@ -0,0 +1,60 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+/**
+ * 64-bit fingerprints: FNV-1a over the fields, followed by the MurmurHash3 finalizer to spread the bits.
+ */
+public class ReSharperFingerprint {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private long hash = FNV_OFFSET_BASIS;
+
+  /**
+   * Each string is followed by a separator, so that ("ab", "c") and ("a", "bc") differ.
+   */
+  public ReSharperFingerprint add(String s) {
+    for (int i = 0; i < s.length(); i++) {
+      hash = (hash ^ s.charAt(i)) * FNV_PRIME;
+    }
+    hash = (hash ^ 0xFFFF) * FNV_PRIME;
+    return this;
+  }
+
+  public ReSharperFingerprint add(long value) {
+    for (int shift = 0; shift < 64; shift += 16) {
+      hash = (hash ^ ((value >>> shift) & 0xFFFF)) * FNV_PRIME;
+    }
+    return this;
+  }
+
+  public long value() {
+    long h = hash;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import java.util.Arrays;
+
+/**
+ * Set of 64-bit fingerprints, stored in an open-addressing table of primitive longs.
+ */
+public class ReSharperFingerprintSet {
+
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final long EMPTY = 0L;
+
+  private long[] table = new long[INITIAL_CAPACITY];
+  private int size;
+  private boolean containsEmpty;
+
+  /**
+   * Returns true if the fingerprint was not already in the set.
+   */
+  public boolean add(long fingerprint) {
+    if (fingerprint == EMPTY) {
+      boolean added = !containsEmpty;
+      containsEmpty = true;
+      return added;
+    }
+
+    if (insert(table, fingerprint)) {
+      size++;
+      if (size * 2 > table.length) {
+        grow();
+      }
+      return true;
+    }
+    return false;
+  }
+
+  public boolean contains(long fingerprint) {
+    if (fingerprint == EMPTY) {
+      return containsEmpty;
+    }
+
+    int mask = table.length - 1;
+    for (int i = index(fingerprint, mask); table[i] != EMPTY; i = (i + 1) & mask) {
+      if (table[i] == fingerprint) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public int size() {
+    return containsEmpty ? (size + 1) : size;
+  }
+
+  /**
+   * The fingerprints, in ascending order.
+   */
+  public long[] toSortedArray() {
+    long[] result = new long[size()];
+    int i = 0;
+    if (containsEmpty) {
+      result[i++] = EMPTY;
+    }
+    for (long fingerprint : table) {
+      if (fingerprint != EMPTY) {
+        result[i++] = fingerprint;
+      }
+    }
+    Arrays.sort(result);
+    return result;
+  }
+
+  private void grow() {
+    long[] newTable = new long[table.length * 2];
+    for (long fingerprint : table) {
+      if (fingerprint != EMPTY) {
+        insert(newTable, fingerprint);
+      }
+    }
+    table = newTable;
+  }
+
+  private static boolean insert(long[] table, long fingerprint) {
+    int mask = table.length - 1;
+    int i = index(fingerprint, mask);
+    while (table[i] != EMPTY) {
+      if (table[i] == fingerprint) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    table[i] = fingerprint;
+    return true;
+  }
+
+  private static int index(long fingerprint, int mask) {
+    return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+  }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Limits the number of inspectcode processes run at once on a host, by all the analyses sharing a directory.
+ * <p>
+ * Each running process holds the file lock of one of the slot files of the directory. Waiting analyses hold the lock
+ * of a ticket file named after the time they started waiting, and only the ones whose ticket is among the oldest
+ * compete for a slot, so that they are served in order. The operating system releases the locks of crashed analyses,
+ * whose tickets are then deleted by the others.
+ */
+public class ReSharperHostLimiter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperHostLimiter.class);
+
+  private static final String TICKET_PREFIX = "ticket-";
+  private static final Random RANDOM = new Random();
+
+  private final File directory;
+  private final int slots;
+  private final long pollMillis;
+
+  public ReSharperHostLimiter(File directory, int slots, long pollMillis) {
+    this.directory = directory;
+    this.slots = slots;
+    this.pollMillis = pollMillis;
+  }
+
+  /**
+   * Blocks until a slot is free, and this analysis is among the first ones waiting.
+   */
+  public Lock acquire() {
+    long startMillis = System.currentTimeMillis();
+    Lock ticket = null;
+    try {
+      FileUtils.forceMkdir(directory);
+      ticket = ticket(startMillis);
+
+      boolean logged = false;
+      while (true) {
+        int ahead = liveTicketsBefore(ticket.file.getName());
+        if (ahead < slots) {
+          Lock slot = tryAcquireSlot();
+          if (slot != null) {
+            long waitedMillis = System.currentTimeMillis() - startMillis;
+            if (logged) {
+              LOG.info("Waited " + (waitedMillis / 1000) + " s for one of the " + slots + " inspectcode slots of " + directory.getAbsolutePath());
+            }
+            return slot;
+          }
+        }
+        if (!logged) {
+          LOG.info("Waiting for one of the " + slots + " inspectcode slots of " + directory.getAbsolutePath() + ", " + ahead + " analyses ahead");
+          logged = true;
+        }
+        Thread.sleep(pollMillis);
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for an inspectcode slot", e);
+    } finally {
+      if (ticket != null) {
+        ticket.release();
+        FileUtils.deleteQuietly(ticket.file);
+      }
+    }
+  }
+
+  /**
+   * The zero-padded time makes the names sort in the order of arrival, and the random suffix makes them unique.
+   */
+  private Lock ticket(long nowMillis) throws IOException {
+    String name = String.format("%s%015d-%08x.lock", TICKET_PREFIX, nowMillis, RANDOM.nextInt());
+    Lock ticket = tryLock(new File(directory, name));
+    if (ticket == null) {
+      throw new IllegalStateException("Unable to lock the new ticket " + name + " in " + directory.getAbsolutePath());
+    }
+    return ticket;
+  }
+
+  private int liveTicketsBefore(String ticketName) throws IOException {
+    String[] names = directory.list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith(TICKET_PREFIX);
+      }
+    });
+    if (names == null) {
+      return 0;
+    }
+    Arrays.sort(names);
+
+    List<String> stale = Lists.newArrayList();
+    int ahead = 0;
+    for (String name : names) {
+      if (name.compareTo(ticketName) >= 0) {
+        break;
+      }
+      Lock lock = tryLock(new File(directory, name));
+      if (lock == null) {
+        ahead++;
+      } else {
+        lock.release();
+        stale.add(name);
+      }
+    }
+
+    for (String name : stale) {
+      LOG.debug("Deleting the ticket " + name + " of an analysis which stopped waiting");
+      FileUtils.deleteQuietly(new File(directory, name));
+    }
+    return ahead;
+  }
+
+  @Nullable
+  private Lock tryAcquireSlot() throws IOException {
+    for (int i = 0; i < slots; i++) {
+      Lock slot = tryLock(new File(directory, "slot-" + i + ".lock"));
+      if (slot != null) {
+        return slot;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns null when the file is locked, by another process or by another thread of this one.
+   */
+  @Nullable
+  private static Lock tryLock(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+    try {
+      FileLock lock = randomAccessFile.getChannel().tryLock();
+      if (lock != null) {
+        return new Lock(file, randomAccessFile, lock);
+      }
+    } catch (OverlappingFileLockException e) {
+      // Locked by another thread of this process
+    }
+    IOUtils.closeQuietly(randomAccessFile);
+    return null;
+  }
+
+  public static class Lock {
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileLock lock;
+
+    private Lock(File file, RandomAccessFile randomAccessFile, FileLock lock) {
+      this.file = file;
+      this.randomAccessFile = randomAccessFile;
+      this.lock = lock;
+    }
+
+    public void release() {
+      try {
+        lock.release();
+      } catch (IOException e) {
+        LOG.debug("Unable to release the lock of " + file.getAbsolutePath(), e);
+      } finally {
+        IOUtils.closeQuietly(randomAccessFile);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,490 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.batch.rule.ActiveRule;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Produces the InspectCode reports of a language, either from the cache or by running ReSharper.
+ */
+public class ReSharperInspection {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperInspection.class);
+
+  static final String DOT_SETTINGS_FILE_NAME = "resharper-sonarqube.DotSettings";
+
+  private final ReSharperExecutor executor;
+  private final ReSharperDotSettingsWriter writer;
+  private final ReSharperReportCache cache;
+  private final ReSharperShardDispatcher dispatcher;
+
+  public ReSharperInspection(ReSharperExecutor executor, ReSharperDotSettingsWriter writer, ReSharperReportCache cache, ReSharperShardDispatcher dispatcher) {
+    this.executor = executor;
+    this.writer = writer;
+    this.cache = cache;
+    this.dispatcher = dispatcher;
+  }
+
+  public Result run(Settings settings, List<String> ruleKeys, File baseDir, File workDir) {
+    List<List<String>> ruleGroups = ruleGroups(ruleKeys, settings.getInt(ReSharperPlugin.RULE_GROUPS_PROPERTY_KEY));
+    List<File> rulesetFiles = Lists.newArrayList();
+    for (int i = 0; i < ruleGroups.size(); i++) {
+      File rulesetFile = new File(workDir, ruleGroups.size() == 1 ? DOT_SETTINGS_FILE_NAME : ("resharper-sonarqube-" + (i + 1) + ".DotSettings"));
+      if (ruleGroups.size() == 1) {
+        writer.write(ruleGroups.get(i), rulesetFile);
+      } else {
+        writer.writeExclusive(ruleGroups.get(i), rulesetFile);
+      }
+      rulesetFiles.add(rulesetFile);
+    }
+
+    ReSharperShardHistory history = ReSharperShardHistory.load(historyFile(settings, baseDir));
+    Map<String, ReSharperSolution> solutions = Maps.newHashMap();
+    Map<File, ReSharperSolution> solutionsByReport = Maps.newHashMap();
+    List<File> reportFiles = Lists.newArrayList();
+    Map<ReSharperShard, String> shardsToInspect = Maps.newLinkedHashMap();
+    Map<String, String> sourceDigests = Maps.newHashMap();
+    for (ReSharperShard shard : shards(settings, rulesetFiles, workDir)) {
+      ReSharperSolution solution = solution(solutions, settings, baseDir, workDir, shard.solutionFile());
+      if (solution != null && !isInSolution(solution, shard.project())) {
+        LOG.warn("Skipping the " + shard + ", which is not in the solution");
+        continue;
+      }
+
+      String cacheKey = cacheKey(settings, baseDir, workDir, shard, sourceDigests);
+      if (cacheKey != null && cache.fetch(cacheKey, snapshotFile(shard))) {
+        reportFiles.add(snapshotFile(shard));
+        solutionsByReport.put(snapshotFile(shard), solution);
+      } else {
+        shardsToInspect.put(shard, cacheKey);
+      }
+    }
+
+    inspect(settings, baseDir, history.longestFirst(ImmutableList.copyOf(shardsToInspect.keySet())), history);
+    for (ReSharperShard shard : shardsToInspect.keySet()) {
+      reportFiles.add(shard.reportFile());
+      solutionsByReport.put(shard.reportFile(), solutions.get(shard.solutionFile()));
+    }
+
+    return new Result(reportFiles, shardsToInspect, cache, history, solutionsByReport);
+  }
+
+  /**
+   * Stores the issues of reports produced outside of the plugin in the cache, as those of the only project to inspect,
+   * so that the next analysis with the same rules does not run inspectcode. Returns the cache key.
+   */
+  public String importReports(Settings settings, List<String> ruleKeys, File baseDir, File workDir, List<File> reportFiles) {
+    File rulesetFile = new File(workDir, DOT_SETTINGS_FILE_NAME);
+    writer.write(ruleKeys, rulesetFile);
+
+    List<ReSharperShard> shards = shards(settings, rulesetFile, workDir);
+    if (shards.size() != 1) {
+      throw new IllegalStateException("The reports can only be imported for a single project, but the properties \"" + ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY
+        + "\" and \"" + ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY + "\" define " + shards.size() + " of them.");
+    }
+    ReSharperShard shard = shards.get(0);
+    String cacheKey = cacheKey(settings, baseDir, workDir, shard, Maps.<String, String>newHashMap());
+    if (cacheKey == null) {
+      throw new IllegalStateException("Unable to compute the cache key of the " + shard + ", check that the cache is enabled");
+    }
+    int duplicates = ReSharperIssueSnapshot.merge(reportFiles, snapshotFile(shard), true);
+    if (duplicates > 0) {
+      LOG.info("Skipped " + duplicates + " duplicated ReSharper issues while importing the reports");
+    }
+    cache.store(cacheKey, snapshotFile(shard));
+    return cacheKey;
+  }
+
+  @Nullable
+  private static ReSharperSolution solution(Map<String, ReSharperSolution> solutions, Settings settings, File baseDir, File workDir, String solutionFile) {
+    if (!solutions.containsKey(solutionFile)) {
+      solutions.put(solutionFile, loadSolution(settings, baseDir, workDir, solutionFile));
+    }
+    return solutions.get(solutionFile);
+  }
+
+  /**
+   * Returns null when the solution file does not exist. The solution models are stored next to the cached reports, if any.
+   */
+  @Nullable
+  static ReSharperSolution loadSolution(Settings settings, File baseDir, File workDir, String solutionFile) {
+    String cacheDirectory = settings.getString(ReSharperPlugin.CACHE_DIRECTORY_PROPERTY_KEY);
+    return ReSharperSolution.load(
+      absoluteSolutionFile(baseDir, solutionFile),
+      cacheDirectory == null || cacheDirectory.isEmpty() ? workDir : new File(cacheDirectory));
+  }
+
+  /**
+   * Project names containing wildcards, which inspectcode accepts, are not checked.
+   */
+  private static boolean isInSolution(ReSharperSolution solution, String project) {
+    return project.indexOf('*') != -1 || project.indexOf('?') != -1 || solution.project(project) != null;
+  }
+
+  static File absoluteSolutionFile(File baseDir, String path) {
+    File solutionFile = new File(path);
+    return solutionFile.isAbsolute() ? solutionFile : new File(baseDir, solutionFile.getPath());
+  }
+
+  /**
+   * The history is kept next to the cached reports, unless its path is set.
+   */
+  @Nullable
+  private static File historyFile(Settings settings, File baseDir) {
+    String path = settings.getString(ReSharperPlugin.HISTORY_PATH_PROPERTY_KEY);
+    if (path == null || path.isEmpty()) {
+      String cacheDirectory = settings.getString(ReSharperPlugin.CACHE_DIRECTORY_PROPERTY_KEY);
+      return cacheDirectory == null || cacheDirectory.isEmpty() ? null : new File(cacheDirectory, "resharper-history.properties");
+    }
+
+    File file = new File(path);
+    return file.isAbsolute() ? file : new File(baseDir, path);
+  }
+
+  static List<ReSharperShard> shards(Settings settings, File rulesetFile, File workDir) {
+    return shards(settings, ImmutableList.of(rulesetFile), workDir);
+  }
+
+  /**
+   * One shard per project of each solution and per rule group, each with its own report.
+   * A project name prefixed by the file name of a solution, such as "Backend.sln:MyLibrary", only applies to that solution,
+   * while the other project names apply to every solution.
+   */
+  static List<ReSharperShard> shards(Settings settings, List<File> rulesetFiles, File workDir) {
+    String[] solutions = settings.getStringArray(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY);
+    String[] projects = settings.getStringArray(ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY);
+    checkSolutionPrefixes(solutions, projects);
+
+    List<String[]> solutionsAndProjects = Lists.newArrayList();
+    for (String solution : solutions) {
+      int before = solutionsAndProjects.size();
+      for (String project : projects) {
+        String prefix = solutionPrefix(project);
+        if (prefix == null) {
+          solutionsAndProjects.add(new String[] {solution, project});
+        } else if (prefix.equalsIgnoreCase(new File(solution).getName())) {
+          solutionsAndProjects.add(new String[] {solution, project.substring(prefix.length() + 1)});
+        }
+      }
+      if (solutionsAndProjects.size() == before) {
+        throw new IllegalStateException("No project of the property \"" + ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY + "\" applies to the solution \"" + solution
+          + "\", either add a project prefixed by \"" + new File(solution).getName() + ":\" or a project without prefix.");
+      }
+    }
+
+    int count = solutionsAndProjects.size() * rulesetFiles.size();
+    ImmutableList.Builder<ReSharperShard> builder = ImmutableList.builder();
+    for (int i = 0; i < solutionsAndProjects.size(); i++) {
+      String[] solutionAndProject = solutionsAndProjects.get(i);
+      for (int j = 0; j < rulesetFiles.size(); j++) {
+        int n = i * rulesetFiles.size() + j + 1;
+        String reportFileName = count == 1 ? "resharper-report.xml" : ("resharper-report-" + n + ".xml");
+        int ruleGroup = rulesetFiles.size() == 1 ? 0 : (j + 1);
+        builder.add(new ReSharperShard(solutionAndProject[0], solutionAndProject[1], rulesetFiles.get(j), new File(workDir, reportFileName), ruleGroup));
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Splits the rules into at most the given number of groups, each inspected by a separate inspectcode run of the same projects.
+   * The rules of a category, which tend to share their analyses, are kept together as long as the category is not larger than
+   * a group should be. The categories are then assigned to the group with the fewest rules, the largest first.
+   * The rules are grouped in the order of their keys, so that the groups, whose DotSettings files are part of the cache keys,
+   * do not depend on the order of the rules.
+   */
+  static List<List<String>> ruleGroups(List<String> ruleKeys, int maxGroups) {
+    if (maxGroups <= 1 || ruleKeys.size() <= 1) {
+      return ImmutableList.of(ruleKeys);
+    }
+
+    List<String> sortedRuleKeys = Ordering.natural().sortedCopy(ruleKeys);
+    int groupCount = Math.min(maxGroups, sortedRuleKeys.size());
+    int maxRulesPerGroup = (sortedRuleKeys.size() + groupCount - 1) / groupCount;
+    List<List<String>> chunks = Lists.newArrayList();
+    for (List<String> category : ReSharperProfiler.categories(sortedRuleKeys).values()) {
+      chunks.addAll(Lists.partition(category, maxRulesPerGroup));
+    }
+    Collections.sort(chunks, new Comparator<List<String>>() {
+      @Override
+      public int compare(List<String> a, List<String> b) {
+        return b.size() - a.size();
+      }
+    });
+
+    int[] groupSizes = new int[groupCount];
+    Map<String, Integer> groupByRuleKey = Maps.newHashMap();
+    for (List<String> chunk : chunks) {
+      int smallest = 0;
+      for (int i = 1; i < groupCount; i++) {
+        if (groupSizes[i] < groupSizes[smallest]) {
+          smallest = i;
+        }
+      }
+      groupSizes[smallest] += chunk.size();
+      for (String ruleKey : chunk) {
+        groupByRuleKey.put(ruleKey, smallest);
+      }
+    }
+
+    List<List<String>> groups = Lists.newArrayList();
+    for (int i = 0; i < groupCount; i++) {
+      groups.add(Lists.<String>newArrayList());
+    }
+    for (String ruleKey : sortedRuleKeys) {
+      groups.get(groupByRuleKey.get(ruleKey)).add(ruleKey);
+    }
+    ImmutableList.Builder<List<String>> builder = ImmutableList.builder();
+    for (List<String> group : groups) {
+      if (!group.isEmpty()) {
+        builder.add(ImmutableList.copyOf(group));
+      }
+    }
+    return builder.build();
+  }
+
+  private static void checkSolutionPrefixes(String[] solutions, String[] projects) {
+    for (String project : projects) {
+      String prefix = solutionPrefix(project);
+      if (prefix == null) {
+        continue;
+      }
+
+      boolean known = false;
+      for (String solution : solutions) {
+        known |= prefix.equalsIgnoreCase(new File(solution).getName());
+      }
+      if (!known) {
+        throw new IllegalStateException("The project \"" + project + "\" of the property \"" + ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY
+          + "\" is prefixed by \"" + prefix + "\", which is not the file name of any solution of the property \"" + ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY + "\".");
+      }
+    }
+  }
+
+  @Nullable
+  private static String solutionPrefix(String project) {
+    int separator = project.indexOf(':');
+    return separator > 0 ? project.substring(0, separator) : null;
+  }
+
+  private void inspect(Settings settings, File baseDir, List<ReSharperShard> shards, ReSharperShardHistory history) {
+    String executable = settings.getString(ReSharperPlugin.INSPECTCODE_PATH_PROPERTY_KEY);
+    int timeout = settings.getInt(ReSharperPlugin.TIMEOUT_MINUTES_PROPERTY_KEY);
+    String[] workerUrls = settings.getStringArray(ReSharperPlugin.WORKER_URLS_PROPERTY_KEY);
+    int maxConcurrentRuns = settings.getInt(ReSharperPlugin.MAX_CONCURRENT_RUNS_PROPERTY_KEY);
+
+    if (workerUrls.length == 0 && maxConcurrentRuns <= 1 && settings.getInt(ReSharperPlugin.RULE_GROUPS_PROPERTY_KEY) > 1 && shards.size() > 1) {
+      LOG.warn("The rule groups are inspected one after the other, set the property \"" + ReSharperPlugin.MAX_CONCURRENT_RUNS_PROPERTY_KEY
+        + "\" or \"" + ReSharperPlugin.WORKER_URLS_PROPERTY_KEY + "\" to inspect them at once");
+    }
+    if (workerUrls.length == 0 && (maxConcurrentRuns <= 1 || shards.size() <= 1)) {
+      for (ReSharperShard shard : shards) {
+        long start = System.currentTimeMillis();
+        executor.execute(executable, shard.project(), shard.solutionFile(), shard.dotSettingsFile(), shard.reportFile(), timeout);
+        history.recordDuration(shard, System.currentTimeMillis() - start);
+      }
+    } else if (!shards.isEmpty()) {
+      List<ReSharperWorker> workers = Lists.newArrayList();
+      String sharedRoot = settings.getString(ReSharperPlugin.WORKER_SHARED_ROOT_PROPERTY_KEY);
+      for (String workerUrl : workerUrls) {
+        workers.add(new ReSharperRemoteWorker(workerUrl, baseDir, sharedRoot == null || sharedRoot.isEmpty() ? null : new File(sharedRoot)));
+      }
+      if (workerUrls.length == 0) {
+        for (int i = 1; i <= Math.min(maxConcurrentRuns, shards.size()); i++) {
+          workers.add(new ReSharperLocalWorker(executor, executable, i));
+        }
+      }
+      Map<ReSharperShard, Long> durations = dispatcher.dispatch(shards, workers, timeout);
+      for (Map.Entry<ReSharperShard, Long> entry : durations.entrySet()) {
+        history.recordDuration(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private static File compressedReportFile(ReSharperShard shard) {
+    return new File(shard.reportFile().getPath() + ".gz");
+  }
+
+  private static File snapshotFile(ReSharperShard shard) {
+    return new File(FilenameUtils.removeExtension(shard.reportFile().getPath()) + ".issues");
+  }
+
+  /**
+   * The sources of each solution are hashed once, for all its shards. The working directory and the history are not part of the digest.
+   */
+  @Nullable
+  private String cacheKey(Settings settings, File baseDir, File workDir, ReSharperShard shard, Map<String, String> sourceDigests) {
+    if (!cache.isEnabled()) {
+      return null;
+    }
+
+    File solutionFile = absoluteSolutionFile(baseDir, shard.solutionFile());
+    if (!sourceDigests.containsKey(shard.solutionFile())) {
+      List<File> excluded = Lists.newArrayList(workDir);
+      File historyFile = historyFile(settings, baseDir);
+      if (historyFile != null) {
+        excluded.add(historyFile);
+      }
+      sourceDigests.put(shard.solutionFile(), cache.sourceDigest(solutionFile, excluded));
+    }
+    String sourceDigest = sourceDigests.get(shard.solutionFile());
+    if (sourceDigest == null) {
+      return null;
+    }
+
+    return cache.key(settings.getString(ReSharperPlugin.INSPECTCODE_PATH_PROPERTY_KEY), shard.project(), solutionFile, shard.dotSettingsFile(), sourceDigest);
+  }
+
+  static List<String> enabledRuleKeys(ReSharperConfiguration reSharperConf, ActiveRules activeRules) {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    for (ActiveRule activeRule : activeRules.findByRepository(reSharperConf.repositoryKey())) {
+      // TODO WTF? ActiveRule.ruleKey() should be a string, and perhaps there should be a method ActiveRule.rule()
+      builder.add(activeRule.ruleKey().rule());
+    }
+    return builder.build();
+  }
+
+  public static class Result {
+
+    private final List<File> reportFiles;
+    private final Map<ReSharperShard, String> inspectedShards;
+    private final ReSharperReportCache cache;
+    private final ReSharperShardHistory history;
+    private final Map<File, ReSharperSolution> solutionsByReport;
+    private final Set<ReSharperShard> teedShards = Sets.newHashSet();
+
+    Result(List<File> reportFiles, Map<ReSharperShard, String> inspectedShards, ReSharperReportCache cache, ReSharperShardHistory history,
+      Map<File, ReSharperSolution> solutionsByReport) {
+      this.reportFiles = reportFiles;
+      this.inspectedShards = inspectedShards;
+      this.cache = cache;
+      this.history = history;
+      this.solutionsByReport = solutionsByReport;
+    }
+
+    public List<File> reportFiles() {
+      return reportFiles;
+    }
+
+    /**
+     * Model of the solution of the report, or null if the solution file does not exist.
+     */
+    @Nullable
+    public ReSharperSolution solution(File reportFile) {
+      return solutionsByReport.get(reportFile);
+    }
+
+    /**
+     * Records the number of issues of each report produced by ReSharper, as found in the report.
+     */
+    public void recordIssues(Map<File, Integer> issuesPerReport) {
+      for (ReSharperShard shard : inspectedShards.keySet()) {
+        Integer issues = issuesPerReport.get(shard.reportFile());
+        if (issues != null) {
+          history.recordIssues(shard, issues);
+        }
+      }
+    }
+
+    /**
+     * Writer of the snapshot to store in the cache for the report, or null if the report is not cached.
+     * It is meant to be fed with all the issues of the report while they are parsed, before any filtering, and then closed,
+     * so that {@link #retain()} does not parse the report a second time.
+     */
+    @Nullable
+    public ReSharperIssueSnapshot.Writer snapshotWriter(File reportFile) {
+      for (Map.Entry<ReSharperShard, String> entry : inspectedShards.entrySet()) {
+        if (entry.getValue() != null && entry.getKey().reportFile().equals(reportFile)) {
+          File snapshotFile = snapshotFile(entry.getKey());
+          FileUtils.deleteQuietly(snapshotFile);
+          teedShards.add(entry.getKey());
+          return ReSharperIssueSnapshot.writer(snapshotFile, true);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Compresses the reports produced by ReSharper, stores their issues in the cache as snapshots, and saves the history.
+     * Reports without a snapshot written while they were parsed are converted here.
+     */
+    public void retain() {
+      history.save();
+      for (Map.Entry<ReSharperShard, String> entry : inspectedShards.entrySet()) {
+        File compressedReportFile = compressedReportFile(entry.getKey());
+        retainCompressed(entry.getKey().reportFile(), compressedReportFile);
+        if (entry.getValue() != null) {
+          File snapshotFile = snapshotFile(entry.getKey());
+          if (!teedShards.contains(entry.getKey()) && compressedReportFile.isFile()) {
+            ReSharperIssueSnapshot.convert(compressedReportFile, snapshotFile, true);
+          }
+          if (snapshotFile.isFile()) {
+            cache.store(entry.getValue(), snapshotFile);
+          }
+        }
+      }
+    }
+
+    /**
+     * The report is kept in the working directory for troubleshooting, gzip compressed as it is very repetitive.
+     */
+    private static void retainCompressed(File reportFile, File compressedReportFile) {
+      if (!reportFile.isFile()) {
+        return;
+      }
+
+      try {
+        if (ReSharperCompression.isCompressed(reportFile)) {
+          FileUtils.deleteQuietly(compressedReportFile);
+          FileUtils.moveFile(reportFile, compressedReportFile);
+        } else {
+          ReSharperCompression.gzip(reportFile, compressedReportFile);
+          FileUtils.deleteQuietly(reportFile);
+        }
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
+  }
+
+}
@@ -27,13 +27,19 @@ public class ReSharperIssue {
   private final String ruleKey;
   private final String filePath;
   private final Integer line;
+  private final Integer offset;
   private final String message;
 
   public ReSharperIssue(int reportLine, String ruleKey, @Nullable String filePath, @Nullable Integer line, String message) {
+    this(reportLine, ruleKey, filePath, line, null, message);
+  }
+
+  public ReSharperIssue(int reportLine, String ruleKey, @Nullable String filePath, @Nullable Integer line, @Nullable Integer offset, String message) {
     this.reportLine = reportLine;
     this.ruleKey = ruleKey;
     this.filePath = filePath;
     this.line = line;
+    this.offset = offset;
     this.message = message;
   }
 
@@ -54,6 +60,14 @@ public class ReSharperIssue {
     return line;
   }
 
+  /**
+   * Start offset of the issue, in characters from the beginning of the file.
+   */
+  @Nullable
+  public Integer offset() {
+    return offset;
+  }
+
   public String message() {
     return message;
   }
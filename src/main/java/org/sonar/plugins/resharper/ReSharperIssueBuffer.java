@@ -0,0 +1,312 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractCollection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the issues of reports within a memory budget, and returns them sorted by file, then by line in the report.
+ * Issues that compare equal, such as issues of different reports on the same report line, are returned in the order
+ * in which they were added, that is in the order of the reports and of the issues within each report.
+ * <p>
+ * Once the estimated size of the issues held in memory exceeds the budget, they are sorted and spilled as a run
+ * to a temporary file. Iterating merges the runs, read back through memory mapping, with the issues still in memory.
+ * The sort is stable and the merge takes the earliest run first among equal issues, so that ties keep the order of addition.
+ * No issue can be added once the iteration started.
+ */
+public class ReSharperIssueBuffer extends AbstractCollection<ReSharperIssue> implements ReSharperIssueSink, Closeable {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int ISSUE_OVERHEAD_BYTES = 64;
+  private static final int STRING_OVERHEAD_BYTES = 48;
+  private static final int NONE = -1;
+
+  static final Comparator<ReSharperIssue> ORDER = new Comparator<ReSharperIssue>() {
+
+    @Override
+    public int compare(ReSharperIssue a, ReSharperIssue b) {
+      if (a.filePath() == null || b.filePath() == null) {
+        if (a.filePath() != null || b.filePath() != null) {
+          return a.filePath() == null ? -1 : 1;
+        }
+      } else {
+        int c = a.filePath().compareTo(b.filePath());
+        if (c != 0) {
+          return c;
+        }
+      }
+      return a.reportLine() < b.reportLine() ? -1 : (a.reportLine() == b.reportLine() ? 0 : 1);
+    }
+
+  };
+
+  private final File directory;
+  private final long budgetBytes;
+
+  private List<ReSharperIssue> issues = Lists.newArrayList();
+  private long issuesBytes;
+  private int size;
+
+  private File spillFile;
+  private DataOutputStream spillStream;
+  private final List<long[]> runs = Lists.newArrayList();
+  private boolean sealed;
+
+  public ReSharperIssueBuffer(File directory, long budgetBytes) {
+    Preconditions.checkArgument(budgetBytes > 0, "The budget must be positive");
+    this.directory = directory;
+    this.budgetBytes = budgetBytes;
+  }
+
+  @Override
+  public boolean add(ReSharperIssue issue) {
+    Preconditions.checkState(!sealed, "No issue can be added once the iteration started");
+
+    issues.add(issue);
+    issuesBytes += estimatedBytes(issue);
+    size++;
+    if (issuesBytes > budgetBytes) {
+      spill();
+    }
+    return true;
+  }
+
+  @Override
+  public void accept(ReSharperIssue issue) {
+    add(issue);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Number of runs spilled to disk so far.
+   */
+  public int spilledRuns() {
+    return runs.size();
+  }
+
+  @Override
+  public Iterator<ReSharperIssue> iterator() {
+    sealed = true;
+    Collections.sort(issues, ORDER);
+    if (runs.isEmpty()) {
+      return Collections.unmodifiableList(issues).iterator();
+    }
+
+    IOUtils.closeQuietly(spillStream);
+    final PriorityQueue<Head> heads = new PriorityQueue<Head>(runs.size() + 1);
+    for (int i = 0; i < runs.size(); i++) {
+      addHead(heads, new Head(i, new RunIterator(map(runs.get(i)[0], runs.get(i)[1]))));
+    }
+    addHead(heads, new Head(runs.size(), issues.iterator()));
+
+    return new AbstractIterator<ReSharperIssue>() {
+
+      @Override
+      protected ReSharperIssue computeNext() {
+        Head head = heads.poll();
+        if (head == null) {
+          return endOfData();
+        }
+        ReSharperIssue issue = head.issues.next();
+        addHead(heads, head);
+        return issue;
+      }
+
+    };
+  }
+
+  private static void addHead(PriorityQueue<Head> heads, Head head) {
+    if (head.issues.hasNext()) {
+      heads.add(head);
+    }
+  }
+
+  @Override
+  public void clear() {
+    close();
+    issues = Lists.newArrayList();
+    issuesBytes = 0;
+    size = 0;
+    runs.clear();
+    sealed = false;
+  }
+
+  @Override
+  public void close() {
+    IOUtils.closeQuietly(spillStream);
+    spillStream = null;
+    FileUtils.deleteQuietly(spillFile);
+    spillFile = null;
+  }
+
+  private void spill() {
+    Collections.sort(issues, ORDER);
+    try {
+      if (spillStream == null) {
+        spillFile = File.createTempFile("resharper-issues", ".bin", directory);
+        spillStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile), BUFFER_SIZE));
+      }
+
+      long runStart = runs.isEmpty() ? 0 : (runs.get(runs.size() - 1)[0] + runs.get(runs.size() - 1)[1]);
+      for (ReSharperIssue issue : issues) {
+        write(spillStream, issue);
+      }
+      spillStream.flush();
+      long runLength = spillFile.length() - runStart;
+      runs.add(new long[] {runStart, runLength});
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+
+    issues = Lists.newArrayList();
+    issuesBytes = 0;
+  }
+
+  private MappedByteBuffer map(long start, long length) {
+    try {
+      RandomAccessFile randomAccessFile = new RandomAccessFile(spillFile, "r");
+      try {
+        return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, start, length);
+      } finally {
+        randomAccessFile.close();
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static long estimatedBytes(ReSharperIssue issue) {
+    return ISSUE_OVERHEAD_BYTES + estimatedBytes(issue.ruleKey()) + estimatedBytes(issue.filePath()) + estimatedBytes(issue.message());
+  }
+
+  private static long estimatedBytes(@Nullable String s) {
+    return s == null ? 0 : (STRING_OVERHEAD_BYTES + 2L * s.length());
+  }
+
+  private static void write(DataOutputStream os, ReSharperIssue issue) throws IOException {
+    os.writeInt(issue.reportLine());
+    writeString(os, issue.ruleKey());
+    writeString(os, issue.filePath());
+    os.writeInt(issue.line() == null ? NONE : issue.line());
+    os.writeInt(issue.offset() == null ? NONE : issue.offset());
+    writeString(os, issue.message());
+  }
+
+  private static void writeString(DataOutputStream os, @Nullable String s) throws IOException {
+    if (s == null) {
+      os.writeInt(NONE);
+    } else {
+      byte[] bytes = s.getBytes(Charsets.UTF_8);
+      os.writeInt(bytes.length);
+      os.write(bytes);
+    }
+  }
+
+  /**
+   * Next issues of a run, the in-memory issues being the last run. Earlier runs come first among equal issues.
+   */
+  private static class Head implements Comparable<Head> {
+
+    private final int run;
+    private final PeekingIterator<ReSharperIssue> issues;
+
+    public Head(int run, Iterator<ReSharperIssue> issues) {
+      this.run = run;
+      this.issues = Iterators.peekingIterator(issues);
+    }
+
+    @Override
+    public int compareTo(Head other) {
+      int c = ORDER.compare(issues.peek(), other.issues.peek());
+      if (c != 0) {
+        return c;
+      }
+      return run < other.run ? -1 : (run == other.run ? 0 : 1);
+    }
+
+  }
+
+  private static class RunIterator extends AbstractIterator<ReSharperIssue> {
+
+    private final MappedByteBuffer buffer;
+
+    public RunIterator(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    protected ReSharperIssue computeNext() {
+      if (!buffer.hasRemaining()) {
+        return endOfData();
+      }
+
+      int reportLine = buffer.getInt();
+      String ruleKey = readString();
+      String filePath = readString();
+      int line = buffer.getInt();
+      int offset = buffer.getInt();
+      String message = readString();
+      return new ReSharperIssue(reportLine, ruleKey, filePath, line == NONE ? null : line, offset == NONE ? null : offset, message);
+    }
+
+    @Nullable
+    private String readString() {
+      int length = buffer.getInt();
+      if (length == NONE) {
+        return null;
+      }
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      return new String(bytes, Charsets.UTF_8);
+    }
+
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multiset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Limits the number of issues saved per rule and per file, counting the ones beyond the limits instead.
+ * A limit of 0 or less disables it. As issues are saved file by file, the files first in alphabetical order
+ * get the issues of a capped rule.
+ */
+public class ReSharperIssueCaps {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperIssueCaps.class);
+
+  private static final int MAX_SUMMARY_ENTRIES = 10;
+
+  private final int maxPerRule;
+  private final int maxPerFile;
+
+  private final Multiset<String> savedByRule = HashMultiset.create();
+  private final Multiset<String> savedByFile = HashMultiset.create();
+  private final Multiset<String> suppressedByRule = HashMultiset.create();
+  private final Multiset<String> suppressedByFile = HashMultiset.create();
+
+  public ReSharperIssueCaps(int maxPerRule, int maxPerFile) {
+    this.maxPerRule = maxPerRule;
+    this.maxPerFile = maxPerFile;
+  }
+
+  /**
+   * Returns true if the issue should be saved, and false if it is counted as suppressed.
+   */
+  public boolean accept(String ruleKey, String filePath) {
+    if (maxPerRule > 0 && savedByRule.count(ruleKey) >= maxPerRule) {
+      suppressedByRule.add(ruleKey);
+      return false;
+    }
+    if (maxPerFile > 0 && savedByFile.count(filePath) >= maxPerFile) {
+      suppressedByFile.add(filePath);
+      return false;
+    }
+
+    savedByRule.add(ruleKey);
+    savedByFile.add(filePath);
+    return true;
+  }
+
+  public int suppressed() {
+    return suppressedByRule.size() + suppressedByFile.size();
+  }
+
+  public void logSummary() {
+    if (!suppressedByRule.isEmpty()) {
+      LOG.warn("Suppressed " + suppressedByRule.size() + " ReSharper issues beyond the limit of " + maxPerRule + " issues per rule: "
+        + summary(suppressedByRule));
+    }
+    if (!suppressedByFile.isEmpty()) {
+      LOG.warn("Suppressed " + suppressedByFile.size() + " ReSharper issues beyond the limit of " + maxPerFile + " issues per file: "
+        + summary(suppressedByFile));
+    }
+  }
+
+  /**
+   * The most suppressed entries first, for example "MyRule (42), OtherRule (7)".
+   */
+  static String summary(final Multiset<String> suppressed) {
+    List<String> entries = Lists.newArrayList(suppressed.elementSet());
+    Collections.sort(entries, new Comparator<String>() {
+
+      @Override
+      public int compare(String a, String b) {
+        int c = suppressed.count(b) - suppressed.count(a);
+        return c != 0 ? c : a.compareTo(b);
+      }
+
+    });
+
+    List<String> summary = Lists.newArrayList();
+    for (String entry : entries.subList(0, Math.min(entries.size(), MAX_SUMMARY_ENTRIES))) {
+      summary.add(entry + " (" + suppressed.count(entry) + ")");
+    }
+    if (entries.size() > MAX_SUMMARY_ENTRIES) {
+      summary.add("and " + (entries.size() - MAX_SUMMARY_ENTRIES) + " more");
+    }
+    return Joiner.on(", ").join(summary);
+  }
+
+}
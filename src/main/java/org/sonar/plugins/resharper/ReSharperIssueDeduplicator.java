@@ -0,0 +1,49 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+/**
+ * Detects the issues reported several times, as happens for multi-targeted projects and files linked into several projects.
+ * <p>
+ * Issues are identified by a 64-bit fingerprint of their rule, file, line and message. The fingerprints are kept in a table
+ * of longs which is at most half full and doubles when it gets there, so that 16 to 32 bytes are kept per issue.
+ */
+public class ReSharperIssueDeduplicator {
+
+  private final ReSharperFingerprintSet fingerprints = new ReSharperFingerprintSet();
+  private int duplicates;
+
+  public boolean isDuplicate(String ruleKey, String filePath, int line, String message) {
+    if (fingerprints.add(fingerprint(ruleKey, filePath, line, message))) {
+      return false;
+    }
+    duplicates++;
+    return true;
+  }
+
+  public int duplicates() {
+    return duplicates;
+  }
+
+  static long fingerprint(String ruleKey, String filePath, int line, String message) {
+    return new ReSharperFingerprint().add(ruleKey).add(filePath).add(line).add(message).value();
+  }
+
+}
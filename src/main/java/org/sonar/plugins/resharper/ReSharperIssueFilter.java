@@ -0,0 +1,182 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import javax.annotation.Nullable;
+
+import java.util.Collection;
+
+/**
+ * Issues to keep while parsing a report, checked against the raw values of the report before any issue is built.
+ * <p>
+ * Values are read as {@link CharSequence}s, so that the parsers can check them without decoding them to strings.
+ * Paths are compared ignoring case and separators, as a filter may only let through more issues than needed, never fewer.
+ * Relative paths are the ones of the report, relative to the directory of its solution.
+ * A filter counts the issues it rejects, and is therefore not thread safe.
+ */
+public class ReSharperIssueFilter {
+
+  private final String[] ruleKeys;
+  private final int mask;
+  private final String[] absolutePathPrefixes;
+  private final String[] relativePathPrefixes;
+  private int rejected;
+
+  /**
+   * Null accepts any rule key, absolute path or relative path. Issues without a path are always accepted.
+   */
+  public ReSharperIssueFilter(@Nullable Collection<String> ruleKeys, @Nullable Collection<String> absolutePathPrefixes, @Nullable Collection<String> relativePathPrefixes) {
+    if (ruleKeys == null) {
+      this.ruleKeys = null;
+      this.mask = 0;
+    } else {
+      int capacity = Integer.highestOneBit(Math.max(1, ruleKeys.size()) * 2) * 2;
+      this.ruleKeys = new String[capacity];
+      this.mask = capacity - 1;
+      for (String ruleKey : ruleKeys) {
+        int i = hash(ruleKey) & mask;
+        while (this.ruleKeys[i] != null && !this.ruleKeys[i].equals(ruleKey)) {
+          i = (i + 1) & mask;
+        }
+        this.ruleKeys[i] = ruleKey;
+      }
+    }
+    this.absolutePathPrefixes = normalizedPrefixes(absolutePathPrefixes);
+    this.relativePathPrefixes = normalizedPrefixes(relativePathPrefixes);
+  }
+
+  public static ReSharperIssueFilter acceptAll() {
+    return new ReSharperIssueFilter(null, null, null);
+  }
+
+  public boolean accept(CharSequence ruleKey, @Nullable CharSequence path) {
+    if (acceptsRuleKey(ruleKey) && acceptsPath(path)) {
+      return true;
+    }
+    rejected++;
+    return false;
+  }
+
+  public int rejected() {
+    return rejected;
+  }
+
+  void setRejected(int rejected) {
+    this.rejected = rejected;
+  }
+
+  private boolean acceptsRuleKey(CharSequence ruleKey) {
+    if (ruleKeys == null) {
+      return true;
+    }
+    int i = hash(ruleKey) & mask;
+    while (ruleKeys[i] != null) {
+      if (contentEquals(ruleKeys[i], ruleKey)) {
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+  private boolean acceptsPath(@Nullable CharSequence path) {
+    if (path == null) {
+      return true;
+    }
+    String[] prefixes = isAbsolute(path) ? absolutePathPrefixes : relativePathPrefixes;
+    if (prefixes == null) {
+      return true;
+    }
+    for (String prefix : prefixes) {
+      if (startsWith(path, prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isAbsolute(CharSequence path) {
+    return path.length() > 0 && (isSeparator(path.charAt(0)) || path.length() > 1 && path.charAt(1) == ':');
+  }
+
+  private static boolean startsWith(CharSequence path, String normalizedPrefix) {
+    if (path.length() < normalizedPrefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < normalizedPrefix.length(); i++) {
+      if (normalize(path.charAt(i)) != normalizedPrefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Nullable
+  private static String[] normalizedPrefixes(@Nullable Collection<String> prefixes) {
+    if (prefixes == null) {
+      return null;
+    }
+    String[] result = new String[prefixes.size()];
+    int i = 0;
+    for (String prefix : prefixes) {
+      StringBuilder sb = new StringBuilder(prefix.length());
+      for (int j = 0; j < prefix.length(); j++) {
+        sb.append(normalize(prefix.charAt(j)));
+      }
+      result[i++] = sb.toString();
+    }
+    return result;
+  }
+
+  private static char normalize(char c) {
+    if (isSeparator(c)) {
+      return '/';
+    }
+    return Character.toLowerCase(c);
+  }
+
+  private static boolean isSeparator(char c) {
+    return c == '/' || c == '\\';
+  }
+
+  /**
+   * Same as {@link String#hashCode()}, for any character sequence.
+   */
+  private static int hash(CharSequence value) {
+    int h = 0;
+    for (int i = 0; i < value.length(); i++) {
+      h = 31 * h + value.charAt(i);
+    }
+    return h;
+  }
+
+  private static boolean contentEquals(String expected, CharSequence value) {
+    if (expected.length() != value.length()) {
+      return false;
+    }
+    for (int i = 0; i < expected.length(); i++) {
+      if (expected.charAt(i) != value.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Issues of the last inspection of each project, by absolute file path.
+ * <p>
+ * An update, which only happens once a project was inspected again, only replaces the issues of the files
+ * the project had or now has issues in, each file at once. Queries therefore never wait for a lock,
+ * and always see the issues of complete inspections for the file they ask about.
+ */
+public class ReSharperIssueIndex {
+
+  private final Map<String, ImmutableListMultimap<String, ReSharperIssue>> issuesByProject = Maps.newHashMap();
+  private final ConcurrentMap<String, List<ReSharperIssue>> issuesByFile = Maps.newConcurrentMap();
+  private volatile int size;
+
+  /**
+   * Replaces the issues of the project, whose paths must be absolute.
+   */
+  public synchronized void update(String project, Collection<ReSharperIssue> issues) {
+    ImmutableListMultimap.Builder<String, ReSharperIssue> builder = ImmutableListMultimap.builder();
+    for (ReSharperIssue issue : issues) {
+      if (issue.filePath() != null) {
+        builder.put(issue.filePath(), issue);
+      }
+    }
+    ImmutableListMultimap<String, ReSharperIssue> projectIssues = builder.build();
+    ImmutableListMultimap<String, ReSharperIssue> previousIssues = issuesByProject.put(project, projectIssues);
+
+    Set<String> files = Sets.newHashSet(projectIssues.keySet());
+    if (previousIssues != null) {
+      files.addAll(previousIssues.keySet());
+    }
+    refresh(files);
+  }
+
+  /**
+   * Drops the issues of the projects which are no longer part of the solution.
+   */
+  public synchronized void retainProjects(Collection<String> projects) {
+    Set<String> files = Sets.newHashSet();
+    Iterator<Map.Entry<String, ImmutableListMultimap<String, ReSharperIssue>>> it = issuesByProject.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, ImmutableListMultimap<String, ReSharperIssue>> entry = it.next();
+      if (!projects.contains(entry.getKey())) {
+        files.addAll(entry.getValue().keySet());
+        it.remove();
+      }
+    }
+    refresh(files);
+  }
+
+  /**
+   * Rebuilds the issues of the given files from those of all the projects, as a file can be part of several projects.
+   */
+  private void refresh(Set<String> files) {
+    int newSize = size;
+    for (String file : files) {
+      ImmutableList.Builder<ReSharperIssue> builder = ImmutableList.builder();
+      for (ImmutableListMultimap<String, ReSharperIssue> byFile : issuesByProject.values()) {
+        builder.addAll(byFile.get(file));
+      }
+      List<ReSharperIssue> fileIssues = builder.build();
+
+      List<ReSharperIssue> previousFileIssues = fileIssues.isEmpty() ? issuesByFile.remove(file) : issuesByFile.put(file, fileIssues);
+      newSize += fileIssues.size() - (previousFileIssues == null ? 0 : previousFileIssues.size());
+    }
+    size = newSize;
+  }
+
+  public List<ReSharperIssue> issues(String absolutePath) {
+    List<ReSharperIssue> issues = issuesByFile.get(absolutePath);
+    return issues == null ? ImmutableList.<ReSharperIssue>of() : issues;
+  }
+
+  public int size() {
+    return size;
+  }
+
+}
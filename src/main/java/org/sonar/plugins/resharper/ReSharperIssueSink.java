@@ -0,0 +1,51 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import java.util.Collection;
+
+/**
+ * Receives the issues streamed out of a report, one at a time, in the order of the report.
+ * <p>
+ * Readers only ever push issues, so that a sink can write, count or transform them without holding them in memory.
+ */
+public interface ReSharperIssueSink {
+
+  void accept(ReSharperIssue issue);
+
+  class Collector implements ReSharperIssueSink {
+
+    private final Collection<? super ReSharperIssue> issues;
+
+    /**
+     * Adds every issue to the given collection.
+     */
+    public Collector(Collection<? super ReSharperIssue> issues) {
+      this.issues = issues;
+    }
+
+    @Override
+    public void accept(ReSharperIssue issue) {
+      issues.add(issue);
+    }
+
+  }
+
+}
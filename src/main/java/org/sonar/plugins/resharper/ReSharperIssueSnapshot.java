@@ -0,0 +1,457 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compact binary form of a set of issues, which is much faster to read than a report.
+ * <p>
+ * A snapshot starts with the magic bytes "RSIS" and a version byte, followed by one record per issue and a final 0.
+ * Records only hold varints: the difference between the report line of the issue and the one of the previous issue,
+ * zigzag encoded plus one, the references to the rule key, the file path and the message, and the line plus one and
+ * the offset plus one, where 0 stands for none. A reference is 0 for no string, 1 for a new string, whose UTF-8 length
+ * and bytes follow and which is added to the dictionary, or else the dictionary index of the string plus 2.
+ * Both the writer and the reader clear the dictionary instead of adding a string which would take it over
+ * {@link #DICTIONARY_MAX_BYTES}, counting {@link #DICTIONARY_STRING_OVERHEAD_BYTES} more per string, so that neither
+ * holds more than that in memory whatever the size of the snapshot.
+ * The whole snapshot may be gzip compressed.
+ * <p>
+ * Snapshots are written in a single pass. Uncompressed snapshots are memory-mapped when read, compressed ones are
+ * decompressed as they are read.
+ */
+public class ReSharperIssueSnapshot {
+
+  static final byte[] MAGIC = {'R', 'S', 'I', 'S'};
+  static final int VERSION = 2;
+  static final int DICTIONARY_MAX_BYTES = 4 * 1024 * 1024;
+  static final int DICTIONARY_STRING_OVERHEAD_BYTES = 64;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int END = 0;
+  private static final int NO_STRING = 0;
+  private static final int NEW_STRING = 1;
+  private static final int FIRST_INDEX = 2;
+
+  private ReSharperIssueSnapshot() {
+  }
+  /**
+   * Parses the report, in any format, into a snapshot.
+   */
+  public static void convert(File reportFile, File snapshotFile, boolean compress) {
+    Writer writer = writer(snapshotFile, compress);
+    try {
+      new ReSharperReportParser().parse(reportFile, writer);
+      writer.close();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      writer.abortUnlessClosed();
+    }
+  }
+
+  /**
+   * Parses the reports, in any format, into a single snapshot, skipping the issues reported several times,
+   * as happens when the same projects are found in several reports. Returns the number of duplicated issues.
+   */
+  public static int merge(List<File> reportFiles, File snapshotFile, boolean compress) {
+    final Writer writer = writer(snapshotFile, compress);
+    final ReSharperIssueDeduplicator deduplicator = new ReSharperIssueDeduplicator();
+    ReSharperIssueSink issues = new ReSharperIssueSink() {
+      @Override
+      public void accept(ReSharperIssue issue) {
+        String filePath = issue.filePath() == null ? "" : issue.filePath();
+        int line = issue.line() == null ? 0 : issue.line();
+        if (!deduplicator.isDuplicate(issue.ruleKey(), filePath, line, issue.message())) {
+          writer.accept(issue);
+        }
+      }
+    };
+
+    try {
+      ReSharperReportParser parser = new ReSharperReportParser();
+      for (File reportFile : reportFiles) {
+        parser.parse(reportFile, issues);
+      }
+      writer.close();
+      return deduplicator.duplicates();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      writer.abortUnlessClosed();
+    }
+  }
+
+  /**
+   * The issues added to the writer are written to a temporary file, moved in place of the snapshot once the writer is closed.
+   */
+  public static Writer writer(File snapshotFile, boolean compress) {
+    try {
+      return new Writer(snapshotFile, compress);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  public static void read(File snapshotFile, ReSharperIssueSink issues) {
+    read(snapshotFile, issues, ReSharperIssueFilter.acceptAll());
+  }
+
+  public static void read(File snapshotFile, ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+    try {
+      if (ReSharperCompression.isCompressed(snapshotFile)) {
+        InputStream is = new BufferedInputStream(ReSharperCompression.open(snapshotFile), BUFFER_SIZE);
+        try {
+          new StreamReader(snapshotFile, is).read(issues, filter);
+        } finally {
+          IOUtils.closeQuietly(is);
+        }
+      } else {
+        new BufferReader(snapshotFile, map(snapshotFile)).read(issues, filter);
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static ByteBuffer map(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      raf.close();
+    }
+  }
+
+  public static class Writer implements ReSharperIssueSink, Closeable {
+
+    private final File snapshotFile;
+    private final File partialFile;
+    private final OutputStream os;
+    private final Map<String, Integer> dictionary = Maps.newHashMap();
+    private int dictionaryBytes;
+    private int size;
+    private int previousReportLine;
+    private boolean closed;
+
+    /**
+     * The partial snapshot is a temporary file of its own, so that concurrent writers of the same snapshot do not mix.
+     */
+    private Writer(File snapshotFile, boolean compress) throws IOException {
+      this.snapshotFile = snapshotFile;
+      this.partialFile = File.createTempFile(snapshotFile.getName(), ".part", snapshotFile.getAbsoluteFile().getParentFile());
+      OutputStream fos = new FileOutputStream(partialFile);
+      try {
+        this.os = new BufferedOutputStream(compress ? new GZIPOutputStream(fos, BUFFER_SIZE) : fos, BUFFER_SIZE);
+        os.write(MAGIC);
+        os.write(VERSION);
+      } catch (IOException e) {
+        IOUtils.closeQuietly(fos);
+        FileUtils.deleteQuietly(partialFile);
+        throw e;
+      }
+    }
+
+    @Override
+    public void accept(ReSharperIssue issue) {
+      try {
+        writeVarint(os, zigzag(issue.reportLine() - previousReportLine) + 1);
+        writeString(issue.ruleKey());
+        writeString(issue.filePath());
+        writeVarint(os, issue.line() == null ? 0 : issue.line() + 1);
+        writeVarint(os, issue.offset() == null ? 0 : issue.offset() + 1);
+        writeString(issue.message());
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+      previousReportLine = issue.reportLine();
+      size++;
+    }
+
+    private void writeString(@Nullable String value) throws IOException {
+      if (value == null) {
+        writeVarint(os, NO_STRING);
+        return;
+      }
+      Integer index = dictionary.get(value);
+      if (index != null) {
+        writeVarint(os, index + FIRST_INDEX);
+        return;
+      }
+
+      byte[] bytes = value.getBytes(Charsets.UTF_8);
+      writeVarint(os, NEW_STRING);
+      writeVarint(os, bytes.length);
+      os.write(bytes);
+      dictionaryBytes += bytes.length + DICTIONARY_STRING_OVERHEAD_BYTES;
+      if (dictionaryBytes > DICTIONARY_MAX_BYTES || dictionaryBytes < 0) {
+        dictionary.clear();
+        dictionaryBytes = 0;
+      } else {
+        dictionary.put(value, dictionary.size());
+      }
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /**
+     * Ends the snapshot, and moves it in place.
+     */
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      writeVarint(os, END);
+      os.close();
+
+      FileUtils.deleteQuietly(snapshotFile);
+      FileUtils.moveFile(partialFile, snapshotFile);
+      closed = true;
+    }
+
+    void abortUnlessClosed() {
+      if (!closed) {
+        IOUtils.closeQuietly(os);
+        FileUtils.deleteQuietly(partialFile);
+      }
+    }
+
+  }
+
+  /**
+   * Reads the records one by one, the source being either a mapped snapshot or a decompressing stream.
+   */
+  private abstract static class Reader {
+
+    private final File file;
+    private final List<String> dictionary = Lists.newArrayList();
+    private int dictionaryBytes;
+    private byte[] bytes = new byte[256];
+
+    public Reader(File file) {
+      this.file = file;
+    }
+
+    abstract byte readByte() throws IOException;
+
+    abstract void readBytes(byte[] b, int offset, int length) throws IOException;
+
+    /**
+     * Upper bound of the number of bytes left, or {@link Integer#MAX_VALUE} if unknown.
+     */
+    abstract int remaining();
+
+    public void read(ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+      try {
+        for (byte b : MAGIC) {
+          if (readByte() != b) {
+            throw corrupted("it is not an issue snapshot");
+          }
+        }
+        int version = readByte() & 0xFF;
+        if (version != VERSION) {
+          throw corrupted("unsupported version " + version);
+        }
+
+        int reportLine = 0;
+        int reportLineDelta = readVarint();
+        while (reportLineDelta != END) {
+          reportLine += unzigzag(reportLineDelta - 1);
+          String ruleKey = readString();
+          String filePath = readString();
+          int line = readVarint();
+          int offset = readVarint();
+          String message = readString();
+          if (ruleKey == null || message == null) {
+            throw corrupted("it holds an issue without rule key or message");
+          }
+          if (filter.accept(ruleKey, filePath)) {
+            issues.accept(new ReSharperIssue(reportLine, ruleKey, filePath, line == 0 ? null : line - 1, offset == 0 ? null : offset - 1, message));
+          }
+          reportLineDelta = readVarint();
+        }
+      } catch (BufferUnderflowException e) {
+        throw corrupted("it is truncated");
+      } catch (EOFException e) {
+        throw corrupted("it is truncated");
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
+    @Nullable
+    private String readString() throws IOException {
+      int reference = readVarint();
+      if (reference == NO_STRING) {
+        return null;
+      }
+      if (reference != NEW_STRING) {
+        int index = reference - FIRST_INDEX;
+        if (index < 0 || index >= dictionary.size()) {
+          throw corrupted("it refers to the missing string " + index);
+        }
+        return dictionary.get(index);
+      }
+
+      int length = readVarint();
+      if (length < 0 || length > remaining()) {
+        throw corrupted("it announces a string of " + length + " bytes in " + remaining() + " bytes");
+      }
+      // The bytes are read in growing chunks, so that a corrupted length fails on the end of the stream, before the whole length is allocated
+      int read = Math.min(length, bytes.length);
+      readBytes(bytes, 0, read);
+      while (read < length) {
+        bytes = Arrays.copyOf(bytes, Math.min(length, bytes.length * 2));
+        readBytes(bytes, read, bytes.length - read);
+        read = bytes.length;
+      }
+      String value = new String(bytes, 0, length, Charsets.UTF_8);
+
+      dictionaryBytes += length + DICTIONARY_STRING_OVERHEAD_BYTES;
+      if (dictionaryBytes > DICTIONARY_MAX_BYTES || dictionaryBytes < 0) {
+        dictionary.clear();
+        dictionaryBytes = 0;
+      } else {
+        dictionary.add(value);
+      }
+      return value;
+    }
+
+    private int readVarint() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        byte b = readByte();
+        value |= (b & 0x7F) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw corrupted("it holds an invalid varint");
+    }
+
+    private IllegalStateException corrupted(String reason) {
+      return new IllegalStateException("Unable to read the issue snapshot " + file.getAbsolutePath() + ": " + reason);
+    }
+
+  }
+
+  private static class BufferReader extends Reader {
+
+    private final ByteBuffer buffer;
+
+    public BufferReader(File file, ByteBuffer buffer) {
+      super(file);
+      this.buffer = buffer;
+    }
+
+    @Override
+    byte readByte() {
+      return buffer.get();
+    }
+
+    @Override
+    void readBytes(byte[] b, int offset, int length) {
+      buffer.get(b, offset, length);
+    }
+
+    @Override
+    int remaining() {
+      return buffer.remaining();
+    }
+
+  }
+
+  private static class StreamReader extends Reader {
+
+    private final InputStream is;
+
+    public StreamReader(File file, InputStream is) {
+      super(file);
+      this.is = is;
+    }
+
+    @Override
+    byte readByte() throws IOException {
+      int b = is.read();
+      if (b < 0) {
+        throw new EOFException();
+      }
+      return (byte) b;
+    }
+
+    @Override
+    void readBytes(byte[] b, int offset, int length) throws IOException {
+      ByteStreams.readFully(is, b, offset, length);
+    }
+
+    @Override
+    int remaining() {
+      return Integer.MAX_VALUE;
+    }
+
+  }
+  private static void writeVarint(OutputStream os, int value) throws IOException {
+    int remaining = value;
+    while ((remaining & ~0x7F) != 0) {
+      os.write((remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    os.write(remaining);
+  }
+
+  private static int zigzag(int value) {
+    return (value << 1) ^ (value >> 31);
+  }
+
+  private static int unzigzag(int value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+}
@@ -0,0 +1,332 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Pull parser reading a JSON document token by token, without building it in memory.
+ * <p>
+ * Names are told apart from string values by the colon which follows them. The separators between values are not
+ * checked, as the tokens alone are enough to read a valid document. The strings of skipped values are scanned
+ * without being decoded.
+ */
+class ReSharperJsonReader implements Closeable {
+
+  enum Token {
+    BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Reader reader;
+  private final char[] buffer = new char[BUFFER_SIZE];
+  private final StringBuilder text = new StringBuilder();
+  private int pos;
+  private int limit;
+  private int line = 1;
+
+  private Token peeked;
+  private int peekedLine;
+  private String peekedString;
+  private boolean skipping;
+
+  ReSharperJsonReader(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Line of the next token.
+   */
+  int line() throws IOException {
+    peek();
+    return peekedLine;
+  }
+
+  Token peek() throws IOException {
+    if (peeked != null) {
+      return peeked;
+    }
+
+    int c = nextSignificant();
+    peekedLine = line;
+    if (c == -1) {
+      peeked = Token.END_DOCUMENT;
+    } else if (c == '{') {
+      pos++;
+      peeked = Token.BEGIN_OBJECT;
+    } else if (c == '}') {
+      pos++;
+      peeked = Token.END_OBJECT;
+    } else if (c == '[') {
+      pos++;
+      peeked = Token.BEGIN_ARRAY;
+    } else if (c == ']') {
+      pos++;
+      peeked = Token.END_ARRAY;
+    } else if (c == '"') {
+      peekString();
+    } else if (c == 't' || c == 'f') {
+      peeked = Token.BOOLEAN;
+    } else if (c == 'n') {
+      peeked = Token.NULL;
+    } else if (c == '-' || (c >= '0' && c <= '9')) {
+      peeked = Token.NUMBER;
+    } else {
+      throw syntaxError("Unexpected character '" + (char) c + "'");
+    }
+    return peeked;
+  }
+
+  private void peekString() throws IOException {
+    pos++;
+    int startLine = line;
+    peekedString = readString();
+    if (nextSignificant() == ':') {
+      pos++;
+      peeked = Token.NAME;
+    } else {
+      peeked = Token.STRING;
+    }
+    peekedLine = startLine;
+  }
+
+  boolean hasNext() throws IOException {
+    Token token = peek();
+    return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+  }
+
+  void beginObject() throws IOException {
+    expect(Token.BEGIN_OBJECT);
+  }
+
+  void endObject() throws IOException {
+    expect(Token.END_OBJECT);
+  }
+
+  void beginArray() throws IOException {
+    expect(Token.BEGIN_ARRAY);
+  }
+
+  void endArray() throws IOException {
+    expect(Token.END_ARRAY);
+  }
+
+  String nextName() throws IOException {
+    expect(Token.NAME);
+    return peekedString;
+  }
+
+  String nextString() throws IOException {
+    expect(Token.STRING);
+    return peekedString;
+  }
+
+  int nextInt() throws IOException {
+    expect(Token.NUMBER);
+    String value = readLiteral();
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw syntaxError("Expected an integer instead of \"" + value + "\"");
+    }
+  }
+
+  /**
+   * Skips the next value, with all its nested values, or the next name and its value.
+   */
+  void skipValue() throws IOException {
+    skipping = true;
+    try {
+      skipNestedValues();
+    } finally {
+      skipping = false;
+    }
+  }
+
+  private void skipNestedValues() throws IOException {
+    int depth = 0;
+    do {
+      Token token = peek();
+      peeked = null;
+      switch (token) {
+        case BEGIN_OBJECT:
+        case BEGIN_ARRAY:
+          depth++;
+          break;
+        case END_OBJECT:
+        case END_ARRAY:
+          depth--;
+          break;
+        case NAME:
+          if (depth == 0) {
+            skipNestedValues();
+          }
+          break;
+        case NUMBER:
+        case BOOLEAN:
+        case NULL:
+          readLiteral();
+          break;
+        case END_DOCUMENT:
+          throw syntaxError("Unexpected end of document");
+        default:
+          break;
+      }
+    } while (depth > 0);
+  }
+
+  private void expect(Token expected) throws IOException {
+    Token token = peek();
+    if (token != expected) {
+      throw syntaxError("Expected " + expected + " but was " + token);
+    }
+    peeked = null;
+  }
+
+  /**
+   * Skips whitespace, a byte order mark, and the separators between values.
+   */
+  private int nextSignificant() throws IOException {
+    while (pos < limit || fill()) {
+      char c = buffer[pos];
+      if (c == '\n') {
+        line++;
+      } else if (c != ' ' && c != '\t' && c != '\r' && c != ',' && c != '\uFEFF') {
+        return c;
+      }
+      pos++;
+    }
+    return -1;
+  }
+
+  private String readString() throws IOException {
+    text.setLength(0);
+    while (true) {
+      int start = pos;
+      while (pos < limit) {
+        char c = buffer[pos];
+        if (c == '"') {
+          append(start);
+          pos++;
+          return skipping ? null : text.toString();
+        } else if (c == '\\') {
+          append(start);
+          pos++;
+          readEscape();
+          start = pos;
+        } else {
+          if (c == '\n') {
+            line++;
+          }
+          pos++;
+        }
+      }
+      append(start);
+      if (!fill()) {
+        throw syntaxError("Unterminated string");
+      }
+    }
+  }
+
+  private void append(int start) {
+    if (!skipping) {
+      text.append(buffer, start, pos - start);
+    }
+  }
+
+  private void readEscape() throws IOException {
+    char c = nextChar();
+    switch (c) {
+      case 'b':
+        text.append('\b');
+        break;
+      case 'f':
+        text.append('\f');
+        break;
+      case 'n':
+        text.append('\n');
+        break;
+      case 'r':
+        text.append('\r');
+        break;
+      case 't':
+        text.append('\t');
+        break;
+      case 'u':
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(nextChar(), 16);
+          if (digit == -1) {
+            throw syntaxError("Invalid \\u escape sequence");
+          }
+          value = (value << 4) + digit;
+        }
+        text.append((char) value);
+        break;
+      default:
+        text.append(c);
+        break;
+    }
+  }
+
+  private String readLiteral() throws IOException {
+    text.setLength(0);
+    while (pos < limit || fill()) {
+      char c = buffer[pos];
+      if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'E') {
+        text.append(c);
+        pos++;
+      } else {
+        break;
+      }
+    }
+    return text.toString();
+  }
+
+  private char nextChar() throws IOException {
+    if (pos >= limit && !fill()) {
+      throw syntaxError("Unexpected end of document");
+    }
+    return buffer[pos++];
+  }
+
+  private boolean fill() throws IOException {
+    pos = 0;
+    limit = reader.read(buffer, 0, buffer.length);
+    if (limit <= 0) {
+      limit = 0;
+      return false;
+    }
+    return true;
+  }
+
+  private IllegalStateException syntaxError(String message) {
+    return new IllegalStateException(message + " at line " + line);
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashes of the content of source lines, ignoring whitespace, so that they survive reformatting and lines moving around.
+ * The hashes of the most recently used files are kept.
+ * It may be used by several threads, a file being hashed outside of the lock.
+ */
+public class ReSharperLineHashes {
+
+  private static final int MAX_CACHED_FILES = 64;
+
+  private final Charset charset;
+  private final Map<File, long[]> cache = new LinkedHashMap<File, long[]>(16, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<File, long[]> eldest) {
+      return size() > MAX_CACHED_FILES;
+    }
+
+  };
+
+  public ReSharperLineHashes(Charset charset) {
+    this.charset = charset;
+  }
+
+  /**
+   * Returns the hash of the given line, starting at 1, or 0 if the file has fewer lines.
+   */
+  public long hash(File file, int line) {
+    long[] hashes;
+    synchronized (cache) {
+      hashes = cache.get(file);
+    }
+    if (hashes == null) {
+      hashes = hashes(file);
+      synchronized (cache) {
+        cache.put(file, hashes);
+      }
+    }
+    return line >= 1 && line <= hashes.length ? hashes[line - 1] : 0;
+  }
+
+  private long[] hashes(File file) {
+    List<String> lines;
+    try {
+      lines = Files.readLines(file, charset);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+
+    long[] hashes = new long[lines.size()];
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < hashes.length; i++) {
+      sb.setLength(0);
+      String line = lines.get(i);
+      for (int j = 0; j < line.length(); j++) {
+        char c = line.charAt(j);
+        if (!Character.isWhitespace(c) && c != '\uFEFF') {
+          sb.append(c);
+        }
+      }
+      hashes[i] = new ReSharperFingerprint().add(sb.toString()).value();
+    }
+    return hashes;
+  }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Resolves the character offsets of issues to lines.
+ * <p>
+ * The start offset of each line of a file is computed once, by scanning its bytes, and the tables
+ * of the most recently used files are kept, as issues of a report are grouped by file.
+ * Files up to {@link #MAX_HEAP_READ_BYTES} are read into the heap, which is cheaper than mapping the many small files of a solution
+ * and does not keep them locked on Windows until the mapping is garbage collected. Larger ones are memory-mapped.
+ * Line breaks are "\n", "\r\n" and a lone "\r", and a leading byte order mark is not counted.
+ * It may be used by several threads, a file being indexed outside of the lock.
+ */
+public class ReSharperLineResolver {
+
+  private static final int MAX_CACHED_FILES = 64;
+
+  static final int MAX_HEAP_READ_BYTES = 16 * 1024 * 1024;
+
+  private final Charset charset;
+  private final boolean singleByteCharset;
+  private final int maxHeapReadBytes;
+  private final Map<File, LineIndex> cache = new LinkedHashMap<File, LineIndex>(16, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<File, LineIndex> eldest) {
+      return size() > MAX_CACHED_FILES;
+    }
+
+  };
+
+  public ReSharperLineResolver(Charset charset) {
+    this(charset, MAX_HEAP_READ_BYTES);
+  }
+
+  ReSharperLineResolver(Charset charset, int maxHeapReadBytes) {
+    this.charset = charset;
+    this.singleByteCharset = !Charsets.UTF_8.equals(charset) && charset.newEncoder().maxBytesPerChar() == 1;
+    this.maxHeapReadBytes = maxHeapReadBytes;
+  }
+
+  /**
+   * Returns the line, starting at 1, of the given offset, or null if the offset is beyond the end of the file.
+   */
+  @Nullable
+  public Integer line(File file, int offset) {
+    LineIndex index;
+    synchronized (cache) {
+      index = cache.get(file);
+    }
+    if (index == null) {
+      index = index(file);
+      synchronized (cache) {
+        cache.put(file, index);
+      }
+    }
+    return index.line(offset);
+  }
+
+  private LineIndex index(File file) {
+    try {
+      if (Charsets.UTF_8.equals(charset) || singleByteCharset) {
+        return indexBytes(file);
+      }
+      return indexChars(Files.toString(file, charset));
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private LineIndex indexBytes(File file) throws IOException {
+    RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = randomAccessFile.getChannel();
+      long size = channel.size();
+      ByteBuffer buffer = size <= maxHeapReadBytes ? read(channel, (int) size) : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      int limit = buffer.limit();
+
+      LineIndex index = new LineIndex();
+      int pos = 0;
+      if (!singleByteCharset && limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF) {
+        pos = 3;
+      }
+
+      int chars = 0;
+      for (; pos < limit; pos++) {
+        byte b = buffer.get(pos);
+        if (singleByteCharset) {
+          chars++;
+        } else if ((b & 0xC0) != 0x80) {
+          // Characters outside of the BMP are counted as a surrogate pair, as by ReSharper
+          chars += (b & 0xF8) == 0xF0 ? 2 : 1;
+        }
+
+        if (b == '\n' || b == '\r' && (pos + 1 == limit || buffer.get(pos + 1) != '\n')) {
+          index.addLineStart(chars);
+        }
+      }
+      index.length = chars;
+      return index;
+    } finally {
+      IOUtils.closeQuietly(randomAccessFile);
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, int size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+      // Keep reading
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static LineIndex indexChars(String content) {
+    LineIndex index = new LineIndex();
+    int start = !content.isEmpty() && content.charAt(0) == '\uFEFF' ? 1 : 0;
+    for (int i = start; i < content.length(); i++) {
+      char c = content.charAt(i);
+      if (c == '\n' || c == '\r' && (i + 1 == content.length() || content.charAt(i + 1) != '\n')) {
+        index.addLineStart(i + 1 - start);
+      }
+    }
+    index.length = content.length() - start;
+    return index;
+  }
+
+  private static class LineIndex {
+
+    private int[] lineStarts = new int[64];
+    private int lines = 1;
+    private int length;
+
+    public void addLineStart(int offset) {
+      if (lines == lineStarts.length) {
+        lineStarts = Arrays.copyOf(lineStarts, lines * 2);
+      }
+      lineStarts[lines] = offset;
+      lines++;
+    }
+
+    @Nullable
+    public Integer line(int offset) {
+      if (offset < 0 || offset > length) {
+        return null;
+      }
+
+      int i = Arrays.binarySearch(lineStarts, 0, lines, offset);
+      return i >= 0 ? (i + 1) : -(i + 1);
+    }
+
+  }
+
+}
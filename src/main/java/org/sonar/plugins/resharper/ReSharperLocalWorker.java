@@ -0,0 +1,47 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+/**
+ * Runs inspectcode on this machine: several local workers run concurrently, one inspectcode process each.
+ */
+public class ReSharperLocalWorker implements ReSharperWorker {
+
+  private final ReSharperExecutor executor;
+  private final String executable;
+  private final int id;
+
+  public ReSharperLocalWorker(ReSharperExecutor executor, String executable, int id) {
+    this.executor = executor;
+    this.executable = executable;
+    this.id = id;
+  }
+
+  @Override
+  public void inspect(ReSharperShard shard, int timeoutMinutes) {
+    executor.execute(executable, shard.project(), shard.solutionFile(), shard.dotSettingsFile(), shard.reportFile(), timeoutMinutes);
+  }
+
+  @Override
+  public String toString() {
+    return "local worker " + id;
+  }
+
+}
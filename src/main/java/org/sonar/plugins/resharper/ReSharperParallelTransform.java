@@ -0,0 +1,132 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Applies a function to batches of elements on several threads, while returning the results in the order of the elements.
+ * <p>
+ * The elements are read, and the results consumed, on the calling thread, and at most two batches per thread
+ * are in flight, so that the memory used does not depend on the number of elements.
+ */
+public class ReSharperParallelTransform implements Closeable {
+
+  private final int threads;
+  private final int batchSize;
+  private final ExecutorService executorService;
+
+  public ReSharperParallelTransform(int threads, int batchSize) {
+    this.threads = threads;
+    this.batchSize = batchSize;
+    this.executorService = threads > 1 ?
+      Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("resharper-resolver-%d").setDaemon(true).build()) :
+      null;
+  }
+
+  public <F, T> Iterator<T> transform(Iterator<F> elements, Function<? super F, T> function) {
+    if (executorService == null) {
+      return Iterators.transform(elements, function);
+    }
+    return new OrderedIterator<F, T>(elements, function);
+  }
+
+  @Override
+  public void close() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+    }
+  }
+
+  private class OrderedIterator<F, T> extends AbstractIterator<T> {
+
+    private final Iterator<F> elements;
+    private final Function<? super F, T> function;
+    private final Deque<Future<List<T>>> inFlight = new ArrayDeque<Future<List<T>>>();
+    private Iterator<T> current = Collections.<T>emptyList().iterator();
+
+    public OrderedIterator(Iterator<F> elements, Function<? super F, T> function) {
+      this.elements = elements;
+      this.function = function;
+    }
+
+    @Override
+    protected T computeNext() {
+      while (!current.hasNext()) {
+        submitBatches();
+        if (inFlight.isEmpty()) {
+          return endOfData();
+        }
+        current = result(inFlight.removeFirst()).iterator();
+      }
+      return current.next();
+    }
+
+    private void submitBatches() {
+      while (inFlight.size() < 2 * threads && elements.hasNext()) {
+        final List<F> batch = Lists.newArrayListWithCapacity(batchSize);
+        while (batch.size() < batchSize && elements.hasNext()) {
+          batch.add(elements.next());
+        }
+
+        inFlight.addLast(executorService.submit(new Callable<List<T>>() {
+          @Override
+          public List<T> call() {
+            List<T> results = Lists.newArrayListWithCapacity(batch.size());
+            for (F element : batch) {
+              results.add(function.apply(element));
+            }
+            return results;
+          }
+        }));
+      }
+    }
+
+    private List<T> result(Future<List<T>> future) {
+      try {
+        return future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while resolving the ReSharper issues", e);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+
+  }
+
+}
@@ -33,6 +33,24 @@ public class ReSharperPlugin extends SonarPlugin {
   public static final String SOLUTION_FILE_PROPERTY_KEY = "sonar.resharper.solutionFile";
   public static final String INSPECTCODE_PATH_PROPERTY_KEY = "sonar.resharper.inspectCodePath";
   public static final String TIMEOUT_MINUTES_PROPERTY_KEY = "sonar.resharper.timeoutMinutes";
+  public static final String STALL_TIMEOUT_MINUTES_PROPERTY_KEY = "sonar.resharper.stallTimeoutMinutes";
+  public static final String INSPECTCODE_FORMAT_PROPERTY_KEY = "sonar.resharper.inspectCodeFormat";
+  public static final String REPORT_PATH_PROPERTY_KEY = "sonar.resharper.reportPath";
+  public static final String CACHE_DIRECTORY_PROPERTY_KEY = "sonar.resharper.cacheDirectory";
+  public static final String REMOTE_CACHE_URL_PROPERTY_KEY = "sonar.resharper.remoteCacheUrl";
+  public static final String WORKER_URLS_PROPERTY_KEY = "sonar.resharper.workerUrls";
+  public static final String WORKER_SHARED_ROOT_PROPERTY_KEY = "sonar.resharper.workerSharedRoot";
+  public static final String MAX_CONCURRENT_RUNS_PROPERTY_KEY = "sonar.resharper.maxConcurrentRuns";
+  public static final String RULE_GROUPS_PROPERTY_KEY = "sonar.resharper.ruleGroups";
+  public static final String EARLY_START_PROPERTY_KEY = "sonar.resharper.earlyStart";
+  public static final String ISSUE_BUFFER_SIZE_PROPERTY_KEY = "sonar.resharper.issueBufferSize";
+  public static final String MAX_ISSUES_PER_RULE_PROPERTY_KEY = "sonar.resharper.maxIssuesPerRule";
+  public static final String MAX_ISSUES_PER_FILE_PROPERTY_KEY = "sonar.resharper.maxIssuesPerFile";
+  public static final String BASELINE_PATH_PROPERTY_KEY = "sonar.resharper.baselinePath";
+  public static final String UPDATE_BASELINE_PROPERTY_KEY = "sonar.resharper.updateBaseline";
+  public static final String HISTORY_PATH_PROPERTY_KEY = "sonar.resharper.historyPath";
+  public static final String HOST_SLOTS_DIRECTORY_PROPERTY_KEY = "sonar.resharper.hostSlotsDirectory";
+  public static final String HOST_SLOTS_PROPERTY_KEY = "sonar.resharper.hostSlots";
 
   public static final String OLD_INSTALL_DIRECTORY_KEY = "sonar.resharper.installDirectory";
 
@@ -50,9 +68,12 @@ public class ReSharperPlugin extends SonarPlugin {
 
     builder.addAll(pluginProperties());
 
+    builder.add(ReSharperRuleCatalog.class);
     builder.add(ReSharperExecutor.class);
     builder.add(ReSharperReportParser.class);
     builder.add(ReSharperDotSettingsWriter.class);
+    builder.add(ReSharperReportCache.class);
+    builder.add(ReSharperShardDispatcher.class);
 
     return builder.build();
   }
@@ -61,14 +82,15 @@ public class ReSharperPlugin extends SonarPlugin {
     return ImmutableList.of(
       PropertyDefinition.builder(PROJECT_NAME_PROPERTY_KEY)
         .name("Visual Studio project name")
-        .description("Example: MyLibrary")
+        .description("Comma-separated list of projects to inspect separately. A project prefixed by the file name of a solution only applies to that solution. "
+          + "Example: MyLibrary,Backend.sln:MyService")
         .category(CATEGORY)
         .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
         .build(),
 
       PropertyDefinition.builder(SOLUTION_FILE_PROPERTY_KEY)
         .name("Solution file")
-        .description("Example: C:/Projects/MyProject/MySolution.sln")
+        .description("Comma-separated list of solutions to inspect. Example: C:/Projects/MyProject/MySolution.sln")
         .category(CATEGORY)
         .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
         .build(),
@@ -91,6 +113,162 @@ public class ReSharperPlugin extends SonarPlugin {
         .type(PropertyType.INTEGER)
         .build(),
 
+      PropertyDefinition.builder(STALL_TIMEOUT_MINUTES_PROPERTY_KEY)
+        .name("ReSharper no-progress timeout")
+        .description("Time in minutes after which ReSharper's execution should be interrupted if it printed nothing in the meantime. "
+          + "Any output line counts as progress, so an execution which is stuck but keeps printing is only interrupted by the execution timeout. "
+          + "0 disables this check.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(INSPECTCODE_FORMAT_PROPERTY_KEY)
+        .name("ReSharper report format")
+        .description("Format of the reports written by inspectcode, passed as its \"format\" argument: the one parsed faster depends on the ReSharper version. "
+          + "Leave empty to use the default format of inspectcode, which is the only choice for versions that do not support the argument.")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.SINGLE_SELECT_LIST)
+        .options("Xml", "Sarif")
+        .build(),
+
+      PropertyDefinition.builder(REPORT_PATH_PROPERTY_KEY)
+        .name("Report path")
+        .description("Existing InspectCode report, XML or SARIF, plain or gzip compressed, to import instead of running ReSharper. Example: reports/resharper-report.xml.gz")
+        .category(CATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+
+      PropertyDefinition.builder(CACHE_DIRECTORY_PROPERTY_KEY)
+        .name("Report cache directory")
+        .description("Local directory in which reports are cached, keyed by a hash of the sources, project files, settings and ReSharper version. Example: C:/resharper-cache")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+
+      PropertyDefinition.builder(REMOTE_CACHE_URL_PROPERTY_KEY)
+        .name("Remote report cache URL")
+        .description("Base URL of a report cache shared by all build agents, accepting GET and PUT requests on <url>/<key>. Example: http://cache.example.com/resharper")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+
+      PropertyDefinition.builder(WORKER_URLS_PROPERTY_KEY)
+        .name("Remote worker URLs")
+        .description("Comma-separated list of the base URLs of remote workers running inspectcode, one project at a time. "
+          + "Workers must have access to the same sources. Leave empty to run inspectcode locally. Example: http://win-agent-1:8080,http://win-agent-2:8080")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+
+      PropertyDefinition.builder(WORKER_SHARED_ROOT_PROPERTY_KEY)
+        .name("Remote worker shared root")
+        .description("Local path of the workspace shared with the remote workers. Solutions are sent to the workers relative to it, "
+          + "so that they are resolved against the workers' own mount of the workspace. Leave empty to send the absolute path of the solutions.")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+
+      PropertyDefinition.builder(MAX_CONCURRENT_RUNS_PROPERTY_KEY)
+        .name("Maximum concurrent local runs")
+        .description("Maximum number of inspectcode processes run at once on this machine, when there is no remote worker.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(RULE_GROUPS_PROPERTY_KEY)
+        .name("Rule groups")
+        .description("Number of groups the active rules are split into, each inspected by a separate inspectcode run of the same projects. "
+          + "Trades cores for time on solutions dominated by one large project, when the runs are concurrent.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(EARLY_START_PROPERTY_KEY)
+        .name("Start ReSharper early")
+        .description("Start ReSharper as soon as the analysis of the module starts, so that it runs while the other sensors do. "
+          + "The run is wasted if the module turns out to have no file of the language.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(ISSUE_BUFFER_SIZE_PROPERTY_KEY)
+        .name("Issue buffer size")
+        .description("Memory in megabytes that the issues of the reports may use before being spilled to disk in the working directory")
+        .defaultValue("64")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(MAX_ISSUES_PER_RULE_PROPERTY_KEY)
+        .name("Maximum number of issues per rule")
+        .description("Issues of a rule beyond this number are not saved, but counted and logged. 0 means no limit.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(MAX_ISSUES_PER_FILE_PROPERTY_KEY)
+        .name("Maximum number of issues per file")
+        .description("Issues of a file beyond this number are not saved, but counted and logged. 0 means no limit.")
+        .defaultValue("0")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
+      PropertyDefinition.builder(BASELINE_PATH_PROPERTY_KEY)
+        .name("Baseline path")
+        .description("File holding the fingerprints of the issues of an accepted analysis. When set, only the issues which are not in it are saved. "
+          + "Example: resharper-baseline.bin")
+        .category(CATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+
+      PropertyDefinition.builder(UPDATE_BASELINE_PROPERTY_KEY)
+        .name("Update the baseline")
+        .description("Save all issues, and replace the baseline file by the fingerprints of the issues of this analysis.")
+        .defaultValue("false")
+        .category(CATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .type(PropertyType.BOOLEAN)
+        .build(),
+
+      PropertyDefinition.builder(HISTORY_PATH_PROPERTY_KEY)
+        .name("History path")
+        .description("File recording how long each project took to inspect, so that the longest projects are dispatched to the workers first. "
+          + "Defaults to a file in the cache directory, if any. Example: resharper-history.properties")
+        .category(CATEGORY)
+        .onlyOnQualifiers(Qualifiers.PROJECT, Qualifiers.MODULE)
+        .build(),
+
+      PropertyDefinition.builder(HOST_SLOTS_DIRECTORY_PROPERTY_KEY)
+        .name("Host slots directory")
+        .description("Directory shared by all the analyses of a build agent, used to limit how many inspectcode processes they run at once. "
+          + "Analyses waiting for a slot are served in order. Leave empty to not limit them. Example: C:/resharper-slots")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .build(),
+
+      PropertyDefinition.builder(HOST_SLOTS_PROPERTY_KEY)
+        .name("Host slots")
+        .description("Maximum number of inspectcode processes run at once by all the analyses sharing the host slots directory.")
+        .defaultValue("1")
+        .category(CATEGORY)
+        .onQualifiers(Qualifiers.PROJECT)
+        .type(PropertyType.INTEGER)
+        .build(),
+
       deprecatedPropertyDefinition(OLD_INSTALL_DIRECTORY_KEY));
   }
 
@@ -0,0 +1,222 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline profiling of the cost of the rules, to make informed trade-offs in the quality profile.
+ * <p>
+ * inspectcode is first run with no rule enabled, to measure the cost of loading the solution, and then once per rule
+ * category with only the rules of that category enabled. The time of each category is the time of its run minus the one
+ * of the baseline run. Each run is repeated and the fastest one is kept, to reduce the noise of the machine.
+ * <p>
+ * rules.xml does not categorize the rules: the category of a rule is the prefix of its key before "::", such as
+ * "CSharpWarnings", or else the first word of its key, such as "Redundant". Categories of fewer than
+ * {@link #MIN_RULES_PER_CATEGORY} rules are profiled together as "Other", to bound the number of runs.
+ */
+public class ReSharperProfiler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperProfiler.class);
+
+  static final int MIN_RULES_PER_CATEGORY = 3;
+  static final String OTHER_CATEGORY = "Other";
+
+  private final ReSharperExecutor executor;
+  private final ReSharperReportParser parser;
+  private final ReSharperDotSettingsWriter writer;
+  private final Ticker ticker;
+
+  public ReSharperProfiler(ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer) {
+    this(executor, parser, writer, Ticker.systemTicker());
+  }
+
+  ReSharperProfiler(ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer, Ticker ticker) {
+    this.executor = executor;
+    this.parser = parser;
+    this.writer = writer;
+    this.ticker = ticker;
+  }
+
+  /**
+   * Returns the cost of each category, the most expensive first.
+   */
+  public List<Cost> profile(String executable, String project, String solutionFile, List<String> ruleKeys, File workDir, int timeoutMinutes, int repetitions) {
+    Map<String, List<String>> categories = categories(ruleKeys);
+    LOG.info("Profiling " + ruleKeys.size() + " rules in " + categories.size() + " categories, running inspectcode " + repetitions + " times per category");
+
+    Run baseline = run(executable, project, solutionFile, ImmutableList.<String>of(), workDir, timeoutMinutes, repetitions);
+    LOG.info("Baseline run without any rule: " + baseline.millis + " ms");
+
+    List<Cost> costs = Lists.newArrayList();
+    for (Map.Entry<String, List<String>> category : categories.entrySet()) {
+      Run run = run(executable, project, solutionFile, category.getValue(), workDir, timeoutMinutes, repetitions);
+      long millis = Math.max(0, run.millis - baseline.millis);
+      LOG.info("Category " + category.getKey() + ": " + millis + " ms, " + run.issues + " issues");
+      costs.add(new Cost(category.getKey(), category.getValue().size(), millis, run.issues));
+    }
+
+    Collections.sort(costs, new Comparator<Cost>() {
+      @Override
+      public int compare(Cost a, Cost b) {
+        return a.millis == b.millis ? a.category.compareTo(b.category) : (a.millis > b.millis ? -1 : 1);
+      }
+    });
+    return costs;
+  }
+
+  private Run run(String executable, String project, String solutionFile, List<String> ruleKeys, File workDir, int timeoutMinutes, int repetitions) {
+    File dotSettingsFile = new File(workDir, "resharper-profile.DotSettings");
+    File reportFile = new File(workDir, "resharper-profile-report.xml");
+    writer.writeExclusive(ruleKeys, dotSettingsFile);
+
+    long fastestNanos = Long.MAX_VALUE;
+    for (int i = 0; i < Math.max(1, repetitions); i++) {
+      long startNanos = ticker.read();
+      executor.execute(executable, project, solutionFile, dotSettingsFile, reportFile, timeoutMinutes);
+      fastestNanos = Math.min(fastestNanos, ticker.read() - startNanos);
+    }
+
+    return new Run(TimeUnit.NANOSECONDS.toMillis(fastestNanos), parser.parse(reportFile).size());
+  }
+
+  static Map<String, List<String>> categories(List<String> ruleKeys) {
+    Map<String, List<String>> byCategory = Maps.newTreeMap();
+    for (String ruleKey : ruleKeys) {
+      String category = category(ruleKey);
+      List<String> keys = byCategory.get(category);
+      if (keys == null) {
+        keys = Lists.newArrayList();
+        byCategory.put(category, keys);
+      }
+      keys.add(ruleKey);
+    }
+
+    Map<String, List<String>> result = Maps.newLinkedHashMap();
+    List<String> others = Lists.newArrayList();
+    for (Map.Entry<String, List<String>> entry : byCategory.entrySet()) {
+      if (entry.getValue().size() < MIN_RULES_PER_CATEGORY) {
+        others.addAll(entry.getValue());
+      } else {
+        result.put(entry.getKey(), entry.getValue());
+      }
+    }
+    if (!others.isEmpty()) {
+      List<String> keys = result.get(OTHER_CATEGORY);
+      if (keys == null) {
+        result.put(OTHER_CATEGORY, others);
+      } else {
+        keys.addAll(others);
+      }
+    }
+    return result;
+  }
+
+  static String category(String ruleKey) {
+    int separator = ruleKey.indexOf("::");
+    if (separator > 0) {
+      return ruleKey.substring(0, separator);
+    }
+    int end = 1;
+    while (end < ruleKey.length() && Character.isLowerCase(ruleKey.charAt(end))) {
+      end++;
+    }
+    return ruleKey.substring(0, end);
+  }
+
+  /**
+   * Writes the costs as a table, with the share of each category in the total time of the rules.
+   */
+  public static void writeReport(List<Cost> costs, Writer writer) throws IOException {
+    long totalMillis = 0;
+    for (Cost cost : costs) {
+      totalMillis += cost.millis;
+    }
+
+    writer.write(String.format(Locale.ENGLISH, "%-30s %6s %12s %7s %8s%n", "Category", "Rules", "Time (ms)", "Share", "Issues"));
+    for (Cost cost : costs) {
+      double share = totalMillis == 0 ? 0 : 100.0 * cost.millis / totalMillis;
+      writer.write(String.format(Locale.ENGLISH, "%-30s %6d %12d %6.1f%% %8d%n", cost.category, cost.rules, cost.millis, share, cost.issues));
+    }
+  }
+
+  private static class Run {
+
+    private final long millis;
+    private final int issues;
+
+    private Run(long millis, int issues) {
+      this.millis = millis;
+      this.issues = issues;
+    }
+
+  }
+
+  public static class Cost {
+
+    private final String category;
+    private final int rules;
+    private final long millis;
+    private final int issues;
+
+    Cost(String category, int rules, long millis, int issues) {
+      this.category = category;
+      this.rules = rules;
+      this.millis = millis;
+      this.issues = issues;
+    }
+
+    public String category() {
+      return category;
+    }
+
+    public int rules() {
+      return rules;
+    }
+
+    /**
+     * Time attributable to the rules of the category, on top of the time needed to load the solution.
+     */
+    public long millis() {
+      return millis;
+    }
+
+    public int issues() {
+      return issues;
+    }
+
+  }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Tracks the progress of inspectcode from its output: any line is a sign of life, and the lines announcing
+ * that a project is loaded or that a file is inspected are counted.
+ * Lines are consumed by the thread reading the output, while the other accessors are called by the waiting thread.
+ * <p>
+ * The counts are best effort: the patterns are guesses at the console output of inspectcode, which is not documented,
+ * and have not been checked against a given version. A version printing other messages only leaves the counts at 0,
+ * as the stall watchdog relies on the output lines alone.
+ */
+public class ReSharperProgress {
+
+  private static final Pattern PROJECT = Pattern.compile("(?i)\\s*(?:Loading|Loaded)\\s+project\\b.*");
+  private static final Pattern FILE = Pattern.compile("(?i)\\s*(?:Inspecting|Analyzing)\\s+\\S.*");
+
+  private final long startMillis;
+  private volatile long lastActivityMillis;
+  private volatile int projects;
+  private volatile int files;
+
+  public ReSharperProgress(long startMillis) {
+    this.startMillis = startMillis;
+    this.lastActivityMillis = startMillis;
+  }
+
+  public void consumeLine(String line) {
+    lastActivityMillis = System.currentTimeMillis();
+    if (FILE.matcher(line).matches()) {
+      files++;
+    } else if (PROJECT.matcher(line).matches()) {
+      projects++;
+    }
+  }
+
+  public int projects() {
+    return projects;
+  }
+
+  public int files() {
+    return files;
+  }
+
+  public long idleMillis(long nowMillis) {
+    return nowMillis - lastActivityMillis;
+  }
+
+  public String summary(long nowMillis) {
+    long elapsedMillis = Math.max(1, nowMillis - startMillis);
+    return projects + " projects loaded, " + files + " files inspected in " + (elapsedMillis / 1000) + " s ("
+      + String.format(Locale.ENGLISH, "%.1f", files * 1000.0 / elapsedMillis) + " files/s)";
+  }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Client of a team-wide issue snapshot cache, shared by all the build agents.
+ * <p>
+ * The protocol is plain HTTP, so that any static file server accepting uploads can implement it.
+ * Entries are identified by a {@link ReSharperCacheKey} and hold a gzip compressed {@link ReSharperIssueSnapshot}:
+ * <ul>
+ *   <li>{@code GET <baseUrl>/<key>} answers {@code 200} with the snapshot as body, or {@code 404} when the key is unknown</li>
+ *   <li>{@code PUT <baseUrl>/<key>} stores the snapshot sent as body and answers any {@code 2xx} code</li>
+ * </ul>
+ * Both bodies are streamed with the {@code application/gzip} content type.
+ */
+public class ReSharperRemoteCacheClient {
+
+  private static final int CONNECT_TIMEOUT_MILLISECONDS = 10 * 1000;
+  private static final int READ_TIMEOUT_MILLISECONDS = 60 * 1000;
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final String CONTENT_TYPE = "application/gzip";
+
+  private final String baseUrl;
+
+  public ReSharperRemoteCacheClient(String baseUrl) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl : (baseUrl + "/");
+  }
+
+  /**
+   * Downloads the snapshot to the target file.
+   *
+   * @return false if the cache does not hold the key
+   */
+  public boolean get(String key, File target) throws IOException {
+    HttpURLConnection connection = open(key);
+    try {
+      int status = connection.getResponseCode();
+      if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+        return false;
+      } else if (status != HttpURLConnection.HTTP_OK) {
+        throw new UnexpectedStatusException(status, "downloading", connection);
+      }
+
+      File partial = File.createTempFile(target.getName(), ".part", target.getAbsoluteFile().getParentFile());
+      try {
+        InputStream is = connection.getInputStream();
+        try {
+          OutputStream os = new BufferedOutputStream(new FileOutputStream(partial), BUFFER_SIZE);
+          try {
+            ByteStreams.copy(is, os);
+          } finally {
+            os.close();
+          }
+        } finally {
+          IOUtils.closeQuietly(is);
+        }
+
+        FileUtils.deleteQuietly(target);
+        if (!partial.renameTo(target)) {
+          throw new IOException("Unable to rename " + partial.getAbsolutePath() + " to " + target.getAbsolutePath());
+        }
+        return true;
+      } finally {
+        FileUtils.deleteQuietly(partial);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Streamed uploads are not retried by {@link HttpURLConnection} when a kept-alive connection turns out to be stale,
+   * which is likely as the upload happens after ReSharper's execution: retry once on I/O failures and server errors,
+   * but not when the server rejected the upload.
+   */
+  public void put(String key, File snapshot) throws IOException {
+    try {
+      doPut(key, snapshot);
+    } catch (UnexpectedStatusException e) {
+      if (e.status / 100 != 5) {
+        throw e;
+      }
+      doPut(key, snapshot);
+    } catch (IOException e) {
+      doPut(key, snapshot);
+    }
+  }
+
+  private void doPut(String key, File snapshot) throws IOException {
+    HttpURLConnection connection = open(key);
+    try {
+      connection.setRequestMethod("PUT");
+      connection.setDoOutput(true);
+      connection.setChunkedStreamingMode(BUFFER_SIZE);
+      connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+
+      InputStream is = new BufferedInputStream(new FileInputStream(snapshot), BUFFER_SIZE);
+      try {
+        OutputStream os = connection.getOutputStream();
+        try {
+          ByteStreams.copy(is, os);
+        } finally {
+          os.close();
+        }
+      } finally {
+        IOUtils.closeQuietly(is);
+      }
+
+      int status = connection.getResponseCode();
+      if (status / 100 != 2) {
+        throw new UnexpectedStatusException(status, "uploading", connection);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private HttpURLConnection open(String key) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + key).openConnection();
+    connection.setConnectTimeout(CONNECT_TIMEOUT_MILLISECONDS);
+    connection.setReadTimeout(READ_TIMEOUT_MILLISECONDS);
+    connection.setUseCaches(false);
+    connection.setRequestProperty("Accept", CONTENT_TYPE);
+    return connection;
+  }
+
+  private static class UnexpectedStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public UnexpectedStatusException(int status, String action, HttpURLConnection connection) {
+      super("Unexpected HTTP status " + status + " while " + action + " " + connection.getURL());
+      this.status = status;
+    }
+
+  }
+
+}
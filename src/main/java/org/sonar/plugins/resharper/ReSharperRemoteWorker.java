@@ -0,0 +1,165 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import javax.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client of a remote worker node, which runs inspectcode on behalf of the analysis.
+ * <p>
+ * The worker must have access to the same sources as the analysis, for example through a shared workspace,
+ * as only the solution path is sent to it. When the shared root is set, this path is relative to it and uses '/' as separator,
+ * so that a worker mounting the workspace elsewhere, possibly on another operating system, resolves it against its own mount.
+ * Otherwise it is the absolute path of the solution on the analysis machine. The protocol is plain HTTP:
+ * <ul>
+ *   <li>{@code POST <baseUrl>/inspect?solution=<path>&project=<name>&timeoutMinutes=<minutes>}
+ *   with the DotSettings file as {@code application/xml} body</li>
+ *   <li>the worker answers {@code 200} with the InspectCode report, plain or gzip compressed, streamed as body</li>
+ *   <li>any other status is a failure, described by the body, and the shard is then retried on another worker</li>
+ * </ul>
+ */
+public class ReSharperRemoteWorker implements ReSharperWorker {
+
+  private static final int CONNECT_TIMEOUT_MILLISECONDS = 10 * 1000;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final String baseUrl;
+  private final File baseDir;
+  private final File sharedRoot;
+
+  /**
+   * Relative solution paths are resolved against the base directory of the analysis.
+   */
+  public ReSharperRemoteWorker(String baseUrl, File baseDir, @Nullable File sharedRoot) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.baseDir = baseDir;
+    this.sharedRoot = sharedRoot;
+  }
+
+  @Override
+  public void inspect(ReSharperShard shard, int timeoutMinutes) throws IOException {
+    URL url = new URL(baseUrl + "/inspect"
+      + "?solution=" + URLEncoder.encode(solutionPath(shard.solutionFile()), "UTF-8")
+      + "&project=" + URLEncoder.encode(shard.project(), "UTF-8")
+      + "&timeoutMinutes=" + timeoutMinutes);
+
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      connection.setConnectTimeout(CONNECT_TIMEOUT_MILLISECONDS);
+      connection.setReadTimeout((int) TimeUnit.MINUTES.toMillis(timeoutMinutes + 1L));
+      connection.setUseCaches(false);
+      connection.setRequestMethod("POST");
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/xml");
+
+      OutputStream os = connection.getOutputStream();
+      try {
+        Files.copy(shard.dotSettingsFile(), os);
+      } finally {
+        os.close();
+      }
+
+      int status = connection.getResponseCode();
+      if (status != HttpURLConnection.HTTP_OK) {
+        throw new IOException("Worker " + baseUrl + " failed to inspect the " + shard + " with HTTP status " + status + ": " + errorMessage(connection));
+      }
+
+      download(connection, shard.reportFile());
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  String solutionPath(String solutionFile) throws IOException {
+    File file = new File(solutionFile);
+    String path = FilenameUtils.normalize((file.isAbsolute() ? file : new File(baseDir, solutionFile)).getAbsolutePath());
+    if (sharedRoot == null) {
+      return path;
+    }
+
+    String root = FilenameUtils.normalizeNoEndSeparator(sharedRoot.getAbsolutePath()) + File.separator;
+    if (path == null || !path.startsWith(root)) {
+      throw new IOException("The solution " + solutionFile + " is not under the shared root " + sharedRoot.getAbsolutePath() + " of the remote workers");
+    }
+    return FilenameUtils.separatorsToUnix(path.substring(root.length()));
+  }
+
+  private static void download(HttpURLConnection connection, File reportFile) throws IOException {
+    File partial = File.createTempFile(reportFile.getName(), ".part", reportFile.getAbsoluteFile().getParentFile());
+    try {
+      InputStream is = connection.getInputStream();
+      try {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(partial), BUFFER_SIZE);
+        try {
+          ByteStreams.copy(is, os);
+        } finally {
+          os.close();
+        }
+      } finally {
+        IOUtils.closeQuietly(is);
+      }
+
+      FileUtils.deleteQuietly(reportFile);
+      if (!partial.renameTo(reportFile)) {
+        throw new IOException("Unable to rename " + partial.getAbsolutePath() + " to " + reportFile.getAbsolutePath());
+      }
+    } finally {
+      FileUtils.deleteQuietly(partial);
+    }
+  }
+
+  private static String errorMessage(HttpURLConnection connection) {
+    InputStream is = connection.getErrorStream();
+    if (is == null) {
+      return "";
+    }
+    try {
+      return IOUtils.toString(is, Charsets.UTF_8.name());
+    } catch (IOException e) {
+      return "";
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "worker " + baseUrl;
+  }
+
+}
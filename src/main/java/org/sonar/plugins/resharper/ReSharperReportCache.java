@@ -0,0 +1,194 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+import org.sonar.api.config.Settings;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cache of the issues of the reports, stored as compressed {@link ReSharperIssueSnapshot}s and keyed by {@link ReSharperCacheKey},
+ * with an optional local directory and an optional remote {@link ReSharperRemoteCacheClient}.
+ * Remote entries stored as gzip compressed reports by previous versions are still read, as the format of a report is detected from its content.
+ * <p>
+ * The cache never fails an analysis: errors are logged and the report is then computed as usual.
+ * Fetched entries are read through once, without building any issue, and truncated or corrupted entries are evicted.
+ */
+public class ReSharperReportCache implements BatchComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperReportCache.class);
+
+  private static final ReSharperIssueSink IGNORED_ISSUES = new ReSharperIssueSink() {
+    @Override
+    public void accept(ReSharperIssue issue) {
+      // only checks that the entry can be read
+    }
+  };
+
+  private final File localDirectory;
+  private final ReSharperRemoteCacheClient remote;
+
+  public ReSharperReportCache(Settings settings) {
+    this(settings.getString(ReSharperPlugin.CACHE_DIRECTORY_PROPERTY_KEY), settings.getString(ReSharperPlugin.REMOTE_CACHE_URL_PROPERTY_KEY));
+  }
+
+  public ReSharperReportCache(@Nullable String localDirectory, @Nullable String remoteUrl) {
+    this.localDirectory = localDirectory == null ? null : new File(localDirectory);
+    this.remote = remoteUrl == null ? null : new ReSharperRemoteCacheClient(remoteUrl);
+  }
+
+  public boolean isEnabled() {
+    return localDirectory != null || remote != null;
+  }
+
+  @Nullable
+  public String key(String inspectCodePath, String project, File solutionFile, File dotSettingsFile) {
+    String sourceDigest = sourceDigest(solutionFile, Collections.<File>emptyList());
+    return sourceDigest == null ? null : key(inspectCodePath, project, solutionFile, dotSettingsFile, sourceDigest);
+  }
+
+  /**
+   * The source digest, computed once per solution by {@link #sourceDigest(File, Collection)}, is shared by the keys of its projects.
+   */
+  @Nullable
+  public String key(String inspectCodePath, String project, File solutionFile, File dotSettingsFile, String sourceDigest) {
+    try {
+      return ReSharperCacheKey.compute(new File(ReSharperExecutor.getExecutable(inspectCodePath)), project, solutionFile, dotSettingsFile, sourceDigest);
+    } catch (IOException e) {
+      LOG.warn("Unable to compute the ReSharper cache key, the cache will not be used", e);
+      return null;
+    }
+  }
+
+  /**
+   * The local directory of the cache is never part of the digest, in addition to the given excluded directories and files.
+   */
+  @Nullable
+  public String sourceDigest(File solutionFile, Collection<File> excluded) {
+    List<File> allExcluded = Lists.newArrayList(excluded);
+    if (localDirectory != null) {
+      allExcluded.add(localDirectory);
+    }
+    try {
+      return ReSharperCacheKey.sourceDigest(solutionFile, allExcluded);
+    } catch (IOException e) {
+      LOG.warn("Unable to compute the ReSharper cache key, the cache will not be used", e);
+      return null;
+    }
+  }
+
+  /**
+   * @return true if the report was found and copied to the target file
+   */
+  public boolean fetch(String key, File target) {
+    File local = localFile(key);
+    if (local != null && local.isFile()) {
+      try {
+        FileUtils.copyFile(local, target);
+        if (isReadable(target)) {
+          LOG.info("ReSharper report found in the local cache: " + key);
+          return true;
+        }
+        LOG.warn("Evicting the corrupted ReSharper report from the local cache: " + local.getAbsolutePath());
+        FileUtils.deleteQuietly(local);
+      } catch (IOException e) {
+        LOG.warn("Unable to read the ReSharper report from the local cache: " + local.getAbsolutePath(), e);
+      }
+    }
+
+    if (remote != null) {
+      try {
+        if (remote.get(key, target)) {
+          if (isReadable(target)) {
+            LOG.info("ReSharper report found in the remote cache: " + key);
+            storeLocally(key, target);
+            return true;
+          }
+          LOG.warn("Ignoring the corrupted ReSharper report of the remote cache: " + key);
+        }
+      } catch (IOException e) {
+        LOG.warn("Unable to download the ReSharper report from the remote cache", e);
+      }
+    }
+
+    FileUtils.deleteQuietly(target);
+    return false;
+  }
+
+  private static boolean isReadable(File file) {
+    try {
+      new ReSharperReportParser().parse(file, IGNORED_ISSUES, new ReSharperIssueFilter(Collections.<String>emptyList(), null, null));
+      return true;
+    } catch (RuntimeException e) {
+      LOG.debug("Unable to read " + file.getAbsolutePath(), e);
+      return false;
+    }
+  }
+
+  public void store(String key, File snapshot) {
+    storeLocally(key, snapshot);
+
+    if (remote != null) {
+      try {
+        remote.put(key, snapshot);
+      } catch (IOException e) {
+        LOG.warn("Unable to upload the ReSharper report to the remote cache", e);
+      }
+    }
+  }
+
+  private void storeLocally(String key, File snapshot) {
+    File local = localFile(key);
+    if (local == null) {
+      return;
+    }
+
+    File partial = null;
+    try {
+      FileUtils.forceMkdir(localDirectory);
+      partial = File.createTempFile(local.getName(), ".part", localDirectory);
+      FileUtils.copyFile(snapshot, partial);
+      FileUtils.deleteQuietly(local);
+      if (!partial.renameTo(local)) {
+        throw new IOException("Unable to rename " + partial.getAbsolutePath() + " to " + local.getAbsolutePath());
+      }
+    } catch (IOException e) {
+      FileUtils.deleteQuietly(partial);
+      LOG.warn("Unable to store the ReSharper report in the local cache", e);
+    }
+  }
+
+  @Nullable
+  private File localFile(String key) {
+    return localDirectory == null ? null : new File(localDirectory, key + ".issues");
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Formats of the reports and issue snapshots, detected from their content rather than from their file extension.
+ */
+enum ReSharperReportFormat {
+
+  XML,
+  SARIF,
+  SNAPSHOT;
+
+  private static final int MAX_HEADER_BYTES = 1024;
+
+  /**
+   * Issue snapshots start with their magic bytes.
+   * SARIF reports are JSON documents, which start with '{' once the byte order mark and whitespace are skipped.
+   * Compressed reports are detected from their decompressed content.
+   */
+  static ReSharperReportFormat detect(File file) throws IOException {
+    InputStream is = ReSharperCompression.open(file);
+    try {
+      byte[] header = new byte[MAX_HEADER_BYTES];
+      int length = ByteStreams.read(is, header, 0, header.length);
+      if (startsWith(header, length, ReSharperIssueSnapshot.MAGIC)) {
+        return SNAPSHOT;
+      }
+      for (int i = 0; i < length; i++) {
+        if (header[i] == '{') {
+          return SARIF;
+        } else if (!isIgnored(header[i] & 0xFF)) {
+          return XML;
+        }
+      }
+      return XML;
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  private static boolean startsWith(byte[] header, int length, byte[] magic) {
+    if (length < magic.length) {
+      return false;
+    }
+    for (int i = 0; i < magic.length; i++) {
+      if (header[i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isIgnored(int b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0xEF || b == 0xBB || b == 0xBF;
+  }
+
+}
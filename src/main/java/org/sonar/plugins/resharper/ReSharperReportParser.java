@@ -21,9 +21,13 @@ package org.sonar.plugins.resharper;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sonar.api.BatchComponent;
+import org.sonar.plugins.resharper.ReSharperReportScanner.UnsupportedReportException;
 
 import javax.annotation.Nullable;
 import javax.xml.stream.XMLInputFactory;
@@ -32,31 +36,133 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.List;
+import java.util.Map;
 
 public class ReSharperReportParser implements BatchComponent {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperReportParser.class);
+
+  private final Map<ReSharperReportFormat, ReSharperReportReader> readers = Maps.newEnumMap(ReSharperReportFormat.class);
+
+  public ReSharperReportParser() {
+    readers.put(ReSharperReportFormat.XML, new XmlReader());
+    readers.put(ReSharperReportFormat.SARIF, new ReSharperReportReader() {
+      @Override
+      public void read(File file, ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+        new ReSharperSarifReader(file).read(issues, filter);
+      }
+    });
+    readers.put(ReSharperReportFormat.SNAPSHOT, new ReSharperReportReader() {
+      @Override
+      public void read(File file, ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+        ReSharperIssueSnapshot.read(file, issues, filter);
+      }
+    });
+  }
+
+  /**
+   * Issue snapshots are read by {@link ReSharperIssueSnapshot}, and SARIF reports are streamed through {@link ReSharperSarifReader}.
+   * XML reports use the memory-mapped scanner, and fall back to StAX on anything the scanner does not handle.
+   * Compressed XML reports are streamed through StAX.
+   */
   public List<ReSharperIssue> parse(File file) {
-    return new Parser().parse(file);
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    parse(file, new ReSharperIssueSink.Collector(issues));
+    return issues;
+  }
+
+  /**
+   * Streams the issues of the report into the given sink, which may already have received the issues of other reports.
+   */
+  public void parse(File file, ReSharperIssueSink issues) {
+    parse(file, issues, ReSharperIssueFilter.acceptAll());
+  }
+
+  /**
+   * Only the issues accepted by the filter are built and added.
+   */
+  public void parse(File file, ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+    try {
+      readers.get(ReSharperReportFormat.detect(file)).read(file, issues, filter);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  List<ReSharperIssue> parseWithStax(File file) {
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    new Parser(new ReSharperIssueSink.Collector(issues), ReSharperIssueFilter.acceptAll()).parse(file);
+    return issues;
+  }
+
+  /**
+   * Offsets are character ranges such as "138-144", of which only the start is kept.
+   */
+  @Nullable
+  static Integer startOffset(String value) {
+    int separator = value.indexOf('-');
+    if (separator <= 0) {
+      return null;
+    }
+
+    try {
+      int start = Integer.parseInt(value.substring(0, separator));
+      int end = Integer.parseInt(value.substring(separator + 1));
+      return start < 0 || end < start ? null : start;
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * On a fallback to StAX, the issues already streamed by the scanner, which both parsers find in the same order, are not added again.
+   */
+  private static class XmlReader implements ReSharperReportReader {
+
+    @Override
+    public void read(File file, ReSharperIssueSink issues, ReSharperIssueFilter filter) throws IOException {
+      if (ReSharperCompression.isCompressed(file)) {
+        new Parser(issues, filter).parse(file);
+        return;
+      }
+
+      CountingSink sink = new CountingSink(issues);
+      int previouslyRejected = filter.rejected();
+      try {
+        new ReSharperReportScanner().scan(file, sink, filter);
+      } catch (UnsupportedReportException e) {
+        LOG.debug("Falling back to the StAX parser for " + file.getAbsolutePath() + ": " + e.getMessage());
+        sink.skip(sink.added);
+        filter.setRejected(previouslyRejected);
+        new Parser(sink, filter).parse(file);
+      }
+    }
+
   }
 
   private static class Parser {
 
     private File file;
     private XMLStreamReader stream;
-    private final ImmutableList.Builder<ReSharperIssue> filesBuilder = ImmutableList.builder();
+    private final ReSharperIssueSink issues;
+    private final ReSharperIssueFilter filter;
+
+    public Parser(ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+      this.issues = issues;
+      this.filter = filter;
+    }
 
-    public List<ReSharperIssue> parse(File file) {
+    public void parse(File file) {
       this.file = file;
 
       InputStreamReader reader = null;
       XMLInputFactory xmlFactory = XMLInputFactory.newInstance();
 
       try {
-        reader = new InputStreamReader(new FileInputStream(file), Charsets.UTF_8);
+        reader = new InputStreamReader(ReSharperCompression.open(file), Charsets.UTF_8);
         stream = xmlFactory.createXMLStreamReader(reader);
 
         while (stream.hasNext()) {
@@ -76,8 +182,6 @@ public class ReSharperReportParser implements BatchComponent {
         closeXmlStream();
         Closeables.closeQuietly(reader);
       }
-
-      return filesBuilder.build();
     }
 
     private void closeXmlStream() {
@@ -93,9 +197,13 @@ public class ReSharperReportParser implements BatchComponent {
     private void handleIssueTag() throws XMLStreamException {
       String typeId = getRequiredAttribute("TypeId");
       String filePath = getAttribute("File");
+      if (!filter.accept(typeId, filePath)) {
+        return;
+      }
       Integer line = getIntAttribute("Line");
+      Integer offset = getOffsetAttribute("Offset");
       String message = getRequiredAttribute("Message");
-      filesBuilder.add(new ReSharperIssue(stream.getLocation().getLineNumber(), typeId, filePath, line, message));
+      issues.accept(new ReSharperIssue(stream.getLocation().getLineNumber(), typeId, filePath, line, offset, message));
     }
 
     private String getRequiredAttribute(String name) {
@@ -122,6 +230,21 @@ public class ReSharperReportParser implements BatchComponent {
       }
     }
 
+    @Nullable
+    private Integer getOffsetAttribute(String name) {
+      String value = getAttribute(name);
+
+      if (value == null) {
+        return null;
+      }
+
+      Integer offset = startOffset(value);
+      if (offset == null) {
+        throw parseError("Expected an offset range such as \"138-144\" instead of \"" + value + "\" for the attribute \"" + name + "\"");
+      }
+      return offset;
+    }
+
     @Nullable
     private String getAttribute(String name) {
       for (int i = 0; i < stream.getAttributeCount(); i++) {
@@ -149,4 +272,31 @@ public class ReSharperReportParser implements BatchComponent {
 
   }
 
+  private static class CountingSink implements ReSharperIssueSink {
+
+    private final ReSharperIssueSink issues;
+    private int added;
+    private int toSkip;
+
+    public CountingSink(ReSharperIssueSink issues) {
+      this.issues = issues;
+    }
+
+    public void skip(int count) {
+      toSkip = count;
+      added = 0;
+    }
+
+    @Override
+    public void accept(ReSharperIssue issue) {
+      if (toSkip > 0) {
+        toSkip--;
+        return;
+      }
+      added++;
+      issues.accept(issue);
+    }
+
+  }
+
 }
@@ -0,0 +1,33 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Streams the issues of one {@link ReSharperReportFormat} into a sink, building only those accepted by the filter.
+ * {@link ReSharperReportParser} picks the reader of each file from its detected format.
+ */
+interface ReSharperReportReader {
+
+  void read(File file, ReSharperIssueSink issues, ReSharperIssueFilter filter) throws IOException;
+
+}
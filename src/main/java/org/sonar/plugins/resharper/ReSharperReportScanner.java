@@ -0,0 +1,633 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Byte-level scanner for the flat InspectCode report format.
+ * <p>
+ * Only the attributes of {@code <Issue>} elements are decoded.
+ * This is not a validating XML parser: whenever something outside of what InspectCode generates is met
+ * (DTD, CDATA section, namespaced names, another encoding, invalid values, unbalanced elements, a truncated report, ...),
+ * an {@link UnsupportedReportException} is thrown so that the caller can fall back to StAX.
+ * <p>
+ * Reports up to {@link #MAX_HEAP_READ_BYTES} are read into the heap. Larger ones are memory-mapped, and as a mapping is
+ * only released once garbage collected, such a report cannot be deleted or overwritten on Windows until then:
+ * callers inspecting repeatedly in the same JVM should write each report to a new file.
+ * <p>
+ * The TypeId and File attributes are checked against the filter while still encoded, and the other attributes of
+ * rejected issues are neither decoded nor validated.
+ */
+class ReSharperReportScanner {
+
+  private static final byte[] ISSUE = ascii("Issue");
+  private static final byte[] TYPE_ID = ascii("TypeId");
+  private static final byte[] FILE = ascii("File");
+  private static final byte[] OFFSET = ascii("Offset");
+  private static final byte[] LINE = ascii("Line");
+  private static final byte[] MESSAGE = ascii("Message");
+
+  static final int MAX_HEAP_READ_BYTES = 16 * 1024 * 1024;
+
+  private final int maxHeapReadBytes;
+
+  public ReSharperReportScanner() {
+    this(MAX_HEAP_READ_BYTES);
+  }
+
+  ReSharperReportScanner(int maxHeapReadBytes) {
+    this.maxHeapReadBytes = maxHeapReadBytes;
+  }
+
+  public List<ReSharperIssue> scan(File file) throws IOException {
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    scan(file, new ReSharperIssueSink.Collector(issues));
+    return issues;
+  }
+
+  public void scan(File file, ReSharperIssueSink issues) throws IOException {
+    scan(file, issues, ReSharperIssueFilter.acceptAll());
+  }
+
+  public void scan(File file, ReSharperIssueSink issues, ReSharperIssueFilter filter) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new UnsupportedReportException("the report is larger than 2 GB");
+      }
+      new Scan(size <= maxHeapReadBytes ? read(channel, (int) size) : channel.map(FileChannel.MapMode.READ_ONLY, 0, size), issues, filter).run();
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static ByteBuffer read(FileChannel channel, int size) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+      // Keep reading
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static class Scan {
+
+    private final ByteBuffer buffer;
+    private final int limit;
+    private final CharsetDecoder decoder = Charsets.UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+    private final ReSharperIssueSink issues;
+    private final ReSharperIssueFilter filter;
+    private final Region ruleKeyRegion = new Region();
+    private final Region fileRegion = new Region();
+
+    private int lineCountedUpTo;
+    private int line = 1;
+
+    private int typeIdStart;
+    private int typeIdEnd;
+    private int fileStart;
+    private int fileEnd;
+    private int offsetStart;
+    private int offsetEnd;
+    private int lineStart;
+    private int lineEnd;
+    private int messageStart;
+    private int messageEnd;
+
+    private int[] openElements = new int[16];
+    private int depth;
+    private boolean rootClosed;
+
+    public Scan(ByteBuffer buffer, ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+      this.buffer = buffer;
+      this.limit = buffer.limit();
+      this.issues = issues;
+      this.filter = filter;
+    }
+
+    public void run() {
+      int pos = skipByteOrderMark();
+      boolean first = true;
+
+      while ((pos = indexOf('<', pos)) != -1) {
+        if (startsWith(pos, "<!--")) {
+          pos = endOf(pos + 4, "-->");
+        } else if (startsWith(pos, "<?")) {
+          int end = endOf(pos + 2, "?>");
+          if (first) {
+            checkXmlDeclaration(pos, end);
+          }
+          pos = end;
+        } else if (startsWith(pos, "<!")) {
+          throw new UnsupportedReportException("DTD or CDATA section at line " + lineAt(pos));
+        } else if (startsWith(pos, "</")) {
+          pos = closeElement(pos + 2);
+        } else {
+          pos = handleElement(pos + 1);
+        }
+        first = false;
+      }
+
+      if (depth > 0 || !rootClosed) {
+        throw new UnsupportedReportException("the report ends before its root element is closed, it may be truncated");
+      }
+    }
+
+    /**
+     * The start and end of the names of the open elements are kept, so that each end tag is checked against its start tag.
+     */
+    private void openElement(int nameStart, int nameEnd, int tagEnd) {
+      if (rootClosed) {
+        throw new UnsupportedReportException("element after the root element at line " + lineAt(nameStart));
+      }
+      if (buffer.get(tagEnd - 2) == '/') {
+        rootClosed = depth == 0;
+        return;
+      }
+      if (depth * 2 == openElements.length) {
+        openElements = Arrays.copyOf(openElements, openElements.length * 2);
+      }
+      openElements[depth * 2] = nameStart;
+      openElements[depth * 2 + 1] = nameEnd;
+      depth++;
+    }
+
+    private int closeElement(int nameStart) {
+      int nameEnd = nameStart;
+      while (nameEnd < limit && !isWhitespace(buffer.get(nameEnd)) && buffer.get(nameEnd) != '>') {
+        nameEnd++;
+      }
+      if (depth == 0 || !sameName(openElements[depth * 2 - 2], openElements[depth * 2 - 1], nameStart, nameEnd)) {
+        throw new UnsupportedReportException("unbalanced end tag at line " + lineAt(nameStart));
+      }
+      depth--;
+      rootClosed = depth == 0;
+      return skipTag(nameEnd);
+    }
+
+    private boolean sameName(int start1, int end1, int start2, int end2) {
+      if (end1 - start1 != end2 - start2) {
+        return false;
+      }
+      for (int i = 0; i < end1 - start1; i++) {
+        if (buffer.get(start1 + i) != buffer.get(start2 + i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int skipByteOrderMark() {
+      if (limit >= 2 && (isByteAt(0, 0xFE) && isByteAt(1, 0xFF) || isByteAt(0, 0xFF) && isByteAt(1, 0xFE))) {
+        throw new UnsupportedReportException("UTF-16 encoded report");
+      }
+      return limit >= 3 && isByteAt(0, 0xEF) && isByteAt(1, 0xBB) && isByteAt(2, 0xBF) ? 3 : 0;
+    }
+
+    private void checkXmlDeclaration(int start, int end) {
+      String declaration = decode(start, end);
+      int i = declaration.indexOf("encoding");
+      if (i != -1) {
+        String rest = declaration.substring(i + "encoding".length()).replaceFirst("^\\s*=\\s*", "");
+        if (!rest.regionMatches(true, 1, "utf-8", 0, 5)) {
+          throw new UnsupportedReportException("non UTF-8 encoding declaration");
+        }
+      }
+    }
+
+    private int handleElement(int nameStart) {
+      int nameEnd = nameStart;
+      while (nameEnd < limit && !isWhitespace(buffer.get(nameEnd)) && buffer.get(nameEnd) != '/' && buffer.get(nameEnd) != '>') {
+        if (buffer.get(nameEnd) == ':') {
+          throw new UnsupportedReportException("namespaced element at line " + lineAt(nameStart));
+        }
+        nameEnd++;
+      }
+      if (nameEnd == nameStart) {
+        throw unexpectedCharacter(nameStart);
+      }
+
+      if (!regionEquals(nameStart, nameEnd, ISSUE)) {
+        int end = skipTag(nameEnd);
+        openElement(nameStart, nameEnd, end);
+        return end;
+      }
+
+      int reportLine = lineAt(nameStart - 1);
+      int end = readIssueAttributes(nameEnd);
+      openElement(nameStart, nameEnd, end);
+
+      if (typeIdStart == -1 || messageStart == -1) {
+        throw new UnsupportedReportException("missing required attribute at line " + reportLine);
+      }
+      if (!filter.accept(raw(typeIdStart, typeIdEnd, ruleKeyRegion), fileStart == -1 ? null : raw(fileStart, fileEnd, fileRegion))) {
+        return end;
+      }
+
+      issues.accept(new ReSharperIssue(
+        reportLine,
+        decode(typeIdStart, typeIdEnd),
+        fileStart == -1 ? null : decode(fileStart, fileEnd),
+        lineStart == -1 ? null : parseInt(lineStart, lineEnd, reportLine),
+        offsetStart == -1 ? null : parseOffset(offsetStart, offsetEnd, reportLine),
+        decode(messageStart, messageEnd)));
+
+      return end;
+    }
+
+    private int readIssueAttributes(int start) {
+      typeIdStart = -1;
+      fileStart = -1;
+      offsetStart = -1;
+      lineStart = -1;
+      messageStart = -1;
+
+      int pos = start;
+      while (true) {
+        int afterWhitespace = skipWhitespace(pos);
+        if (afterWhitespace >= limit) {
+          throw unexpectedEndOfFile();
+        }
+
+        byte b = buffer.get(afterWhitespace);
+        if (b == '>') {
+          return afterWhitespace + 1;
+        } else if (b == '/') {
+          if (afterWhitespace + 1 >= limit || buffer.get(afterWhitespace + 1) != '>') {
+            throw unexpectedCharacter(afterWhitespace);
+          }
+          return afterWhitespace + 2;
+        } else if (afterWhitespace == pos) {
+          throw unexpectedCharacter(pos);
+        }
+
+        pos = readAttribute(afterWhitespace);
+      }
+    }
+
+    private int readAttribute(int nameStart) {
+      int nameEnd = nameStart;
+      while (nameEnd < limit && !isWhitespace(buffer.get(nameEnd)) && buffer.get(nameEnd) != '=') {
+        byte b = buffer.get(nameEnd);
+        if (b == ':' || b == '<' || b == '>' || b == '/' || b == '"' || b == '\'') {
+          throw unexpectedCharacter(nameEnd);
+        }
+        nameEnd++;
+      }
+
+      int pos = skipWhitespace(nameEnd);
+      if (pos >= limit || buffer.get(pos) != '=') {
+        throw unexpectedCharacter(pos);
+      }
+      pos = skipWhitespace(pos + 1);
+      if (pos >= limit || buffer.get(pos) != '"' && buffer.get(pos) != '\'') {
+        throw unexpectedCharacter(pos);
+      }
+
+      byte quote = buffer.get(pos);
+      int valueStart = pos + 1;
+      int valueEnd = valueStart;
+      while (valueEnd < limit && buffer.get(valueEnd) != quote) {
+        if (buffer.get(valueEnd) == '<') {
+          throw unexpectedCharacter(valueEnd);
+        }
+        valueEnd++;
+      }
+      if (valueEnd >= limit) {
+        throw unexpectedEndOfFile();
+      }
+
+      recordAttribute(nameStart, nameEnd, valueStart, valueEnd);
+
+      return valueEnd + 1;
+    }
+
+    private void recordAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+      if (regionEquals(nameStart, nameEnd, TYPE_ID)) {
+        checkNotDuplicated(typeIdStart, nameStart);
+        typeIdStart = valueStart;
+        typeIdEnd = valueEnd;
+      } else if (regionEquals(nameStart, nameEnd, FILE)) {
+        checkNotDuplicated(fileStart, nameStart);
+        fileStart = valueStart;
+        fileEnd = valueEnd;
+      } else if (regionEquals(nameStart, nameEnd, OFFSET)) {
+        checkNotDuplicated(offsetStart, nameStart);
+        offsetStart = valueStart;
+        offsetEnd = valueEnd;
+      } else if (regionEquals(nameStart, nameEnd, LINE)) {
+        checkNotDuplicated(lineStart, nameStart);
+        lineStart = valueStart;
+        lineEnd = valueEnd;
+      } else if (regionEquals(nameStart, nameEnd, MESSAGE)) {
+        checkNotDuplicated(messageStart, nameStart);
+        messageStart = valueStart;
+        messageEnd = valueEnd;
+      }
+    }
+
+    private void checkNotDuplicated(int previousStart, int pos) {
+      if (previousStart != -1) {
+        throw new UnsupportedReportException("duplicated attribute at line " + lineAt(pos));
+      }
+    }
+
+    private int skipTag(int start) {
+      byte quote = 0;
+      for (int i = start; i < limit; i++) {
+        byte b = buffer.get(i);
+        if (quote != 0) {
+          if (b == quote) {
+            quote = 0;
+          }
+        } else if (b == '"' || b == '\'') {
+          quote = b;
+        } else if (b == '>') {
+          return i + 1;
+        } else if (b == '<') {
+          throw unexpectedCharacter(i);
+        }
+      }
+      throw unexpectedEndOfFile();
+    }
+
+    private Integer parseInt(int start, int end, int reportLine) {
+      String value = decode(start, end);
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        throw new UnsupportedReportException("invalid integer \"" + value + "\" at line " + reportLine);
+      }
+    }
+
+    private Integer parseOffset(int start, int end, int reportLine) {
+      String value = decode(start, end);
+      Integer offset = ReSharperReportParser.startOffset(value);
+      if (offset == null) {
+        throw new UnsupportedReportException("invalid offset \"" + value + "\" at line " + reportLine);
+      }
+      return offset;
+    }
+
+    /**
+     * Plain ASCII values are viewed in place, the others are decoded.
+     */
+    private CharSequence raw(int start, int end, Region region) {
+      for (int i = start; i < end; i++) {
+        byte b = buffer.get(i);
+        if (b < 0 || b == '&' || b == '\t' || b == '\n' || b == '\r') {
+          return decode(start, end);
+        }
+      }
+      return region.of(start, end);
+    }
+
+    /**
+     * Decodes an attribute value, applying the XML attribute-value normalization and entity unescaping.
+     */
+    private String decode(int start, int end) {
+      ByteBuffer slice = buffer.duplicate();
+      slice.limit(end);
+      slice.position(start);
+
+      CharBuffer chars;
+      try {
+        chars = decoder.reset().decode(slice);
+      } catch (CharacterCodingException e) {
+        throw new UnsupportedReportException("malformed UTF-8 at line " + lineAt(start));
+      }
+
+      String value = chars.toString();
+      return needsNormalization(value) ? normalize(value, start) : value;
+    }
+
+    private static boolean needsNormalization(String value) {
+      for (int i = 0; i < value.length(); i++) {
+        char c = value.charAt(i);
+        if (c == '&' || c == '\t' || c == '\n' || c == '\r') {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private String normalize(String value, int start) {
+      StringBuilder sb = new StringBuilder(value.length());
+      int i = 0;
+      while (i < value.length()) {
+        char c = value.charAt(i);
+        if (c == '&') {
+          int semicolon = value.indexOf(';', i);
+          if (semicolon == -1) {
+            throw new UnsupportedReportException("unterminated entity reference at line " + lineAt(start));
+          }
+          appendEntity(sb, value.substring(i + 1, semicolon), start);
+          i = semicolon + 1;
+        } else if (c == '\r' && i + 1 < value.length() && value.charAt(i + 1) == '\n') {
+          sb.append(' ');
+          i += 2;
+        } else {
+          sb.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+          i++;
+        }
+      }
+      return sb.toString();
+    }
+
+    private void appendEntity(StringBuilder sb, String entity, int start) {
+      if ("lt".equals(entity)) {
+        sb.append('<');
+      } else if ("gt".equals(entity)) {
+        sb.append('>');
+      } else if ("amp".equals(entity)) {
+        sb.append('&');
+      } else if ("quot".equals(entity)) {
+        sb.append('"');
+      } else if ("apos".equals(entity)) {
+        sb.append('\'');
+      } else if (entity.startsWith("#")) {
+        appendCharacterReference(sb, entity, start);
+      } else {
+        throw new UnsupportedReportException("unknown entity \"&" + entity + ";\" at line " + lineAt(start));
+      }
+    }
+
+    private void appendCharacterReference(StringBuilder sb, String entity, int start) {
+      try {
+        int codePoint = entity.startsWith("#x") ? Integer.parseInt(entity.substring(2), 16) : Integer.parseInt(entity.substring(1));
+        sb.appendCodePoint(codePoint);
+      } catch (IllegalArgumentException e) {
+        throw new UnsupportedReportException("invalid character reference \"&" + entity + ";\" at line " + lineAt(start));
+      }
+    }
+
+    /**
+     * Line numbers are counted incrementally, as positions only move forward.
+     */
+    private int lineAt(int pos) {
+      for (int i = lineCountedUpTo; i <= pos && i < limit; i++) {
+        byte b = buffer.get(i);
+        if (b == '\n' || b == '\r' && (i + 1 >= limit || buffer.get(i + 1) != '\n')) {
+          line++;
+        }
+      }
+      if (pos >= lineCountedUpTo) {
+        lineCountedUpTo = pos + 1;
+      }
+      return line;
+    }
+
+    private int indexOf(char c, int from) {
+      for (int i = from; i < limit; i++) {
+        if (buffer.get(i) == c) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private int endOf(int from, String terminator) {
+      for (int i = from; i + terminator.length() <= limit; i++) {
+        if (startsWith(i, terminator)) {
+          return i + terminator.length();
+        }
+      }
+      throw unexpectedEndOfFile();
+    }
+
+    private boolean startsWith(int pos, String prefix) {
+      if (pos + prefix.length() > limit) {
+        return false;
+      }
+      for (int i = 0; i < prefix.length(); i++) {
+        if (buffer.get(pos + i) != prefix.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean regionEquals(int start, int end, byte[] expected) {
+      if (end - start != expected.length) {
+        return false;
+      }
+      for (int i = 0; i < expected.length; i++) {
+        if (buffer.get(start + i) != expected[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean isByteAt(int pos, int value) {
+      return (buffer.get(pos) & 0xFF) == value;
+    }
+
+    private int skipWhitespace(int pos) {
+      int i = pos;
+      while (i < limit && isWhitespace(buffer.get(i))) {
+        i++;
+      }
+      return i;
+    }
+
+    private static boolean isWhitespace(byte b) {
+      return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    private UnsupportedReportException unexpectedCharacter(int pos) {
+      return new UnsupportedReportException("unexpected character at line " + lineAt(Math.min(pos, limit - 1)));
+    }
+
+    private UnsupportedReportException unexpectedEndOfFile() {
+      return new UnsupportedReportException("unexpected end of file");
+    }
+
+    /**
+     * Reusable view of an ASCII region of the report.
+     */
+    private class Region implements CharSequence {
+
+      private int start;
+      private int end;
+
+      private Region of(int start, int end) {
+        this.start = start;
+        this.end = end;
+        return this;
+      }
+
+      @Override
+      public int length() {
+        return end - start;
+      }
+
+      @Override
+      public char charAt(int index) {
+        return (char) buffer.get(start + index);
+      }
+
+      @Override
+      public CharSequence subSequence(int from, int to) {
+        return decode(start + from, start + to);
+      }
+
+      @Override
+      public String toString() {
+        return decode(start, end);
+      }
+
+    }
+
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(Charsets.US_ASCII);
+  }
+
+  static class UnsupportedReportException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedReportException(String message) {
+      super(message);
+    }
+
+  }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+import org.sonar.api.ServerExtension;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.RulePriority;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The ReSharper rules, shared by the repositories of all languages.
+ * <p>
+ * rules.xml is parsed only once, the first time the rules are requested, and equal names and descriptions are stored only once.
+ * Each call still returns new {@link Rule} instances, as the platform may modify them while registering a repository.
+ * <p>
+ * The parsed rules are only needed while the repositories are defined at server startup: they are released once every
+ * registered repository has requested them, and parsed again should they ever be requested afterwards.
+ */
+public class ReSharperRuleCatalog implements ServerExtension {
+
+  private static final String RULES_RESOURCE = "/org/sonar/plugins/resharper/rules.xml";
+
+  private String[] keys;
+  private RulePriority[] priorities;
+  private String[] names;
+  private String[] descriptions;
+  private int pendingRepositories;
+
+  /**
+   * Declares a repository which will request the rules, so that they are kept until it did.
+   */
+  public synchronized void register() {
+    pendingRepositories++;
+  }
+
+  public synchronized List<Rule> rules() {
+    load();
+
+    ImmutableList.Builder<Rule> builder = ImmutableList.builder();
+    for (int i = 0; i < keys.length; i++) {
+      builder.add(Rule.create()
+        .setKey(keys[i])
+        .setSeverity(priorities[i])
+        .setName(names[i])
+        .setDescription(descriptions[i]));
+    }
+
+    if (pendingRepositories > 0) {
+      pendingRepositories--;
+    }
+    if (pendingRepositories == 0) {
+      release();
+    }
+    return builder.build();
+  }
+
+  boolean isLoaded() {
+    return keys != null;
+  }
+
+  private void release() {
+    keys = null;
+    priorities = null;
+    names = null;
+    descriptions = null;
+  }
+
+  /**
+   * Only reads the keys of the rules, in the order of rules.xml.
+   */
+  public static List<String> ruleKeys() {
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    Reader reader = new InputStreamReader(ReSharperRuleCatalog.class.getResourceAsStream(RULES_RESOURCE), Charsets.UTF_8);
+    XMLStreamReader stream = null;
+    try {
+      stream = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+      while (stream.hasNext()) {
+        if (stream.next() == XMLStreamConstants.START_ELEMENT && "rule".equals(stream.getLocalName())) {
+          builder.add(stream.getAttributeValue(null, "key"));
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      closeXmlStream(stream);
+      Closeables.closeQuietly(reader);
+    }
+    return builder.build();
+  }
+
+  private void load() {
+    if (keys != null) {
+      return;
+    }
+
+    List<String> ruleKeys = Lists.newArrayList();
+    List<RulePriority> rulePriorities = Lists.newArrayList();
+    List<String> ruleNames = Lists.newArrayList();
+    List<String> ruleDescriptions = Lists.newArrayList();
+    Map<String, String> texts = Maps.newHashMap();
+
+    Reader reader = new InputStreamReader(getClass().getResourceAsStream(RULES_RESOURCE), Charsets.UTF_8);
+    XMLStreamReader stream = null;
+    try {
+      stream = XMLInputFactory.newInstance().createXMLStreamReader(reader);
+      while (stream.hasNext()) {
+        if (stream.next() == XMLStreamConstants.START_ELEMENT) {
+          String tagName = stream.getLocalName();
+          if ("rule".equals(tagName)) {
+            ruleKeys.add(stream.getAttributeValue(null, "key"));
+          } else if ("priority".equals(tagName)) {
+            rulePriorities.add(RulePriority.valueOf(stream.getElementText().trim()));
+          } else if ("name".equals(tagName)) {
+            ruleNames.add(shared(texts, stream.getElementText().trim()));
+          } else if ("description".equals(tagName)) {
+            ruleDescriptions.add(shared(texts, stream.getElementText().trim()));
+          }
+        }
+      }
+    } catch (XMLStreamException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      closeXmlStream(stream);
+      Closeables.closeQuietly(reader);
+    }
+
+    if (rulePriorities.size() != ruleKeys.size() || ruleNames.size() != ruleKeys.size() || ruleDescriptions.size() != ruleKeys.size()) {
+      throw new IllegalStateException("Every rule of " + RULES_RESOURCE + " must have exactly one priority, name and description");
+    }
+
+    priorities = rulePriorities.toArray(new RulePriority[rulePriorities.size()]);
+    names = ruleNames.toArray(new String[ruleNames.size()]);
+    descriptions = ruleDescriptions.toArray(new String[ruleDescriptions.size()]);
+    keys = ruleKeys.toArray(new String[ruleKeys.size()]);
+  }
+
+  private static String shared(Map<String, String> texts, String text) {
+    String shared = texts.get(text);
+    if (shared == null) {
+      texts.put(text, text);
+      shared = text;
+    }
+    return shared;
+  }
+
+  private static void closeXmlStream(XMLStreamReader stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (XMLStreamException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+  }
+
+}
@@ -21,7 +21,6 @@ package org.sonar.plugins.resharper;
 
 import org.sonar.api.rules.Rule;
 import org.sonar.api.rules.RuleRepository;
-import org.sonar.api.rules.XMLRuleParser;
 
 import java.util.List;
 
@@ -29,17 +28,18 @@ public class ReSharperRuleRepository extends RuleRepository {
 
   private static final String REPOSITORY_NAME = "ReSharper";
 
-  private final XMLRuleParser xmlRuleParser;
+  private final ReSharperRuleCatalog ruleCatalog;
 
-  public ReSharperRuleRepository(ReSharperConfiguration fxCopConf, XMLRuleParser xmlRuleParser) {
+  public ReSharperRuleRepository(ReSharperConfiguration fxCopConf, ReSharperRuleCatalog ruleCatalog) {
     super(fxCopConf.repositoryKey(), fxCopConf.languageKey());
     setName(REPOSITORY_NAME);
-    this.xmlRuleParser = xmlRuleParser;
+    this.ruleCatalog = ruleCatalog;
+    ruleCatalog.register();
   }
 
   @Override
   public List<Rule> createRules() {
-    return xmlRuleParser.parse(getClass().getResourceAsStream("/org/sonar/plugins/resharper/rules.xml"));
+    return ruleCatalog.rules();
   }
 
 }
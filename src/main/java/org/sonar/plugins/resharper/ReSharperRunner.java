@@ -0,0 +1,269 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.sonar.api.config.PropertyDefinitions;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.List;
+
+/**
+ * Command-line entry point running the plugin outside of a Sonar analysis, for example from a nightly job, so that the first
+ * analysis of the day finds the issues of its projects in the cache. Its classpath is the plugin jar, sonar-plugin-api and its
+ * dependencies, plus an SLF4J binding such as logback-classic to see the progress of inspectcode.
+ * <p>
+ * The properties are those of the plugin, set as "-Dkey=value" arguments, along with "sonar.projectBaseDir" and "sonar.working.directory".
+ * The rules file is either the DotSettings file written by an analysis, or a list of rule keys, one per line.
+ * The rules may be given in any order, as they are sorted in the DotSettings file which is part of the cache keys.
+ * <p>
+ * The watch command keeps the issues of the only solution to inspect up to date, inspecting again the projects of the
+ * files changed, until Enter is pressed or the standard input is closed. The profile command measures the time each
+ * category of the rules adds to the inspection of the only project to inspect, see {@link ReSharperProfiler}.
+ */
+public class ReSharperRunner {
+
+  static final int EXIT_SUCCESS = 0;
+  static final int EXIT_FAILURE = 1;
+  static final int EXIT_USAGE = 2;
+
+  static final String BASE_DIR_PROPERTY_KEY = "sonar.projectBaseDir";
+  static final String WORK_DIR_PROPERTY_KEY = "sonar.working.directory";
+
+  private static final long WATCH_POLL_MILLIS = 1000;
+  private static final long WATCH_DEBOUNCE_MILLIS = 2000;
+  private static final int DEFAULT_PROFILE_REPETITIONS = 3;
+
+  private static final String USAGE = "Usage: java -cp <classpath> " + ReSharperRunner.class.getName() + " [-Dkey=value]... <command> <arguments>\n"
+    + "The classpath holds the plugin jar, sonar-plugin-api and its dependencies, which the plugin jar does not bundle, plus an SLF4J binding\n"
+    + "such as logback-classic. \"mvn dependency:copy-dependencies -DincludeScope=provided\", run in the plugin sources, copies sonar-plugin-api\n"
+    + "and its dependencies to target/dependency, for example:\n"
+    + "  java -cp \"sonar-resharper-plugin.jar" + File.pathSeparator + "target/dependency/*" + File.pathSeparator + "logback/*\" " + ReSharperRunner.class.getName()
+    + " -Dsonar.projectBaseDir=. -Dsonar.resharper.solutionFile=MySolution.sln warm rules.txt\n"
+    + "Commands:\n"
+    + "  warm <rules file>                 Runs inspectcode on the projects whose issues are not cached yet, and caches them\n"
+    + "  import <rules file> <report>...   Caches the issues of existing reports as those of the only project to inspect\n"
+    + "  convert <snapshot> <report>...    Merges existing reports into an issue snapshot, skipping the duplicated issues\n"
+    + "  watch <rules file>                Inspects the solution, then the projects of the changed files, until Enter is pressed\n"
+    + "  profile <rules file> [<runs>]     Ranks the rule categories by the time they add to inspecting the project, the fastest\n"
+    + "                                    of 3 runs by default";
+
+  public static void main(String[] args) {
+    System.exit(new ReSharperRunner().run(args, System.out));
+  }
+
+  public int run(String[] args, PrintStream out) {
+    Settings settings = new Settings(new PropertyDefinitions().addComponents(new ReSharperPlugin().getExtensions()));
+    List<String> arguments = Lists.newArrayList();
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      if (arg.startsWith("-D") && separator > 2) {
+        settings.setProperty(arg.substring(2, separator), arg.substring(separator + 1));
+      } else {
+        arguments.add(arg);
+      }
+    }
+
+    if (arguments.isEmpty()) {
+      out.println(USAGE);
+      return EXIT_USAGE;
+    }
+    String command = arguments.get(0);
+    List<String> commandArguments = arguments.subList(1, arguments.size());
+
+    try {
+      if ("warm".equals(command) && commandArguments.size() == 1) {
+        warm(settings, new File(commandArguments.get(0)), out);
+      } else if ("import".equals(command) && commandArguments.size() >= 2) {
+        importReports(settings, new File(commandArguments.get(0)), files(commandArguments.subList(1, commandArguments.size())), out);
+      } else if ("convert".equals(command) && commandArguments.size() >= 2) {
+        convert(new File(commandArguments.get(0)), files(commandArguments.subList(1, commandArguments.size())), out);
+      } else if ("watch".equals(command) && commandArguments.size() == 1) {
+        watch(settings, new File(commandArguments.get(0)), out);
+      } else if ("profile".equals(command) && (commandArguments.size() == 1 || commandArguments.size() == 2 && isPositiveInteger(commandArguments.get(1)))) {
+        int repetitions = commandArguments.size() == 2 ? Integer.parseInt(commandArguments.get(1)) : DEFAULT_PROFILE_REPETITIONS;
+        profile(settings, new File(commandArguments.get(0)), repetitions, out);
+      } else {
+        out.println(USAGE);
+        return EXIT_USAGE;
+      }
+    } catch (RuntimeException e) {
+      out.println("ERROR: " + e.getMessage());
+      return EXIT_FAILURE;
+    }
+    return EXIT_SUCCESS;
+  }
+
+  private void warm(Settings settings, File rulesFile, PrintStream out) {
+    ReSharperInspection.Result result = inspection(settings).run(settings, ruleKeys(rulesFile), baseDir(settings), workDir(settings));
+    result.retain();
+    out.println("The issues of " + result.reportFiles().size() + " ReSharper reports are cached");
+  }
+
+  private void importReports(Settings settings, File rulesFile, List<File> reportFiles, PrintStream out) {
+    String cacheKey = inspection(settings).importReports(settings, ruleKeys(rulesFile), baseDir(settings), workDir(settings), reportFiles);
+    out.println("The issues of " + reportFiles.size() + " ReSharper reports are cached as " + cacheKey);
+  }
+
+  private static void convert(File snapshotFile, List<File> reportFiles, PrintStream out) {
+    int duplicates = ReSharperIssueSnapshot.merge(reportFiles, snapshotFile, true);
+    out.println("Converted " + reportFiles.size() + " ReSharper reports into " + snapshotFile.getAbsolutePath() + ", skipping " + duplicates + " duplicated issues");
+  }
+
+  private void watch(Settings settings, File rulesFile, PrintStream out) {
+    File solutionFile = onlySolutionFile(settings, "watched");
+
+    ReSharperWatcher watcher = new ReSharperWatcher(executor(settings), new ReSharperReportParser(), new ReSharperDotSettingsWriter(),
+      settings.getString(ReSharperPlugin.INSPECTCODE_PATH_PROPERTY_KEY), solutionFile, ruleKeys(rulesFile), workDir(settings),
+      settings.getInt(ReSharperPlugin.TIMEOUT_MINUTES_PROPERTY_KEY), WATCH_DEBOUNCE_MILLIS);
+    try {
+      watcher.start(WATCH_POLL_MILLIS);
+      out.println("Watching " + solutionFile.getPath() + " with " + watcher.index().size() + " ReSharper issues, press Enter to stop");
+      awaitEndOfLine(input());
+    } finally {
+      watcher.close();
+    }
+    out.println("Stopped watching " + solutionFile.getPath() + " with " + watcher.index().size() + " ReSharper issues");
+  }
+
+  private void profile(Settings settings, File rulesFile, int repetitions, PrintStream out) {
+    File solutionFile = onlySolutionFile(settings, "profiled");
+    String[] projects = settings.getStringArray(ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY);
+    if (projects.length != 1) {
+      throw new IllegalStateException("Only one project can be profiled, set it as the property \"" + ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY + "\".");
+    }
+
+    List<ReSharperProfiler.Cost> costs = new ReSharperProfiler(executor(settings), new ReSharperReportParser(), new ReSharperDotSettingsWriter())
+      .profile(settings.getString(ReSharperPlugin.INSPECTCODE_PATH_PROPERTY_KEY), projects[0], solutionFile.getPath(), ruleKeys(rulesFile),
+        workDir(settings), settings.getInt(ReSharperPlugin.TIMEOUT_MINUTES_PROPERTY_KEY), repetitions);
+    PrintWriter writer = new PrintWriter(out);
+    try {
+      ReSharperProfiler.writeReport(costs, writer);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      writer.flush();
+    }
+  }
+
+  private static File onlySolutionFile(Settings settings, String action) {
+    String[] solutionFiles = settings.getStringArray(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY);
+    if (solutionFiles.length != 1) {
+      throw new IllegalStateException("Only one solution can be " + action + ", set it as the property \"" + ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY + "\".");
+    }
+    return ReSharperInspection.absoluteSolutionFile(baseDir(settings), solutionFiles[0]);
+  }
+
+  private static boolean isPositiveInteger(String value) {
+    try {
+      return Integer.parseInt(value) > 0;
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
+
+  private static void awaitEndOfLine(InputStream is) {
+    try {
+      int c;
+      do {
+        c = is.read();
+      } while (c != -1 && c != '\n');
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private ReSharperInspection inspection(Settings settings) {
+    ReSharperReportCache cache = new ReSharperReportCache(settings);
+    if (!cache.isEnabled()) {
+      throw new IllegalStateException("The cache is disabled, set the property \"" + ReSharperPlugin.CACHE_DIRECTORY_PROPERTY_KEY + "\" or \""
+        + ReSharperPlugin.REMOTE_CACHE_URL_PROPERTY_KEY + "\".");
+    }
+    return new ReSharperInspection(executor(settings), new ReSharperDotSettingsWriter(), cache, new ReSharperShardDispatcher());
+  }
+
+  ReSharperExecutor executor(Settings settings) {
+    return new ReSharperExecutor(settings);
+  }
+
+  InputStream input() {
+    return System.in;
+  }
+
+  static List<String> ruleKeys(File rulesFile) {
+    try {
+      List<String> lines = Files.readLines(rulesFile, Charsets.UTF_8);
+      for (String line : lines) {
+        if (line.trim().startsWith("<")) {
+          return ReSharperDotSettingsWriter.ruleKeys(rulesFile);
+        }
+      }
+
+      ImmutableList.Builder<String> builder = ImmutableList.builder();
+      for (String line : lines) {
+        String ruleKey = line.trim();
+        if (!ruleKey.isEmpty() && !ruleKey.startsWith("#")) {
+          builder.add(ruleKey);
+        }
+      }
+      return builder.build();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static File baseDir(Settings settings) {
+    String baseDir = settings.getString(BASE_DIR_PROPERTY_KEY);
+    return new File(baseDir == null || baseDir.isEmpty() ? "" : baseDir).getAbsoluteFile();
+  }
+
+  private static File workDir(Settings settings) {
+    String path = settings.getString(WORK_DIR_PROPERTY_KEY);
+    File workDir = new File(path == null || path.isEmpty() ? ".sonar" : path);
+    if (!workDir.isAbsolute()) {
+      workDir = new File(baseDir(settings), workDir.getPath());
+    }
+    try {
+      FileUtils.forceMkdir(workDir);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+    return workDir;
+  }
+
+  private static List<File> files(List<String> paths) {
+    List<File> files = Lists.newArrayList();
+    for (String path : paths) {
+      files.add(new File(path));
+    }
+    return files;
+  }
+
+}
@@ -0,0 +1,330 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Maps;
+import com.google.common.io.Closeables;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Map;
+
+/**
+ * Streams the results of a SARIF report as issues, without loading the report in memory.
+ * <p>
+ * Only the first location of each result is kept, and suppressed results are skipped, as they are left out of XML reports.
+ * Relative locations are given the separators of XML reports, so that both formats produce the same issues.
+ * Locations relative to the "solutionDir" base, as ReSharper writes them, are kept relative to the solution as in XML reports.
+ * Locations relative to any other base are resolved through the "originalUriBaseIds" of their run, which must come before its results
+ * as the report is only read once.
+ * Once the rule of a result is rejected by the filter, the rest of the result is skipped without being decoded.
+ */
+class ReSharperSarifReader {
+
+  private static final String SOLUTION_DIR_BASE_ID = "solutionDir";
+
+  private final File file;
+  private ReSharperJsonReader json;
+  private final Map<String, String[]> bases = Maps.newHashMap();
+
+  ReSharperSarifReader(File file) {
+    this.file = file;
+  }
+
+  void read(ReSharperIssueSink issues, ReSharperIssueFilter filter) {
+    try {
+      json = new ReSharperJsonReader(new InputStreamReader(ReSharperCompression.open(file), Charsets.UTF_8));
+      json.beginObject();
+      while (json.hasNext()) {
+        if ("runs".equals(json.nextName())) {
+          readRuns(issues, filter);
+        } else {
+          json.skipValue();
+        }
+      }
+      json.endObject();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } catch (IllegalStateException e) {
+      throw new IllegalStateException(e.getMessage() + " in " + file.getAbsolutePath(), e);
+    } finally {
+      Closeables.closeQuietly(json);
+    }
+  }
+
+  private void readRuns(ReSharperIssueSink issues, ReSharperIssueFilter filter) throws IOException {
+    json.beginArray();
+    while (json.hasNext()) {
+      bases.clear();
+      json.beginObject();
+      while (json.hasNext()) {
+        String name = json.nextName();
+        if ("results".equals(name)) {
+          readResults(issues, filter);
+        } else if ("originalUriBaseIds".equals(name)) {
+          readBases();
+        } else {
+          json.skipValue();
+        }
+      }
+      json.endObject();
+    }
+    json.endArray();
+  }
+
+  private void readResults(ReSharperIssueSink issues, ReSharperIssueFilter filter) throws IOException {
+    json.beginArray();
+    while (json.hasNext()) {
+      ReSharperIssue issue = readResult(filter);
+      if (issue != null) {
+        issues.accept(issue);
+      }
+    }
+    json.endArray();
+  }
+
+  @Nullable
+  private ReSharperIssue readResult(ReSharperIssueFilter filter) throws IOException {
+    int reportLine = json.line();
+    String ruleId = null;
+    String message = null;
+    Location location = null;
+    boolean suppressed = false;
+
+    json.beginObject();
+    while (json.hasNext()) {
+      String name = json.nextName();
+      if ("ruleId".equals(name)) {
+        ruleId = nullableString();
+        if (ruleId != null && !filter.accept(ruleId, null)) {
+          skipRemainingProperties();
+          return null;
+        }
+      } else if ("message".equals(name)) {
+        message = readMessage();
+      } else if ("locations".equals(name)) {
+        location = readLocations();
+      } else if ("suppressions".equals(name)) {
+        suppressed = readSuppressions();
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+
+    if (ruleId == null) {
+      throw new IllegalStateException("Missing property \"ruleId\" in the result at line " + reportLine);
+    }
+    if (message == null) {
+      throw new IllegalStateException("Missing property \"message.text\" in the result at line " + reportLine);
+    }
+    if (suppressed || !filter.accept(ruleId, location == null ? null : location.path)) {
+      return null;
+    }
+    return location == null ?
+      new ReSharperIssue(reportLine, ruleId, null, null, null, message) :
+      new ReSharperIssue(reportLine, ruleId, location.path, location.line, location.offset, message);
+  }
+
+  private void skipRemainingProperties() throws IOException {
+    while (json.hasNext()) {
+      json.skipValue();
+    }
+    json.endObject();
+  }
+
+  @Nullable
+  private String readMessage() throws IOException {
+    String text = null;
+    json.beginObject();
+    while (json.hasNext()) {
+      if ("text".equals(json.nextName())) {
+        text = nullableString();
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+    return text;
+  }
+
+  @Nullable
+  private Location readLocations() throws IOException {
+    Location first = null;
+    json.beginArray();
+    while (json.hasNext()) {
+      if (first == null) {
+        first = new Location();
+        readLocation(first);
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endArray();
+    return first;
+  }
+
+  private void readLocation(Location location) throws IOException {
+    json.beginObject();
+    while (json.hasNext()) {
+      if ("physicalLocation".equals(json.nextName())) {
+        json.beginObject();
+        while (json.hasNext()) {
+          String name = json.nextName();
+          if ("artifactLocation".equals(name)) {
+            location.path = readArtifactPath();
+          } else if ("region".equals(name)) {
+            readRegion(location);
+          } else {
+            json.skipValue();
+          }
+        }
+        json.endObject();
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+  }
+
+  @Nullable
+  private String readArtifactPath() throws IOException {
+    String[] location = readArtifactLocation();
+    return location[0] == null ? null : path(resolve(location[0], location[1], 0));
+  }
+
+  /**
+   * Returns the URI and the URI base id of an artifact location, either of which may be null.
+   */
+  private String[] readArtifactLocation() throws IOException {
+    String[] location = new String[2];
+    json.beginObject();
+    while (json.hasNext()) {
+      String name = json.nextName();
+      if ("uri".equals(name)) {
+        location[0] = nullableString();
+      } else if ("uriBaseId".equals(name)) {
+        location[1] = nullableString();
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+    return location;
+  }
+
+  private void readBases() throws IOException {
+    json.beginObject();
+    while (json.hasNext()) {
+      String id = json.nextName();
+      bases.put(id, readArtifactLocation());
+    }
+    json.endObject();
+  }
+
+  private String resolve(String uri, @Nullable String baseId, int depth) {
+    if (baseId == null || SOLUTION_DIR_BASE_ID.equals(baseId)) {
+      return uri;
+    }
+    String[] base = bases.get(baseId);
+    if (base == null || base[0] == null || depth > bases.size()) {
+      throw new IllegalStateException("Unable to resolve the uriBaseId \"" + baseId + "\" of \"" + uri
+        + "\", which must be given a URI by the \"originalUriBaseIds\" of the run before its results");
+    }
+    String baseUri = resolve(base[0], base[1], depth + 1);
+    try {
+      return new URI(baseUri).resolve(new URI(uri)).toString();
+    } catch (URISyntaxException e) {
+      return baseUri + uri;
+    }
+  }
+
+  private void readRegion(Location location) throws IOException {
+    json.beginObject();
+    while (json.hasNext()) {
+      String name = json.nextName();
+      if ("startLine".equals(name)) {
+        location.line = json.nextInt();
+      } else if ("charOffset".equals(name)) {
+        location.offset = json.nextInt();
+      } else {
+        json.skipValue();
+      }
+    }
+    json.endObject();
+  }
+
+  private boolean readSuppressions() throws IOException {
+    boolean suppressed = false;
+    json.beginArray();
+    while (json.hasNext()) {
+      suppressed = true;
+      json.skipValue();
+    }
+    json.endArray();
+    return suppressed;
+  }
+
+  @Nullable
+  private String nullableString() throws IOException {
+    if (json.peek() == ReSharperJsonReader.Token.NULL) {
+      json.skipValue();
+      return null;
+    }
+    return json.nextString();
+  }
+
+  /**
+   * Converts the URI of an artifact to a path: "file:///C:/Solution/Foo.cs" becomes "C:/Solution/Foo.cs",
+   * and "MyLibrary/Foo%20Bar.cs" becomes "MyLibrary\Foo Bar.cs", as in XML reports.
+   */
+  static String path(String uri) {
+    String path;
+    try {
+      path = new URI(uri).getPath();
+    } catch (URISyntaxException e) {
+      path = uri;
+    }
+    if (path == null) {
+      return uri;
+    }
+
+    if (uri.startsWith("file:")) {
+      return path.length() > 2 && path.charAt(0) == '/' && path.charAt(2) == ':' ? path.substring(1) : path;
+    }
+    return path.replace('/', '\\');
+  }
+
+  private static class Location {
+
+    private String path;
+    private Integer line;
+    private Integer offset;
+
+  }
+
+}
@@ -19,37 +19,50 @@
  */
 package org.sonar.plugins.resharper;
 
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
-import org.sonar.api.batch.rule.ActiveRule;
-import org.sonar.api.batch.rule.ActiveRules;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.config.Settings;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.utils.PathUtils;
+
+import javax.annotation.Nullable;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ReSharperSensor implements Sensor {
 
   private static final Logger LOG = LoggerFactory.getLogger(ReSharperSensor.class);
 
+  private static final int RESOLUTION_BATCH_SIZE = 256;
+
   private final ReSharperConfiguration reSharperConf;
 
-  private final ReSharperExecutor executor;
   private final ReSharperReportParser parser;
-  private final ReSharperDotSettingsWriter writer;
+  private final ReSharperInspection inspection;
+  private final ReSharperEarlyLauncher launcher;
 
-  public ReSharperSensor(ReSharperConfiguration reSharperConf, ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer) {
+  public ReSharperSensor(ReSharperConfiguration reSharperConf, ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer,
+    ReSharperReportCache cache, ReSharperShardDispatcher dispatcher, ReSharperEarlyLauncher launcher) {
     this.reSharperConf = reSharperConf;
-    this.executor = executor;
     this.parser = parser;
-    this.writer = writer;
+    this.inspection = new ReSharperInspection(executor, writer, cache, dispatcher);
+    this.launcher = launcher;
   }
 
   @Override
@@ -66,63 +79,401 @@ public class ReSharperSensor implements Sensor {
   public void execute(SensorContext context) {
     Settings settings = context.settings();
 
+    if (settings.hasKey(ReSharperPlugin.REPORT_PATH_PROPERTY_KEY)) {
+      File reportFile = new File(settings.getString(ReSharperPlugin.REPORT_PATH_PROPERTY_KEY));
+      if (!reportFile.isAbsolute()) {
+        reportFile = new File(context.fileSystem().baseDir(), reportFile.getPath());
+      }
+      LOG.info("Importing the ReSharper report " + reportFile.getAbsolutePath());
+      analyse(context, ImmutableList.of(reportFile), Collections.singletonMap(reportFile, importedReportSolution(context)), null);
+      return;
+    }
+
     checkProperties(settings);
 
-    File rulesetFile = new File(context.fileSystem().workDir(), "resharper-sonarqube.DotSettings");
-    writer.write(enabledRuleKeys(context.activeRules()), rulesetFile);
+    ReSharperInspection.Result result = launcher.awaitResult();
+    if (result == null) {
+      result = inspection.run(settings, ReSharperInspection.enabledRuleKeys(reSharperConf, context.activeRules()), context.fileSystem().baseDir(), context.fileSystem().workDir());
+    }
 
-    File reportFile = new File(context.fileSystem().workDir(), "resharper-report.xml");
+    Map<File, ReSharperSolution> solutions = Maps.newHashMap();
+    for (File reportFile : result.reportFiles()) {
+      solutions.put(reportFile, result.solution(reportFile));
+    }
+    result.recordIssues(analyse(context, result.reportFiles(), solutions, result));
+    result.retain();
+  }
 
-    executor.execute(
-      settings.getString(ReSharperPlugin.INSPECTCODE_PATH_PROPERTY_KEY), settings.getString(ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY),
-      settings.getString(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY), rulesetFile, reportFile, settings.getInt(ReSharperPlugin.TIMEOUT_MINUTES_PROPERTY_KEY));
+  /**
+   * The relative paths of an imported report can only be resolved when it is known to come from a single solution.
+   */
+  @Nullable
+  private static ReSharperSolution importedReportSolution(SensorContext context) {
+    String[] solutionFiles = context.settings().getStringArray(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY);
+    if (solutionFiles.length != 1) {
+      return null;
+    }
+    FileSystem fs = context.fileSystem();
+    return ReSharperInspection.loadSolution(context.settings(), fs.baseDir(), fs.workDir(), solutionFiles[0]);
+  }
 
+  /**
+   * Returns the number of issues found in each report, including the ones rejected while parsing.
+   * The relative paths of the issues are resolved against the directory of the solution of their report.
+   * The snapshots to cache are written while the reports are parsed, from all their issues, as other modules need those this one filters out.
+   */
+  private Map<File, Integer> analyse(SensorContext context, List<File> reportFiles, Map<File, ReSharperSolution> solutions, @Nullable ReSharperInspection.Result result) {
     FileSystem fs = context.fileSystem();
-    new File(settings.getString(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY));
-    for (ReSharperIssue issue : parser.parse(reportFile)) {
-      if (!hasFileAndLine(issue)) {
-        logSkippedIssue(issue, "which has no associated file.");
-        continue;
+    long budgetBytes = context.settings().getInt(ReSharperPlugin.ISSUE_BUFFER_SIZE_PROPERTY_KEY) * 1024L * 1024L;
+    ReSharperIssueBuffer issues = new ReSharperIssueBuffer(fs.workDir(), budgetBytes);
+    try {
+      List<String> enabledRuleKeys = ReSharperInspection.enabledRuleKeys(reSharperConf, context.activeRules());
+      File moduleDirectory = moduleDirectory(fs);
+      int rejected = 0;
+      Map<File, Integer> issuesPerReport = Maps.newHashMap();
+      for (File reportFile : reportFiles) {
+        int previousSize = issues.size();
+        ReSharperSolution solution = solutions.get(reportFile);
+        ReSharperIssueFilter filter = filter(enabledRuleKeys, moduleDirectory, solution);
+        ReSharperIssueSink sink = solution == null ? issues : new PathResolvingSink(issues, solution);
+        ReSharperIssueSnapshot.Writer snapshotWriter = result == null ? null : result.snapshotWriter(reportFile);
+        if (snapshotWriter == null) {
+          parser.parse(reportFile, sink, filter);
+        } else {
+          parseAndSnapshot(reportFile, new SnapshotTeeSink(snapshotWriter, filter, sink), snapshotWriter);
+        }
+        issuesPerReport.put(reportFile, issues.size() - previousSize + filter.rejected());
+        rejected += filter.rejected();
+      }
+      if (rejected > 0) {
+        LOG.info("Skipped " + rejected + " ReSharper issues of inactive rules or of files outside of the module while parsing the reports");
+      }
+      if (issues.spilledRuns() > 0) {
+        LOG.info("The " + issues.size() + " ReSharper issues exceeded the memory budget and were spilled to disk in " + issues.spilledRuns() + " runs");
       }
 
-      // TODO FileSystem.files() is found before FileSystem.inputFile()
-      InputFile sonarFile = fs.inputFile(fs.predicates().hasAbsolutePath(issue.filePath()));
-      if (sonarFile == null) {
-        logSkippedIssueOutsideOfSonarQube(issue);
-      } else if (reSharperConf.languageKey().equals(sonarFile.language())) {
-        if (!enabledRuleKeys(context.activeRules()).contains(issue.ruleKey())) {
-          logSkippedIssue(issue, "because the rule \"" + issue.ruleKey() + "\" is either missing or inactive in the quality profile.");
-        } else {
-          context.addIssue(context.issueBuilder()
-            .ruleKey(RuleKey.of(reSharperConf.repositoryKey(), issue.ruleKey()))
-            .onFile(sonarFile)
-            .atLine(issue.line())
-            .message(issue.message())
-            .build());
+      IssueSaver saver = new IssueSaver(context);
+      ReSharperParallelTransform transform = parallelTransform();
+      try {
+        Iterator<ResolvedIssue> resolvedIssues = transform.transform(issues.iterator(), saver.resolver());
+        while (resolvedIssues.hasNext()) {
+          saver.save(resolvedIssues.next());
         }
+      } finally {
+        transform.close();
       }
+      saver.logSummary();
+      return issuesPerReport;
+    } finally {
+      issues.close();
     }
   }
 
-  private static boolean hasFileAndLine(ReSharperIssue issue) {
-    return issue.filePath() != null && issue.line() != null;
+  private void parseAndSnapshot(File reportFile, ReSharperIssueSink sink, ReSharperIssueSnapshot.Writer snapshotWriter) {
+    try {
+      parser.parse(reportFile, sink, ReSharperIssueFilter.acceptAll());
+      snapshotWriter.close();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } finally {
+      snapshotWriter.abortUnlessClosed();
+    }
   }
 
-  private static void logSkippedIssueOutsideOfSonarQube(ReSharperIssue issue) {
-    logSkippedIssue(issue, "whose file \"" + issue.filePath() + "\" is not in SonarQube.");
+  ReSharperParallelTransform parallelTransform() {
+    return new ReSharperParallelTransform(Runtime.getRuntime().availableProcessors(), RESOLUTION_BATCH_SIZE);
   }
 
-  private static void logSkippedIssue(ReSharperIssue issue, String reason) {
-    LOG.info("Skipping the ReSharper issue at line " + issue.reportLine() + " " + reason);
+  /**
+   * Issues are resolved to their SonarQube file and line in parallel batches, and then saved one by one on the sensor thread,
+   * sorted by file, then by line in the report, and in the order of the reports among equal issues
+   * (see {@link ReSharperIssueBuffer}), as the deduplication, the caps and the SonarQube API are not thread safe.
+   * The input files are looked up by absolute path on the sensor thread beforehand, so that resolving never calls the file system.
+   */
+  private class IssueSaver {
+
+    private final SensorContext context;
+    private final Map<String, InputFile> inputFiles = Maps.newHashMap();
+    private final Set<String> enabledRuleKeys;
+    private final ReSharperLineResolver lineResolver;
+    private final ReSharperIssueDeduplicator deduplicator = new ReSharperIssueDeduplicator();
+    private final ReSharperIssueCaps caps;
+    private final ReSharperLineHashes lineHashes;
+    private final File baselineFile;
+    private final ReSharperBaseline baseline;
+    private final ReSharperFingerprintSet newBaseline;
+    private final ReSharperFingerprintSet lineFingerprints = new ReSharperFingerprintSet();
+    private final Map<Long, Integer> repeatedLineFingerprints = Maps.newHashMap();
+    private int knownIssues;
+
+    public IssueSaver(SensorContext context) {
+      Settings settings = context.settings();
+      this.context = context;
+      FileSystem fs = context.fileSystem();
+      for (InputFile inputFile : fs.inputFiles(fs.predicates().all())) {
+        inputFiles.put(inputFile.absolutePath(), inputFile);
+      }
+      this.enabledRuleKeys = ImmutableSet.copyOf(ReSharperInspection.enabledRuleKeys(reSharperConf, context.activeRules()));
+      this.lineResolver = new ReSharperLineResolver(fs.encoding());
+      this.caps = new ReSharperIssueCaps(
+        settings.getInt(ReSharperPlugin.MAX_ISSUES_PER_RULE_PROPERTY_KEY),
+        settings.getInt(ReSharperPlugin.MAX_ISSUES_PER_FILE_PROPERTY_KEY));
+      this.lineHashes = new ReSharperLineHashes(fs.encoding());
+      this.baselineFile = baselineFile(context);
+      this.baseline = loadBaseline(settings, baselineFile);
+      this.newBaseline = baselineFile != null && settings.getBoolean(ReSharperPlugin.UPDATE_BASELINE_PROPERTY_KEY) ? new ReSharperFingerprintSet() : null;
+    }
+
+    public Function<ReSharperIssue, ResolvedIssue> resolver() {
+      return new Function<ReSharperIssue, ResolvedIssue>() {
+        @Override
+        public ResolvedIssue apply(ReSharperIssue issue) {
+          return resolve(issue);
+        }
+      };
+    }
+
+    /**
+     * Called by several threads at once: returns null for issues of files of other languages.
+     */
+    @Nullable
+    private ResolvedIssue resolve(ReSharperIssue issue) {
+      if (!hasFileAndLocation(issue)) {
+        return ResolvedIssue.skipped(issue, "which has no associated file.");
+      }
+
+      InputFile sonarFile = inputFiles.get(PathUtils.sanitize(issue.filePath()));
+      if (sonarFile == null) {
+        return ResolvedIssue.skipped(issue, "whose file \"" + issue.filePath() + "\" is not in SonarQube.");
+      } else if (!reSharperConf.languageKey().equals(sonarFile.language())) {
+        return null;
+      }
+
+      Integer line = issue.line() != null ? issue.line() : lineResolver.line(sonarFile.file(), issue.offset());
+      if (line == null) {
+        return ResolvedIssue.skipped(issue, "whose offset " + issue.offset() + " is beyond the end of the file \"" + issue.filePath() + "\".");
+      } else if (!enabledRuleKeys.contains(issue.ruleKey())) {
+        return ResolvedIssue.skipped(issue, "because the rule \"" + issue.ruleKey() + "\" is either missing or inactive in the quality profile.");
+      }
+
+      long fingerprint = 0;
+      if (baseline != null || newBaseline != null) {
+        fingerprint = ReSharperBaseline.fingerprint(issue.ruleKey(), sonarFile.relativePath(), lineHashes.hash(sonarFile.file(), line));
+      }
+      return new ResolvedIssue(issue, sonarFile, line, fingerprint, null);
+    }
+
+    public void save(@Nullable ResolvedIssue resolved) {
+      if (resolved == null) {
+        return;
+      }
+
+      ReSharperIssue issue = resolved.issue;
+      if (resolved.skipReason != null) {
+        logSkippedIssue(issue, resolved.skipReason);
+      } else if (!deduplicator.isDuplicate(issue.ruleKey(), resolved.sonarFile.absolutePath(), resolved.line, issue.message())
+        && isNew(resolved.fingerprint)
+        && caps.accept(issue.ruleKey(), resolved.sonarFile.absolutePath())) {
+        context.addIssue(context.issueBuilder()
+          .ruleKey(RuleKey.of(reSharperConf.repositoryKey(), issue.ruleKey()))
+          .onFile(resolved.sonarFile)
+          .atLine(resolved.line)
+          .message(issue.message())
+          .build());
+      }
+    }
+
+    /**
+     * Only the occurrences of the lines with several issues of the same rule are kept in a map, as they are rare.
+     */
+    private boolean isNew(long lineFingerprint) {
+      if (baseline == null && newBaseline == null) {
+        return true;
+      }
+      int occurrence = 0;
+      if (!lineFingerprints.add(lineFingerprint)) {
+        Integer previous = repeatedLineFingerprints.get(lineFingerprint);
+        occurrence = previous == null ? 1 : (previous + 1);
+        repeatedLineFingerprints.put(lineFingerprint, occurrence);
+      }
+      long fingerprint = ReSharperBaseline.fingerprint(lineFingerprint, occurrence);
+      if (newBaseline != null) {
+        newBaseline.add(fingerprint);
+      }
+      if (baseline != null && baseline.contains(fingerprint)) {
+        knownIssues++;
+        return false;
+      }
+      return true;
+    }
+
+    public void logSummary() {
+      if (knownIssues > 0) {
+        LOG.info("Skipped " + knownIssues + " ReSharper issues already in the baseline " + baselineFile.getAbsolutePath());
+      }
+      if (newBaseline != null) {
+        ReSharperBaseline.write(baselineFile, newBaseline);
+        LOG.info("Updated the ReSharper baseline " + baselineFile.getAbsolutePath() + " with " + newBaseline.size() + " issues");
+      }
+      if (deduplicator.duplicates() > 0) {
+        LOG.info("Skipped " + deduplicator.duplicates() + " duplicated ReSharper issues, reported for several projects or target frameworks");
+      }
+      caps.logSummary();
+    }
+
   }
 
-  private List<String> enabledRuleKeys(ActiveRules activeRules) {
-    ImmutableList.Builder<String> builder = ImmutableList.builder();
-    for (ActiveRule activeRule : activeRules.findByRepository(reSharperConf.repositoryKey())) {
-      // TODO WTF? ActiveRule.ruleKey() should be a string, and perhaps there should be a method ActiveRule.rule()
-      builder.add(activeRule.ruleKey().rule());
+  private static class PathResolvingSink implements ReSharperIssueSink {
+
+    private final ReSharperIssueSink issues;
+    private final ReSharperSolution solution;
+
+    public PathResolvingSink(ReSharperIssueSink issues, ReSharperSolution solution) {
+      this.issues = issues;
+      this.solution = solution;
+    }
+
+    @Override
+    public void accept(ReSharperIssue issue) {
+      if (issue.filePath() == null || new File(issue.filePath()).isAbsolute()) {
+        issues.accept(issue);
+      } else {
+        issues.accept(new ReSharperIssue(issue.reportLine(), issue.ruleKey(), solution.resolve(issue.filePath()), issue.line(), issue.offset(), issue.message()));
+      }
+    }
+
+  }
+
+  /**
+   * Writes every issue to the snapshot, but only passes those accepted by the filter on.
+   */
+  private static class SnapshotTeeSink implements ReSharperIssueSink {
+
+    private final ReSharperIssueSnapshot.Writer snapshotWriter;
+    private final ReSharperIssueFilter filter;
+    private final ReSharperIssueSink issues;
+
+    public SnapshotTeeSink(ReSharperIssueSnapshot.Writer snapshotWriter, ReSharperIssueFilter filter, ReSharperIssueSink issues) {
+      this.snapshotWriter = snapshotWriter;
+      this.filter = filter;
+      this.issues = issues;
+    }
+
+    @Override
+    public void accept(ReSharperIssue issue) {
+      snapshotWriter.accept(issue);
+      if (filter.accept(issue.ruleKey(), issue.filePath())) {
+        issues.accept(issue);
+      }
+    }
+
+  }
+
+  private static class ResolvedIssue {
+
+    private final ReSharperIssue issue;
+    private final InputFile sonarFile;
+    private final int line;
+    private final long fingerprint;
+    private final String skipReason;
+
+    public ResolvedIssue(ReSharperIssue issue, @Nullable InputFile sonarFile, int line, long fingerprint, @Nullable String skipReason) {
+      this.issue = issue;
+      this.sonarFile = sonarFile;
+      this.line = line;
+      this.fingerprint = fingerprint;
+      this.skipReason = skipReason;
+    }
+
+    public static ResolvedIssue skipped(ReSharperIssue issue, String reason) {
+      return new ResolvedIssue(issue, null, 0, 0, reason);
+    }
+
+  }
+
+  @Nullable
+  private static File baselineFile(SensorContext context) {
+    String path = context.settings().getString(ReSharperPlugin.BASELINE_PATH_PROPERTY_KEY);
+    if (path == null || path.isEmpty()) {
+      return null;
+    }
+
+    File file = new File(path);
+    return file.isAbsolute() ? file : new File(context.fileSystem().baseDir(), path);
+  }
+
+  /**
+   * No baseline is used when it is being updated, so that all issues are saved.
+   */
+  @Nullable
+  private static ReSharperBaseline loadBaseline(Settings settings, @Nullable File baselineFile) {
+    if (baselineFile == null || settings.getBoolean(ReSharperPlugin.UPDATE_BASELINE_PROPERTY_KEY)) {
+      return null;
+    }
+    if (!baselineFile.isFile()) {
+      LOG.warn("The ReSharper baseline " + baselineFile.getAbsolutePath() + " does not exist, all issues are saved");
+      return null;
+    }
+
+    ReSharperBaseline baseline = ReSharperBaseline.load(baselineFile);
+    LOG.info("Only saving the ReSharper issues which are not in the baseline " + baselineFile.getAbsolutePath() + " of " + baseline.size() + " issues");
+    return baseline;
+  }
+
+  /**
+   * Issues of inactive rules, and of files outside of the deepest directory holding all the files of the language, are
+   * rejected while parsing. Relative paths are only filtered when that directory is in the one of the solution.
+   */
+  private static ReSharperIssueFilter filter(List<String> enabledRuleKeys, @Nullable File moduleDirectory, @Nullable ReSharperSolution solution) {
+    if (moduleDirectory == null) {
+      return new ReSharperIssueFilter(enabledRuleKeys, null, null);
+    }
+
+    String modulePath = directoryPrefix(moduleDirectory.getAbsolutePath());
+    String relativePrefix = null;
+    if (solution != null) {
+      String solutionPath = directoryPrefix(solution.directory().getAbsolutePath());
+      if (modulePath.regionMatches(true, 0, solutionPath, 0, solutionPath.length())) {
+        relativePrefix = modulePath.substring(solutionPath.length());
+      }
     }
-    return builder.build();
+    return new ReSharperIssueFilter(enabledRuleKeys, ImmutableList.of(modulePath), relativePrefix == null ? null : ImmutableList.of(relativePrefix));
+  }
+
+  private static String directoryPrefix(String path) {
+    return path.endsWith(File.separator) ? path : path + File.separator;
+  }
+
+  @Nullable
+  private File moduleDirectory(FileSystem fs) {
+    File common = null;
+    for (File file : fs.files(fs.predicates().and(fs.predicates().hasLanguage(reSharperConf.languageKey()), fs.predicates().hasType(InputFile.Type.MAIN)))) {
+      File directory = file.getAbsoluteFile().getParentFile();
+      if (common == null) {
+        common = directory;
+      } else {
+        while (common != null && !isAncestor(common, directory)) {
+          common = common.getParentFile();
+        }
+        if (common == null) {
+          return null;
+        }
+      }
+    }
+    return common;
+  }
+
+  private static boolean isAncestor(File ancestor, File directory) {
+    String ancestorPath = directoryPrefix(ancestor.getPath());
+    return directoryPrefix(directory.getPath()).startsWith(ancestorPath);
+  }
+
+  private static boolean hasFileAndLocation(ReSharperIssue issue) {
+    return issue.filePath() != null && (issue.line() != null || issue.offset() != null);
+  }
+
+  private static void logSkippedIssue(ReSharperIssue issue, String reason) {
+    LOG.info("Skipping the ReSharper issue at line " + issue.reportLine() + " " + reason);
   }
 
   public void checkProperties(Settings settings) {
@@ -0,0 +1,73 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import java.io.File;
+
+/**
+ * Unit of work of an inspectcode execution: one project of a solution, inspected with a DotSettings file.
+ * When the rules are split into groups, each group of a project is a shard of its own, numbered from 1, and 0 stands for all the rules.
+ */
+public class ReSharperShard {
+
+  private final String solutionFile;
+  private final String project;
+  private final File dotSettingsFile;
+  private final File reportFile;
+  private final int ruleGroup;
+
+  public ReSharperShard(String solutionFile, String project, File dotSettingsFile, File reportFile) {
+    this(solutionFile, project, dotSettingsFile, reportFile, 0);
+  }
+
+  public ReSharperShard(String solutionFile, String project, File dotSettingsFile, File reportFile, int ruleGroup) {
+    this.solutionFile = solutionFile;
+    this.project = project;
+    this.dotSettingsFile = dotSettingsFile;
+    this.reportFile = reportFile;
+    this.ruleGroup = ruleGroup;
+  }
+
+  public String solutionFile() {
+    return solutionFile;
+  }
+
+  public String project() {
+    return project;
+  }
+
+  public File dotSettingsFile() {
+    return dotSettingsFile;
+  }
+
+  public File reportFile() {
+    return reportFile;
+  }
+
+  public int ruleGroup() {
+    return ruleGroup;
+  }
+
+  @Override
+  public String toString() {
+    return "project \"" + project + "\" of " + solutionFile + (ruleGroup == 0 ? "" : ", rule group " + ruleGroup);
+  }
+
+}
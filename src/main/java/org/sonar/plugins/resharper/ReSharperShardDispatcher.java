@@ -0,0 +1,184 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sonar.api.BatchComponent;
+
+import javax.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs shards concurrently on a pool of workers, each worker inspecting one shard at a time.
+ * A shard which fails on a worker is retried on another one, and the dispatch fails once a shard has failed on every worker.
+ * Shards are assigned in the given order, so that the caller decides which ones start first.
+ */
+public class ReSharperShardDispatcher implements BatchComponent {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperShardDispatcher.class);
+
+  /**
+   * Returns the duration, in milliseconds, of the successful inspection of each shard.
+   */
+  public Map<ReSharperShard, Long> dispatch(List<ReSharperShard> shards, List<? extends ReSharperWorker> workers, int timeoutMinutes) {
+    Preconditions.checkArgument(!workers.isEmpty(), "At least one worker is required");
+
+    ExecutorService executorService = Executors.newFixedThreadPool(workers.size(),
+      new ThreadFactoryBuilder().setNameFormat("resharper-worker-%d").setDaemon(true).build());
+    try {
+      return new Dispatch(shards, workers, timeoutMinutes, executorService).run();
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static class Attempt {
+
+    private final ReSharperShard shard;
+    private final Set<ReSharperWorker> failedWorkers = Sets.newHashSet();
+    private ReSharperWorker worker;
+    private Exception failure;
+    private long durationMillis;
+
+    public Attempt(ReSharperShard shard) {
+      this.shard = shard;
+    }
+
+  }
+
+  private static class Dispatch {
+
+    private final List<? extends ReSharperWorker> workers;
+    private final int timeoutMinutes;
+    private final CompletionService<Attempt> completionService;
+    private final LinkedList<Attempt> pending = Lists.newLinkedList();
+    private final List<ReSharperWorker> idleWorkers;
+    private final Map<ReSharperShard, Long> durations = Maps.newLinkedHashMap();
+    private int running;
+
+    public Dispatch(List<ReSharperShard> shards, List<? extends ReSharperWorker> workers, int timeoutMinutes, ExecutorService executorService) {
+      this.workers = workers;
+      this.timeoutMinutes = timeoutMinutes;
+      this.completionService = new ExecutorCompletionService<Attempt>(executorService);
+      this.idleWorkers = Lists.<ReSharperWorker>newArrayList(workers);
+      for (ReSharperShard shard : shards) {
+        pending.add(new Attempt(shard));
+      }
+    }
+
+    public Map<ReSharperShard, Long> run() {
+      while (!pending.isEmpty() || running > 0) {
+        assignPendingShards();
+
+        Attempt attempt = nextCompletedAttempt();
+        running--;
+        idleWorkers.add(attempt.worker);
+
+        if (attempt.failure == null) {
+          LOG.info("ReSharper inspected the " + attempt.shard + " on the " + attempt.worker + " in " + attempt.durationMillis + " ms");
+          durations.put(attempt.shard, attempt.durationMillis);
+        } else {
+          attempt.failedWorkers.add(attempt.worker);
+          if (attempt.failedWorkers.size() == workers.size()) {
+            throw new IllegalStateException("ReSharper failed to inspect the " + attempt.shard + " on every worker", attempt.failure);
+          }
+          LOG.warn("ReSharper failed to inspect the " + attempt.shard + " on the " + attempt.worker + ", retrying on another worker", attempt.failure);
+          pending.addFirst(attempt);
+        }
+      }
+      return durations;
+    }
+
+    private void assignPendingShards() {
+      Iterator<Attempt> it = pending.iterator();
+      while (it.hasNext() && !idleWorkers.isEmpty()) {
+        Attempt attempt = it.next();
+        ReSharperWorker worker = idleWorkerFor(attempt);
+        if (worker != null) {
+          it.remove();
+          idleWorkers.remove(worker);
+          submit(attempt, worker);
+        }
+      }
+    }
+
+    @Nullable
+    private ReSharperWorker idleWorkerFor(Attempt attempt) {
+      for (ReSharperWorker worker : idleWorkers) {
+        if (!attempt.failedWorkers.contains(worker)) {
+          return worker;
+        }
+      }
+      return null;
+    }
+
+    private void submit(final Attempt attempt, final ReSharperWorker worker) {
+      attempt.worker = worker;
+      attempt.failure = null;
+      running++;
+      completionService.submit(new Callable<Attempt>() {
+
+        @Override
+        public Attempt call() {
+          long start = System.currentTimeMillis();
+          try {
+            worker.inspect(attempt.shard, timeoutMinutes);
+          } catch (Exception e) {
+            attempt.failure = e;
+          }
+          attempt.durationMillis = System.currentTimeMillis() - start;
+          return attempt;
+        }
+
+      });
+    }
+
+    private Attempt nextCompletedAttempt() {
+      try {
+        return completionService.take().get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting for the ReSharper workers", e);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+
+  }
+
+}
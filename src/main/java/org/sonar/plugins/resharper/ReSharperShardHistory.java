@@ -0,0 +1,173 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Durations and issue counts of the projects of previous analyses, kept in a properties file.
+ * <p>
+ * The estimated duration of a project is a moving average of its last durations, with a weight of one half
+ * for the latest one, so that a single slow run does not reorder the shards for long.
+ */
+public class ReSharperShardHistory {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperShardHistory.class);
+
+  private static final String DURATION_SUFFIX = ".durationMillis";
+  private static final String ISSUES_SUFFIX = ".issues";
+
+  private final File file;
+  private final Properties properties;
+
+  private ReSharperShardHistory(@Nullable File file, Properties properties) {
+    this.file = file;
+    this.properties = properties;
+  }
+
+  /**
+   * A null file, for which nothing is recorded, is used when no history is kept.
+   */
+  public static ReSharperShardHistory load(@Nullable File file) {
+    Properties properties = new Properties();
+    if (file != null && file.isFile()) {
+      try {
+        InputStream is = new FileInputStream(file);
+        try {
+          properties.load(is);
+        } finally {
+          IOUtils.closeQuietly(is);
+        }
+      } catch (IOException e) {
+        LOG.warn("Ignoring the unreadable ReSharper history " + file.getAbsolutePath(), e);
+        properties.clear();
+      }
+    }
+    return new ReSharperShardHistory(file, properties);
+  }
+
+  @Nullable
+  public Long estimatedDurationMillis(ReSharperShard shard) {
+    return longValue(key(shard) + DURATION_SUFFIX);
+  }
+
+  /**
+   * Number of issues of the latest report of the project, including those of inactive rules and of other modules.
+   */
+  @Nullable
+  public Long issues(ReSharperShard shard) {
+    return longValue(key(shard) + ISSUES_SUFFIX);
+  }
+
+  public void recordDuration(ReSharperShard shard, long durationMillis) {
+    Long previous = estimatedDurationMillis(shard);
+    long estimate = previous == null ? durationMillis : (previous + durationMillis) / 2;
+    properties.setProperty(key(shard) + DURATION_SUFFIX, Long.toString(estimate));
+  }
+
+  public void recordIssues(ReSharperShard shard, long issues) {
+    properties.setProperty(key(shard) + ISSUES_SUFFIX, Long.toString(issues));
+  }
+
+  /**
+   * Longest processing time first: as each worker takes the next pending shard once idle, starting with the
+   * longest shards lets the short ones fill the gaps at the end, so that the workers finish at about the same time.
+   * Shards without history come first, as they may be the longest ones. Among shards with the same or no estimated duration,
+   * the ones which produced the most issues come first, as reporting them adds to the duration, and the remaining ties keep the given order.
+   */
+  public List<ReSharperShard> longestFirst(List<ReSharperShard> shards) {
+    List<ReSharperShard> result = Lists.newArrayList(shards);
+    Collections.sort(result, new Comparator<ReSharperShard>() {
+      @Override
+      public int compare(ReSharperShard a, ReSharperShard b) {
+        int byDuration = forOrdering(estimatedDurationMillis(b)).compareTo(forOrdering(estimatedDurationMillis(a)));
+        return byDuration != 0 ? byDuration : forOrdering(issues(b)).compareTo(forOrdering(issues(a)));
+      }
+    });
+    return result;
+  }
+
+  private static Long forOrdering(@Nullable Long value) {
+    return value == null ? Long.MAX_VALUE : value;
+  }
+
+  /**
+   * Written through a temporary file of its own, so that concurrent analyses never read a partial history.
+   * The history only orders the projects: failing to save it is logged, and does not fail the analysis.
+   */
+  public void save() {
+    if (file == null) {
+      return;
+    }
+
+    File partial = null;
+    try {
+      File directory = file.getAbsoluteFile().getParentFile();
+      FileUtils.forceMkdir(directory);
+      partial = File.createTempFile(file.getName(), ".part", directory);
+      OutputStream os = new FileOutputStream(partial);
+      try {
+        properties.store(os, "ReSharper project durations and issue counts");
+      } finally {
+        os.close();
+      }
+      FileUtils.deleteQuietly(file);
+      FileUtils.moveFile(partial, file);
+    } catch (IOException e) {
+      LOG.warn("Could not save the ReSharper history " + file.getAbsolutePath(), e);
+      FileUtils.deleteQuietly(partial);
+    }
+  }
+
+  private static String key(ReSharperShard shard) {
+    return shard.solutionFile() + "|" + shard.project() + (shard.ruleGroup() == 0 ? "" : "|" + shard.ruleGroup());
+  }
+
+  @Nullable
+  private Long longValue(String key) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,378 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Model of a Visual Studio solution: its projects, and the source files they compile.
+ * <p>
+ * The model is stored in a cache directory, under the SHA-1 of the solution and project files, so that the project files
+ * are only parsed again when one of them changed. Paths are stored relative to the solution directory, with forward slashes,
+ * so that the model can be shared between checkouts of the solution in different directories.
+ * Only the latest model of each solution name is kept, the older ones are deleted once it is stored.
+ * Items using wildcards, and the implicit items of SDK-style projects, are not part of the model.
+ */
+public class ReSharperSolution {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperSolution.class);
+
+  private static final String CACHE_FILE_PREFIX = "resharper-solution-";
+  private static final String CACHE_FILE_SUFFIX = ".bin";
+
+  private static final int MAGIC = 0x5253534D;
+  private static final int VERSION = 1;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Pattern PROJECT = Pattern.compile("\\s*Project\\(\"\\{[^}]*\\}\"\\)\\s*=\\s*\"([^\"]*)\"\\s*,\\s*\"([^\"]*)\".*");
+
+  private final File directory;
+  private final List<Project> projects;
+  private final Map<String, Project> projectsByName = Maps.newHashMap();
+  private final Map<String, String> compileItemsByLowerCasePath = Maps.newHashMap();
+  private final ListMultimap<String, Project> projectsByLowerCasePath = ArrayListMultimap.create();
+
+  private ReSharperSolution(File directory, List<Project> projects) {
+    this.directory = directory;
+    this.projects = projects;
+    for (Project project : projects) {
+      projectsByName.put(project.name.toLowerCase(Locale.ENGLISH), project);
+      for (String compileItem : project.compileItems) {
+        String path = absolutePath(compileItem);
+        compileItemsByLowerCasePath.put(path.toLowerCase(Locale.ENGLISH), path);
+        projectsByLowerCasePath.put(path.toLowerCase(Locale.ENGLISH), project);
+      }
+      projectsByLowerCasePath.put(absolutePath(project.path).toLowerCase(Locale.ENGLISH), project);
+    }
+  }
+
+  public static class Project {
+
+    private final String name;
+    private final String path;
+    private final List<String> compileItems;
+
+    Project(String name, String path, List<String> compileItems) {
+      this.name = name;
+      this.path = path;
+      this.compileItems = compileItems;
+    }
+
+    public String name() {
+      return name;
+    }
+
+    /**
+     * Path of the project file, relative to the solution directory.
+     */
+    public String path() {
+      return path;
+    }
+
+    /**
+     * Paths of the compiled files, relative to the solution directory.
+     */
+    public List<String> compileItems() {
+      return compileItems;
+    }
+
+  }
+
+  public File directory() {
+    return directory;
+  }
+
+  public List<Project> projects() {
+    return projects;
+  }
+
+  /**
+   * Project names are case insensitive, as in Visual Studio.
+   */
+  @Nullable
+  public Project project(String name) {
+    return projectsByName.get(name.toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Projects compiling the file, which may be linked into several ones, or owning the project file.
+   */
+  public List<Project> projectsOf(String absolutePath) {
+    String normalized = FilenameUtils.normalize(absolutePath);
+    return projectsByLowerCasePath.get((normalized != null ? normalized : absolutePath).toLowerCase(Locale.ENGLISH));
+  }
+
+  /**
+   * Resolves a path relative to the solution directory, such as the ones of the model.
+   */
+  public File file(String relativePath) {
+    return new File(absolutePath(relativePath));
+  }
+
+  /**
+   * Resolves a path of an InspectCode report, relative to the solution directory, to an absolute path.
+   * The path of a compiled file is taken from the model, with the case used by the project, without probing the file system.
+   */
+  public String resolve(String reportPath) {
+    String path = absolutePath(reportPath);
+    String compileItem = compileItemsByLowerCasePath.get(path.toLowerCase(Locale.ENGLISH));
+    return compileItem != null ? compileItem : path;
+  }
+
+  private String absolutePath(String relativePath) {
+    String path = new File(directory, FilenameUtils.separatorsToSystem(relativePath)).getAbsolutePath();
+    String normalized = FilenameUtils.normalize(path);
+    return normalized != null ? normalized : path;
+  }
+
+  /**
+   * Returns null when the solution file does not exist.
+   */
+  @Nullable
+  public static ReSharperSolution load(File solutionFile, File cacheDirectory) {
+    if (!solutionFile.isFile()) {
+      return null;
+    }
+
+    try {
+      File directory = solutionFile.getAbsoluteFile().getParentFile();
+      List<String[]> namesAndPaths = parseSolution(solutionFile);
+      String prefix = CACHE_FILE_PREFIX + FilenameUtils.getBaseName(solutionFile.getName()) + "-";
+      File cacheFile = new File(cacheDirectory, prefix + key(solutionFile, directory, namesAndPaths) + CACHE_FILE_SUFFIX);
+      if (cacheFile.isFile()) {
+        try {
+          return new ReSharperSolution(directory, read(cacheFile));
+        } catch (IOException e) {
+          LOG.warn("Ignoring the unreadable ReSharper solution model " + cacheFile.getAbsolutePath(), e);
+        }
+      }
+
+      List<Project> projects = Lists.newArrayList();
+      for (String[] nameAndPath : namesAndPaths) {
+        projects.add(new Project(nameAndPath[0], nameAndPath[1], parseCompileItems(new File(directory, nameAndPath[1]), nameAndPath[1])));
+      }
+      write(cacheFile, projects);
+      deleteStaleCacheFiles(cacheDirectory, prefix, cacheFile);
+      return new ReSharperSolution(directory, projects);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  /**
+   * Solution folders, which are listed as projects, are skipped as their path does not end with "proj".
+   */
+  private static List<String[]> parseSolution(File solutionFile) throws IOException {
+    ImmutableList.Builder<String[]> builder = ImmutableList.builder();
+    for (String line : Files.readLines(solutionFile, Charsets.UTF_8)) {
+      Matcher matcher = PROJECT.matcher(line);
+      if (matcher.matches() && matcher.group(2).toLowerCase(Locale.ENGLISH).endsWith("proj")) {
+        builder.add(new String[] {matcher.group(1), FilenameUtils.separatorsToUnix(matcher.group(2))});
+      }
+    }
+    return builder.build();
+  }
+
+  private static List<String> parseCompileItems(File projectFile, String projectPath) {
+    if (!projectFile.isFile()) {
+      LOG.warn("The project file " + projectFile.getAbsolutePath() + " referenced by the solution does not exist");
+      return ImmutableList.of();
+    }
+
+    String projectDirectory = FilenameUtils.getPath(projectPath);
+    ImmutableList.Builder<String> builder = ImmutableList.builder();
+    InputStream is = null;
+    XMLStreamReader stream = null;
+    try {
+      is = new BufferedInputStream(new FileInputStream(projectFile));
+      stream = XMLInputFactory.newInstance().createXMLStreamReader(is);
+      while (stream.hasNext()) {
+        if (stream.next() == XMLStreamConstants.START_ELEMENT && "Compile".equals(stream.getLocalName())) {
+          String include = stream.getAttributeValue(null, "Include");
+          for (String item : include == null ? new String[0] : include.split(";")) {
+            item = item.trim();
+            if (!item.isEmpty() && item.indexOf('*') == -1 && item.indexOf('?') == -1) {
+              builder.add(projectDirectory + FilenameUtils.separatorsToUnix(item));
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    } catch (XMLStreamException e) {
+      LOG.warn("Unable to parse the project file " + projectFile.getAbsolutePath() + ", its files are not part of the solution model", e);
+      return ImmutableList.of();
+    } finally {
+      closeQuietly(stream);
+      IOUtils.closeQuietly(is);
+    }
+    return builder.build();
+  }
+
+  private static void closeQuietly(@Nullable XMLStreamReader stream) {
+    if (stream != null) {
+      try {
+        stream.close();
+      } catch (XMLStreamException e) {
+        LOG.debug("Unable to close a project file", e);
+      }
+    }
+  }
+
+  private static String key(File solutionFile, File directory, List<String[]> namesAndPaths) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+
+    digest.update(Files.toByteArray(solutionFile));
+    for (String[] nameAndPath : namesAndPaths) {
+      File projectFile = new File(directory, nameAndPath[1]);
+      digest.update(nameAndPath[1].getBytes(Charsets.UTF_8));
+      digest.update((byte) 0);
+      if (projectFile.isFile()) {
+        digest.update(Files.toByteArray(projectFile));
+      }
+      digest.update((byte) 0);
+    }
+
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest()) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+
+  private static List<Project> read(File file) throws IOException {
+    DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+    try {
+      if (is.readInt() != MAGIC || is.readInt() != VERSION) {
+        throw new IOException("Not a ReSharper solution model of version " + VERSION);
+      }
+
+      int projectCount = is.readInt();
+      List<Project> projects = Lists.newArrayListWithCapacity(projectCount);
+      for (int i = 0; i < projectCount; i++) {
+        String name = is.readUTF();
+        String path = is.readUTF();
+        int itemCount = is.readInt();
+        List<String> compileItems = Lists.newArrayListWithCapacity(itemCount);
+        for (int j = 0; j < itemCount; j++) {
+          compileItems.add(is.readUTF());
+        }
+        projects.add(new Project(name, path, compileItems));
+      }
+      return projects;
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
+  /**
+   * Failing to store the model only costs parsing the project files again, so it is not fatal.
+   */
+  private static void write(File file, Collection<Project> projects) {
+    File partial = null;
+    try {
+      FileUtils.forceMkdir(file.getAbsoluteFile().getParentFile());
+      partial = File.createTempFile(file.getName(), ".part", file.getAbsoluteFile().getParentFile());
+      DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(partial), BUFFER_SIZE));
+      try {
+        os.writeInt(MAGIC);
+        os.writeInt(VERSION);
+        os.writeInt(projects.size());
+        for (Project project : projects) {
+          os.writeUTF(project.name);
+          os.writeUTF(project.path);
+          os.writeInt(project.compileItems.size());
+          for (String compileItem : project.compileItems) {
+            os.writeUTF(compileItem);
+          }
+        }
+      } finally {
+        os.close();
+      }
+      FileUtils.deleteQuietly(file);
+      FileUtils.moveFile(partial, file);
+    } catch (IOException e) {
+      LOG.warn("Unable to store the ReSharper solution model " + file.getAbsolutePath(), e);
+      FileUtils.deleteQuietly(partial);
+    }
+  }
+
+  /**
+   * The models of other solutions whose name starts with the same prefix, such as "App-Web" for "App", have a longer name.
+   */
+  private static void deleteStaleCacheFiles(File cacheDirectory, final String prefix, final File cacheFile) {
+    File[] staleFiles = cacheDirectory.listFiles(new FileFilter() {
+      @Override
+      public boolean accept(File file) {
+        String name = file.getName();
+        return name.startsWith(prefix) && name.endsWith(CACHE_FILE_SUFFIX) && name.length() == cacheFile.getName().length() && !file.equals(cacheFile);
+      }
+    });
+    if (staleFiles != null) {
+      for (File staleFile : staleFiles) {
+        FileUtils.deleteQuietly(staleFile);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived inspection of a solution, which keeps the issues of its projects up to date in memory.
+ * <p>
+ * The solution file, the project files and the compiled files of the solution model are polled, as Java 6 cannot be
+ * notified of file changes. Once no more change is seen for the debounce delay, only the projects owning the changed files
+ * are inspected again, and the solution model is reloaded first when the solution or a project file changed.
+ * Files of SDK-style projects, which do not list their compiled files, are not watched.
+ * <p>
+ * Each inspection writes a report of its own, which is deleted once parsed, so that a report still memory-mapped
+ * by a previous parse never has to be overwritten.
+ */
+public class ReSharperWatcher implements Closeable {
+
+  private static final Logger LOG = LoggerFactory.getLogger(ReSharperWatcher.class);
+
+  private final ReSharperExecutor executor;
+  private final ReSharperReportParser parser;
+  private final ReSharperDotSettingsWriter writer;
+  private final String executable;
+  private final File solutionFile;
+  private final List<String> ruleKeys;
+  private final File workDir;
+  private final int timeoutMinutes;
+  private final long debounceMillis;
+
+  private final ReSharperIssueIndex index = new ReSharperIssueIndex();
+  private final Set<String> pendingChanges = Sets.newHashSet();
+  private ReSharperSolution solution;
+  private Map<String, Long> snapshot;
+  private long lastChangeMillis;
+  private ScheduledExecutorService scheduler;
+
+  public ReSharperWatcher(ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer, String executable,
+    File solutionFile, List<String> ruleKeys, File workDir, int timeoutMinutes, long debounceMillis) {
+    this.executor = executor;
+    this.parser = parser;
+    this.writer = writer;
+    this.executable = executable;
+    String normalized = FilenameUtils.normalize(solutionFile.getAbsolutePath());
+    this.solutionFile = normalized != null ? new File(normalized) : solutionFile.getAbsoluteFile();
+    this.ruleKeys = ruleKeys;
+    this.workDir = workDir;
+    this.timeoutMinutes = timeoutMinutes;
+    this.debounceMillis = debounceMillis;
+  }
+
+  /**
+   * Inspects every project of the solution, and then polls the files on a background thread.
+   */
+  public void start(long pollMillis) {
+    solution = ReSharperSolution.load(solutionFile, workDir);
+    if (solution == null) {
+      throw new IllegalStateException("The solution file " + solutionFile.getPath() + " does not exist");
+    }
+    writer.write(ruleKeys, dotSettingsFile());
+    for (ReSharperSolution.Project project : solution.projects()) {
+      inspect(project);
+    }
+    snapshot = snapshot();
+
+    scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("resharper-watcher").setDaemon(true).build());
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          poll(System.currentTimeMillis());
+        } catch (RuntimeException e) {
+          LOG.warn("Failed to inspect the changed files again, retrying on their next change", e);
+        }
+      }
+    }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Can be queried from any thread.
+   */
+  public ReSharperIssueIndex index() {
+    return index;
+  }
+
+  void poll(long nowMillis) {
+    Map<String, Long> current = snapshot();
+    Set<String> changed = Sets.newHashSet();
+    for (Map.Entry<String, Long> entry : current.entrySet()) {
+      if (!entry.getValue().equals(snapshot.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    changed.addAll(Sets.difference(snapshot.keySet(), current.keySet()));
+    snapshot = current;
+
+    if (!changed.isEmpty()) {
+      pendingChanges.addAll(changed);
+      lastChangeMillis = nowMillis;
+    } else if (!pendingChanges.isEmpty() && nowMillis - lastChangeMillis >= debounceMillis) {
+      Set<String> changes = Sets.newHashSet(pendingChanges);
+      pendingChanges.clear();
+      inspectAgain(changes);
+    }
+  }
+
+  private void inspectAgain(Set<String> changes) {
+    Set<ReSharperSolution.Project> projects = Sets.newLinkedHashSet();
+    for (String change : changes) {
+      projects.addAll(solution.projectsOf(change));
+    }
+
+    if (changes.contains(solutionFile.getPath()) || containsProjectFile(projects, changes)) {
+      LOG.info("The solution or its projects changed, reloading them");
+      solution = ReSharperSolution.load(solutionFile, workDir);
+      if (solution == null) {
+        LOG.warn("The solution file " + solutionFile.getPath() + " disappeared, waiting for it to come back");
+        return;
+      }
+      projects = Sets.newLinkedHashSet(changes.contains(solutionFile.getPath()) ? solution.projects() : reloaded(projects));
+      snapshot = snapshot();
+      List<String> projectNames = Lists.newArrayList();
+      for (ReSharperSolution.Project project : solution.projects()) {
+        projectNames.add(project.name());
+      }
+      index.retainProjects(projectNames);
+    }
+
+    for (ReSharperSolution.Project project : projects) {
+      inspect(project);
+    }
+  }
+
+  private boolean containsProjectFile(Set<ReSharperSolution.Project> projects, Set<String> changes) {
+    for (ReSharperSolution.Project project : projects) {
+      if (changes.contains(solution.file(project.path()).getPath())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private List<ReSharperSolution.Project> reloaded(Set<ReSharperSolution.Project> projects) {
+    List<ReSharperSolution.Project> result = Lists.newArrayList();
+    for (ReSharperSolution.Project project : projects) {
+      ReSharperSolution.Project reloaded = solution.project(project.name());
+      if (reloaded != null) {
+        result.add(reloaded);
+      }
+    }
+    return result;
+  }
+
+  private void inspect(ReSharperSolution.Project project) {
+    long startMillis = System.currentTimeMillis();
+    File reportFile;
+    try {
+      reportFile = File.createTempFile("resharper-watch-report-", ".xml", workDir);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    try {
+      executor.execute(executable, project.name(), solutionFile.getPath(), dotSettingsFile(), reportFile, timeoutMinutes);
+      for (ReSharperIssue issue : parser.parse(reportFile)) {
+        if (issue.filePath() == null || new File(issue.filePath()).isAbsolute()) {
+          issues.add(issue);
+        } else {
+          issues.add(new ReSharperIssue(issue.reportLine(), issue.ruleKey(), solution.resolve(issue.filePath()), issue.line(), issue.offset(), issue.message()));
+        }
+      }
+    } finally {
+      FileUtils.deleteQuietly(reportFile);
+    }
+    index.update(project.name(), issues);
+    LOG.info("Inspected the project \"" + project.name() + "\" in " + (System.currentTimeMillis() - startMillis) + " ms, " + issues.size() + " issues");
+  }
+
+  /**
+   * The modification date and size of each watched file.
+   */
+  private Map<String, Long> snapshot() {
+    Map<String, Long> result = Maps.newHashMap();
+    addToSnapshot(result, solutionFile);
+    for (ReSharperSolution.Project project : solution.projects()) {
+      addToSnapshot(result, solution.file(project.path()));
+      for (String compileItem : project.compileItems()) {
+        addToSnapshot(result, solution.file(compileItem));
+      }
+    }
+    return result;
+  }
+
+  private static void addToSnapshot(Map<String, Long> snapshot, File file) {
+    if (file.isFile()) {
+      snapshot.put(file.getPath(), file.lastModified() * 31 + file.length());
+    }
+  }
+
+  private File dotSettingsFile() {
+    return new File(workDir, "resharper-sonarqube.DotSettings");
+  }
+
+  @Override
+  public void close() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+}
@@ -20,7 +20,9 @@
 package org.sonar.plugins.resharper;
 
 import com.google.common.collect.ImmutableList;
-import org.sonar.api.rules.XMLRuleParser;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.config.Settings;
 
 import java.util.List;
 
@@ -34,21 +36,32 @@ public class VBNetReSharperProvider {
   public static List extensions() {
     return ImmutableList.of(
       VBNetReSharperRuleRepository.class,
-      VBNetReSharperSensor.class);
+      VBNetReSharperSensor.class,
+      VBNetReSharperEarlyLauncher.class);
   }
 
   public static class VBNetReSharperRuleRepository extends ReSharperRuleRepository {
 
-    public VBNetReSharperRuleRepository(XMLRuleParser xmlRuleParser) {
-      super(RESHARPER_CONF, xmlRuleParser);
+    public VBNetReSharperRuleRepository(ReSharperRuleCatalog ruleCatalog) {
+      super(RESHARPER_CONF, ruleCatalog);
     }
 
   }
 
   public static class VBNetReSharperSensor extends ReSharperSensor {
 
-    public VBNetReSharperSensor(ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer) {
-      super(RESHARPER_CONF, executor, parser, writer);
+    public VBNetReSharperSensor(ReSharperExecutor executor, ReSharperReportParser parser, ReSharperDotSettingsWriter writer, ReSharperReportCache cache,
+      ReSharperShardDispatcher dispatcher, VBNetReSharperEarlyLauncher launcher) {
+      super(RESHARPER_CONF, executor, parser, writer, cache, dispatcher, launcher);
+    }
+
+  }
+
+  public static class VBNetReSharperEarlyLauncher extends ReSharperEarlyLauncher {
+
+    public VBNetReSharperEarlyLauncher(Settings settings, FileSystem fileSystem, ActiveRules activeRules, ReSharperExecutor executor,
+      ReSharperDotSettingsWriter writer, ReSharperReportCache cache, ReSharperShardDispatcher dispatcher) {
+      super(RESHARPER_CONF, settings, fileSystem, activeRules, executor, writer, cache, dispatcher);
     }
 
   }
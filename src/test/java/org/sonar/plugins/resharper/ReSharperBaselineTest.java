@@ -0,0 +1,81 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperBaselineTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void write_and_load() {
+    ReSharperFingerprintSet fingerprints = new ReSharperFingerprintSet();
+    fingerprints.add(ReSharperBaseline.fingerprint("Rule", "src/Class1.cs", 42));
+    fingerprints.add(-7);
+    fingerprints.add(0);
+
+    File file = new File(tmp.getRoot(), "baselines/resharper-baseline.bin");
+    ReSharperBaseline.write(file, fingerprints);
+    assertThat(file.length()).isEqualTo(12 + 3 * 8);
+    assertThat(file.getParentFile().list()).containsOnly("resharper-baseline.bin");
+
+    ReSharperBaseline baseline = ReSharperBaseline.load(file);
+    assertThat(baseline.size()).isEqualTo(3);
+    assertThat(baseline.contains(ReSharperBaseline.fingerprint("Rule", "src/Class1.cs", 42))).isTrue();
+    assertThat(baseline.contains(-7)).isTrue();
+    assertThat(baseline.contains(0)).isTrue();
+    assertThat(baseline.contains(ReSharperBaseline.fingerprint("Rule", "src/Class1.cs", 43))).isFalse();
+    assertThat(baseline.contains(ReSharperBaseline.fingerprint("Rule", "src/Class2.cs", 42))).isFalse();
+  }
+
+  @Test
+  public void occurrences() {
+    long lineFingerprint = ReSharperBaseline.fingerprint("Rule", "src/Class1.cs", 42);
+    assertThat(ReSharperBaseline.fingerprint(lineFingerprint, 0)).isEqualTo(lineFingerprint);
+    assertThat(ReSharperBaseline.fingerprint(lineFingerprint, 1)).isNotEqualTo(lineFingerprint);
+    assertThat(ReSharperBaseline.fingerprint(lineFingerprint, 2)).isNotEqualTo(ReSharperBaseline.fingerprint(lineFingerprint, 1));
+  }
+
+  @Test
+  public void not_a_baseline_file() throws Exception {
+    File file = tmp.newFile();
+    Files.write("<Report />", file, Charsets.UTF_8);
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Not a ReSharper baseline file");
+
+    ReSharperBaseline.load(file);
+  }
+
+}
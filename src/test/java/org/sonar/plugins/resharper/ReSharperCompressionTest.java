@@ -0,0 +1,95 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.InputStream;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperCompressionTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void gzip_round_trip() throws Exception {
+    File plain = tmp.newFile("report.xml");
+    Files.write("<Report />", plain, Charsets.UTF_8);
+    File compressed = tmp.newFile("report.xml.gz");
+    ReSharperCompression.gzip(plain, compressed);
+
+    assertThat(ReSharperCompression.isCompressed(plain)).isFalse();
+    assertThat(ReSharperCompression.isCompressed(compressed)).isTrue();
+
+    assertThat(read(plain)).isEqualTo("<Report />");
+    assertThat(read(compressed)).isEqualTo("<Report />");
+  }
+
+  @Test
+  public void detection_does_not_rely_on_extension() throws Exception {
+    File compressed = tmp.newFile("report.xml");
+    File plain = tmp.newFile("plain.xml");
+    Files.write("<Report />", plain, Charsets.UTF_8);
+    ReSharperCompression.gzip(plain, compressed);
+
+    assertThat(read(compressed)).isEqualTo("<Report />");
+  }
+
+  @Test
+  public void short_files() throws Exception {
+    File empty = tmp.newFile("empty.xml");
+    assertThat(ReSharperCompression.isCompressed(empty)).isFalse();
+    assertThat(read(empty)).isEmpty();
+  }
+
+  @Test
+  public void zstd() throws Exception {
+    File file = tmp.newFile("report.xml.zst");
+    Files.write(new byte[] {(byte) 0x28, (byte) 0xB5, (byte) 0x2F, (byte) 0xFD, 0, 0}, file);
+
+    assertThat(ReSharperCompression.isCompressed(file)).isTrue();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Zstandard compressed reports are not supported");
+    ReSharperCompression.open(file);
+  }
+
+  private static String read(File file) throws Exception {
+    InputStream is = ReSharperCompression.open(file);
+    try {
+      return IOUtils.toString(is, "UTF-8");
+    } finally {
+      is.close();
+    }
+  }
+
+}
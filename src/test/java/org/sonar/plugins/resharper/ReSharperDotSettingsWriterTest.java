@@ -21,12 +21,15 @@ package org.sonar.plugins.resharper;
 
 import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.util.List;
 
 import static org.fest.assertions.Assertions.assertThat;
 
@@ -44,8 +47,8 @@ public class ReSharperDotSettingsWriterTest {
     assertThat(contents1.replace("\r", "").replace("\n", ""))
       .isEqualTo(
         "<wpf:ResourceDictionary xml:space=\"preserve\" xmlns:x=\"http://schemas.microsoft.com/winfx/2006/xaml\" xmlns:s=\"clr-namespace:System;assembly=mscorlib\" xmlns:ss=\"urn:shemas-jetbrains-com:settings-storage-xaml\" xmlns:wpf=\"http://schemas.microsoft.com/winfx/2006/xaml/presentation\">"
-          + "  <s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=foo/@EntryIndexedValue\">WARNING</s:String>"
           + "  <s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=bar/@EntryIndexedValue\">WARNING</s:String>"
+          + "  <s:String x:Key=\"/Default/CodeInspection/Highlighting/InspectionSeverities/=foo/@EntryIndexedValue\">WARNING</s:String>"
           + "</wpf:ResourceDictionary>");
 
     File file2 = tmp.newFile();
@@ -57,4 +60,50 @@ public class ReSharperDotSettingsWriterTest {
       .contains("baz");
   }
 
+  @Test
+  public void leave_identical_file_untouched() throws Exception {
+    File file = new File(tmp.getRoot(), "resharper-sonarqube.DotSettings");
+    ReSharperDotSettingsWriter writer = new ReSharperDotSettingsWriter();
+    writer.write(ImmutableList.of("foo", "bar"), file);
+    assertThat(file.setLastModified(1000000000L)).isTrue();
+
+    writer.write(ImmutableList.of("foo", "bar"), file);
+    assertThat(file.lastModified()).isEqualTo(1000000000L);
+
+    writer.write(ImmutableList.of("bar", "foo"), file);
+    assertThat(file.lastModified()).isEqualTo(1000000000L);
+
+    writer.write(ImmutableList.of("bar", "baz", "foo"), file);
+    assertThat(file.lastModified()).isNotEqualTo(1000000000L);
+    assertThat(ReSharperDotSettingsWriter.ruleKeys(file)).containsExactly("bar", "baz", "foo");
+  }
+
+  @Test
+  public void read_back_rule_keys() throws Exception {
+    File file = tmp.newFile();
+    new ReSharperDotSettingsWriter().write(ImmutableList.of("foo.bar", "baz", "foo:bar"), file);
+    assertThat(ReSharperDotSettingsWriter.ruleKeys(file)).containsExactly("baz", "foo.bar", "foo:bar");
+
+    new ReSharperDotSettingsWriter().write(ImmutableList.<String>of(), file);
+    assertThat(ReSharperDotSettingsWriter.ruleKeys(file)).isEmpty();
+  }
+
+  @Test
+  public void disable_the_known_rules_outside_of_the_group() throws Exception {
+    List<String> ruleKeys = ImmutableList.of("RedundantCast", "CSharpWarnings::CS0618", "RedundantUsingDirective", "CSharpWarnings::CS0649");
+    List<List<String>> groups = ReSharperInspection.ruleGroups(ruleKeys, 2);
+    assertThat(groups).hasSize(2);
+
+    File file = tmp.newFile();
+    new ReSharperDotSettingsWriter().writeExclusive(groups.get(0), file);
+    String contents = Files.toString(file, Charsets.UTF_8);
+
+    assertThat(ReSharperDotSettingsWriter.ruleKeys(file)).isEqualTo(groups.get(0));
+    for (String ruleKey : groups.get(1)) {
+      assertThat(contents).contains("/=" + ruleKey.replace(":", "_003A") + "/@EntryIndexedValue\">DO_NOT_SHOW<");
+    }
+    assertThat(contents).contains("/=AccessToDisposedClosure/@EntryIndexedValue\">DO_NOT_SHOW<");
+    assertThat(contents.split("DO_NOT_SHOW<").length - 1).isEqualTo(Sets.difference(ImmutableSet.copyOf(ReSharperRuleCatalog.ruleKeys()), ImmutableSet.copyOf(groups.get(0))).size());
+  }
+
 }
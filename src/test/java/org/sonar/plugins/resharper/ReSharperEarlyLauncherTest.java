@@ -0,0 +1,202 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.rule.ActiveRules;
+import org.sonar.api.batch.rule.internal.ActiveRulesBuilder;
+import org.sonar.api.config.Settings;
+import org.sonar.api.rule.RuleKey;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class ReSharperEarlyLauncherTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final ReSharperConfiguration reSharperConf = new ReSharperConfiguration("cs", "resharper-cs");
+  private final ReSharperExecutor executor = mock(ReSharperExecutor.class);
+  private final ReSharperDotSettingsWriter writer = mock(ReSharperDotSettingsWriter.class);
+  private final ReSharperReportCache cache = mock(ReSharperReportCache.class);
+  private final ReSharperShardDispatcher dispatcher = mock(ReSharperShardDispatcher.class);
+
+  private Settings settings;
+  private DefaultFileSystem fileSystem;
+
+  @Before
+  public void before() throws Exception {
+    settings = new Settings();
+    settings.setProperty(ReSharperPlugin.EARLY_START_PROPERTY_KEY, "true");
+    settings.setProperty(ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY, "MyLibrary");
+    settings.setProperty(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY, "CSharpPlayground.sln");
+    settings.setProperty(ReSharperPlugin.INSPECTCODE_PATH_PROPERTY_KEY, "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.TIMEOUT_MINUTES_PROPERTY_KEY, "10");
+
+    fileSystem = new DefaultFileSystem();
+    fileSystem.setBaseDir(tmp.getRoot());
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+  }
+
+  @Test
+  public void run_is_started_early() throws Exception {
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Files.write("<Report />", (File) invocation.getArguments()[4], Charsets.UTF_8);
+        return null;
+      }
+
+    }).when(executor).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+
+    ReSharperEarlyLauncher launcher = launcher(activeRules("resharper-cs"));
+    launcher.start();
+    ReSharperInspection.Result result = launcher.awaitResult();
+    launcher.stop();
+
+    File reportFile = new File(fileSystem.workDir(), "resharper-cs/resharper-report.xml");
+    assertThat(result.reportFiles()).containsOnly(reportFile);
+    assertThat(reportFile).exists();
+
+    assertThat(launcher.awaitResult()).isNull();
+  }
+
+  @Test
+  public void failure_is_rethrown_to_the_sensor() {
+    doThrow(new IllegalStateException("inspectcode crashed"))
+      .when(executor).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+
+    ReSharperEarlyLauncher launcher = launcher(activeRules("resharper-cs"));
+    launcher.start();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("inspectcode crashed");
+    try {
+      launcher.awaitResult();
+    } finally {
+      launcher.stop();
+    }
+  }
+
+  @Test
+  public void unused_run_is_cancelled() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        started.countDown();
+        try {
+          Thread.sleep(60000);
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+        return null;
+      }
+
+    }).when(executor).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+
+    ReSharperEarlyLauncher launcher = launcher(activeRules("resharper-cs"));
+    launcher.start();
+    started.await();
+    launcher.stop();
+
+    interrupted.await();
+    assertThat(launcher.awaitResult()).isNull();
+  }
+
+  @Test
+  public void disabled_by_default() {
+    settings.removeProperty(ReSharperPlugin.EARLY_START_PROPERTY_KEY);
+
+    ReSharperEarlyLauncher launcher = launcher(activeRules("resharper-cs"));
+    launcher.start();
+
+    assertThat(launcher.awaitResult()).isNull();
+    launcher.stop();
+    verifyZeroInteractions(executor, writer);
+  }
+
+  @Test
+  public void not_started_without_active_rules() {
+    ReSharperEarlyLauncher launcher = launcher(activeRules("resharper-vbnet"));
+    launcher.start();
+
+    assertThat(launcher.awaitResult()).isNull();
+    verifyZeroInteractions(executor, writer);
+  }
+
+  @Test
+  public void not_started_when_importing_a_report() {
+    settings.setProperty(ReSharperPlugin.REPORT_PATH_PROPERTY_KEY, "resharper-report.xml");
+
+    ReSharperEarlyLauncher launcher = launcher(activeRules("resharper-cs"));
+    launcher.start();
+
+    assertThat(launcher.awaitResult()).isNull();
+    verifyZeroInteractions(executor, writer);
+  }
+
+  @Test
+  public void not_started_without_project_name() {
+    settings.removeProperty(ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY);
+
+    ReSharperEarlyLauncher launcher = launcher(activeRules("resharper-cs"));
+    launcher.start();
+
+    assertThat(launcher.awaitResult()).isNull();
+    verifyZeroInteractions(executor, writer, dispatcher);
+  }
+
+  private ReSharperEarlyLauncher launcher(ActiveRules activeRules) {
+    return new ReSharperEarlyLauncher(reSharperConf, settings, fileSystem, activeRules, executor, writer, cache, dispatcher);
+  }
+
+  private static ActiveRules activeRules(String repository) {
+    ActiveRulesBuilder builder = new ActiveRulesBuilder();
+    builder.create(RuleKey.of(repository, "AccessToDisposedClosure")).activate();
+    return builder.build();
+  }
+
+}
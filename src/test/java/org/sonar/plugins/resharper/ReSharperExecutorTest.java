@@ -0,0 +1,98 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.command.Command;
+import org.sonar.api.utils.command.CommandException;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ReSharperExecutorTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final ReSharperExecutor executor = new ReSharperExecutor(new Settings());
+
+  @Before
+  public void unixShell() {
+    assumeTrue(!System.getProperty("os.name").startsWith("Windows"));
+  }
+
+  @Test
+  public void successful_execution() {
+    executor.execute(shell("echo Inspecting Class1.cs; echo Inspecting Class2.cs 1>&2"), 10000, 10000);
+  }
+
+  @Test
+  public void fail_on_non_zero_exit_code() {
+    thrown.expect(CommandException.class);
+    thrown.expectMessage("ReSharper execution failed with exit code: 3");
+
+    executor.execute(shell("exit 3"), 10000, 0);
+  }
+
+  @Test
+  public void kill_on_timeout() {
+    thrown.expect(CommandException.class);
+    thrown.expectMessage("ReSharper timed out after 0 s");
+
+    executor.execute(shell("exec sleep 30"), 300, 0);
+  }
+
+  @Test
+  public void kill_when_no_progress() {
+    long start = System.currentTimeMillis();
+    try {
+      executor.execute(shell("echo Inspecting Class1.cs; exec sleep 30"), 30000, 500);
+    } catch (CommandException e) {
+      assertThat(e.getMessage()).contains("ReSharper made no progress for 0 s and was killed, with 0 projects loaded, 1 files inspected");
+      assertThat(System.currentTimeMillis() - start).isLessThan(20000);
+      return;
+    }
+    throw new AssertionError("Expected the stalled execution to be killed");
+  }
+
+  @Test
+  public void pass_the_report_format_only_when_set() {
+    File rulesetFile = new File("resharper-sonarqube.DotSettings");
+    File reportFile = new File("resharper-report.xml");
+    assertThat(executor.command("inspectcode.exe", "MyLibrary", "CSharpPlayground.sln", rulesetFile, reportFile).getArguments()).containsOnly(
+      "/output=" + reportFile.getAbsolutePath(), "/no-swea", "/project=MyLibrary", "/profile=" + rulesetFile.getAbsolutePath(), "/no-buildin-settings", "CSharpPlayground.sln");
+
+    Settings settings = new Settings();
+    settings.setProperty(ReSharperPlugin.INSPECTCODE_FORMAT_PROPERTY_KEY, "Sarif");
+    assertThat(new ReSharperExecutor(settings).command("inspectcode.exe", "MyLibrary", "CSharpPlayground.sln", rulesetFile, reportFile).getArguments())
+      .contains("/format=Sarif");
+  }
+
+  private static Command shell(String script) {
+    return Command.create("sh").addArgument("-c").addArgument(script);
+  }
+
+}
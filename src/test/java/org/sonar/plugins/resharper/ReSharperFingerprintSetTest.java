@@ -0,0 +1,80 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperFingerprintSetTest {
+
+  @Test
+  public void add_and_contains() {
+    ReSharperFingerprintSet set = new ReSharperFingerprintSet();
+    assertThat(set.add(42)).isTrue();
+    assertThat(set.add(42)).isFalse();
+    assertThat(set.add(-42)).isTrue();
+    assertThat(set.contains(42)).isTrue();
+    assertThat(set.contains(-42)).isTrue();
+    assertThat(set.contains(43)).isFalse();
+    assertThat(set.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void zero() {
+    ReSharperFingerprintSet set = new ReSharperFingerprintSet();
+    assertThat(set.contains(0)).isFalse();
+    assertThat(set.add(0)).isTrue();
+    assertThat(set.add(0)).isFalse();
+    assertThat(set.contains(0)).isTrue();
+    assertThat(set.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void grow() {
+    ReSharperFingerprintSet set = new ReSharperFingerprintSet();
+    Random random = new Random(0);
+    long[] fingerprints = new long[100000];
+    for (int i = 0; i < fingerprints.length; i++) {
+      fingerprints[i] = random.nextLong();
+      assertThat(set.add(fingerprints[i])).isTrue();
+    }
+
+    assertThat(set.size()).isEqualTo(fingerprints.length);
+    for (long fingerprint : fingerprints) {
+      assertThat(set.contains(fingerprint)).isTrue();
+      assertThat(set.add(fingerprint)).isFalse();
+    }
+  }
+
+  @Test
+  public void colliding_indexes() {
+    ReSharperFingerprintSet set = new ReSharperFingerprintSet();
+    for (long i = 1; i <= 2000; i++) {
+      set.add(i << 32 | i);
+    }
+    assertThat(set.size()).isEqualTo(2000);
+    assertThat(set.contains(7L << 32 | 7)).isTrue();
+    assertThat(set.contains(7L << 32 | 8)).isFalse();
+  }
+
+}
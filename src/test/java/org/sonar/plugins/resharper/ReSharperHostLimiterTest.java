@@ -0,0 +1,142 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.Lists;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+
+public class ReSharperHostLimiterTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executorService.shutdownNow();
+  }
+
+  @Test
+  public void wait_for_a_free_slot() throws Exception {
+    final ReSharperHostLimiter limiter = new ReSharperHostLimiter(tmp.getRoot(), 2, 10);
+    ReSharperHostLimiter.Lock first = limiter.acquire();
+    limiter.acquire();
+
+    Future<ReSharperHostLimiter.Lock> third = executorService.submit(new Callable<ReSharperHostLimiter.Lock>() {
+      @Override
+      public ReSharperHostLimiter.Lock call() {
+        return limiter.acquire();
+      }
+    });
+    assertNotDone(third);
+
+    first.release();
+    assertThat(third.get(5, TimeUnit.SECONDS)).isNotNull();
+    assertThat(tickets()).isEmpty();
+  }
+
+  @Test
+  public void serve_waiting_analyses_in_order() throws Exception {
+    final ReSharperHostLimiter limiter = new ReSharperHostLimiter(tmp.getRoot(), 1, 10);
+    ReSharperHostLimiter.Lock running = limiter.acquire();
+
+    final List<String> served = Collections.synchronizedList(Lists.<String>newArrayList());
+    Future<ReSharperHostLimiter.Lock> a = waitFor(limiter, "a", served);
+    awaitTickets(1);
+    Thread.sleep(20);
+    Future<ReSharperHostLimiter.Lock> b = waitFor(limiter, "b", served);
+    awaitTickets(2);
+
+    running.release();
+    a.get(5, TimeUnit.SECONDS);
+    assertNotDone(b);
+    assertThat(served).containsExactly("a");
+
+    a.get().release();
+    b.get(5, TimeUnit.SECONDS);
+    assertThat(served).containsExactly("a", "b");
+  }
+
+  @Test
+  public void ignore_and_delete_the_tickets_of_analyses_which_stopped_waiting() throws Exception {
+    File stale = new File(tmp.getRoot(), "ticket-000000000000000-00000000.lock");
+    assertThat(stale.createNewFile()).isTrue();
+
+    ReSharperHostLimiter.Lock lock = new ReSharperHostLimiter(tmp.getRoot(), 1, 10).acquire();
+    assertThat(lock).isNotNull();
+    assertThat(stale).doesNotExist();
+  }
+
+  private Future<ReSharperHostLimiter.Lock> waitFor(final ReSharperHostLimiter limiter, final String name, final List<String> served) {
+    return executorService.submit(new Callable<ReSharperHostLimiter.Lock>() {
+      @Override
+      public ReSharperHostLimiter.Lock call() {
+        ReSharperHostLimiter.Lock lock = limiter.acquire();
+        served.add(name);
+        return lock;
+      }
+    });
+  }
+
+  private static void assertNotDone(Future<?> future) throws Exception {
+    try {
+      future.get(200, TimeUnit.MILLISECONDS);
+      fail();
+    } catch (TimeoutException e) {
+      // Still waiting
+    }
+  }
+
+  private void awaitTickets(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (tickets().length < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertThat(tickets()).hasSize(count);
+  }
+
+  private String[] tickets() {
+    return tmp.getRoot().list(new FilenameFilter() {
+      @Override
+      public boolean accept(File dir, String name) {
+        return name.startsWith("ticket-");
+      }
+    });
+  }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperIssueBufferTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void issues_are_sorted_by_file_then_report_line() {
+    ReSharperIssueBuffer buffer = new ReSharperIssueBuffer(tmp.getRoot(), 1024 * 1024);
+    buffer.add(new ReSharperIssue(30, "Rule", "b.cs", 3, "message"));
+    buffer.add(new ReSharperIssue(10, "Rule", "b.cs", 1, "message"));
+    buffer.add(new ReSharperIssue(20, "Rule", "a.cs", null, 42, "message"));
+    buffer.add(new ReSharperIssue(40, "Rule", null, null, "message"));
+
+    assertThat(reportLines(buffer)).containsExactly(40, 20, 10, 30);
+    assertThat(buffer.size()).isEqualTo(4);
+    assertThat(buffer.spilledRuns()).isEqualTo(0);
+    assertThat(tmp.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void spill_to_disk_when_budget_is_exceeded() {
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    for (int i = 0; i < 1000; i++) {
+      issues.add(new ReSharperIssue(i, "Rule" + i % 7, i % 13 == 0 ? null : ("File" + i % 17 + ".cs"), i % 5 == 0 ? null : i, i % 3 == 0 ? null : i * 2,
+        "Message é " + i));
+    }
+
+    ReSharperIssueBuffer buffer = new ReSharperIssueBuffer(tmp.getRoot(), 4096);
+    buffer.addAll(issues);
+    assertThat(buffer.spilledRuns()).isGreaterThan(10);
+    assertThat(tmp.getRoot().list()).hasSize(1);
+
+    List<ReSharperIssue> expected = Lists.newArrayList(issues);
+    Collections.sort(expected, ReSharperIssueBuffer.ORDER);
+    List<ReSharperIssue> actual = ImmutableList.copyOf(buffer);
+    assertThat(actual).hasSize(1000);
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).reportLine()).isEqualTo(expected.get(i).reportLine());
+      assertThat(actual.get(i).ruleKey()).isEqualTo(expected.get(i).ruleKey());
+      assertThat(actual.get(i).filePath()).isEqualTo(expected.get(i).filePath());
+      assertThat(actual.get(i).line()).isEqualTo(expected.get(i).line());
+      assertThat(actual.get(i).offset()).isEqualTo(expected.get(i).offset());
+      assertThat(actual.get(i).message()).isEqualTo(expected.get(i).message());
+    }
+
+    assertThat(ImmutableList.copyOf(buffer)).hasSize(1000);
+
+    buffer.close();
+    assertThat(tmp.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void equal_issues_keep_the_order_of_addition() {
+    for (long budgetBytes : new long[] {1, 512, 1024 * 1024}) {
+      ReSharperIssueBuffer buffer = new ReSharperIssueBuffer(tmp.getRoot(), budgetBytes);
+      for (int report = 0; report < 10; report++) {
+        buffer.add(new ReSharperIssue(20, "Rule" + report, "a.cs", 2, "message"));
+        buffer.add(new ReSharperIssue(10, "Other" + report, "b.cs", 1, "message"));
+      }
+
+      List<String> ruleKeys = Lists.newArrayList();
+      for (ReSharperIssue issue : buffer) {
+        ruleKeys.add(issue.ruleKey());
+      }
+      assertThat(ruleKeys).containsExactly(
+        "Rule0", "Rule1", "Rule2", "Rule3", "Rule4", "Rule5", "Rule6", "Rule7", "Rule8", "Rule9",
+        "Other0", "Other1", "Other2", "Other3", "Other4", "Other5", "Other6", "Other7", "Other8", "Other9");
+      buffer.close();
+    }
+  }
+
+  @Test
+  public void clear() {
+    ReSharperIssueBuffer buffer = new ReSharperIssueBuffer(tmp.getRoot(), 1);
+    buffer.add(new ReSharperIssue(10, "Rule", "a.cs", 1, "message"));
+    assertThat(buffer.spilledRuns()).isEqualTo(1);
+
+    buffer.clear();
+    assertThat(buffer).isEmpty();
+    assertThat(buffer.spilledRuns()).isEqualTo(0);
+    assertThat(tmp.getRoot().list()).isEmpty();
+
+    buffer.add(new ReSharperIssue(20, "Rule", "a.cs", 2, "message"));
+    assertThat(reportLines(buffer)).containsExactly(20);
+    buffer.close();
+  }
+
+  @Test
+  public void no_issue_can_be_added_once_iterated() {
+    ReSharperIssueBuffer buffer = new ReSharperIssueBuffer(tmp.getRoot(), 1024);
+    buffer.iterator();
+
+    thrown.expect(IllegalStateException.class);
+    buffer.add(new ReSharperIssue(10, "Rule", "a.cs", 1, "message"));
+  }
+
+  @Test
+  public void parser_streams_into_buffer_and_clears_it_on_fallback() {
+    ReSharperIssueBuffer buffer = new ReSharperIssueBuffer(tmp.getRoot(), 1);
+    new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/fallback.xml"), buffer);
+
+    assertThat(reportLines(buffer)).hasSize(new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/fallback.xml")).size());
+    buffer.close();
+  }
+
+  private static List<Integer> reportLines(Iterable<ReSharperIssue> issues) {
+    List<Integer> reportLines = Lists.newArrayList();
+    for (ReSharperIssue issue : issues) {
+      reportLines.add(issue.reportLine());
+    }
+    return reportLines;
+  }
+
+}
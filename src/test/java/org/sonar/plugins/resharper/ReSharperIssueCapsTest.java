@@ -0,0 +1,83 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperIssueCapsTest {
+
+  @Test
+  public void no_limit() {
+    ReSharperIssueCaps caps = new ReSharperIssueCaps(0, 0);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(caps.accept("Rule", "Class1.cs")).isTrue();
+    }
+    assertThat(caps.suppressed()).isEqualTo(0);
+  }
+
+  @Test
+  public void limit_per_rule() {
+    ReSharperIssueCaps caps = new ReSharperIssueCaps(2, 0);
+    assertThat(caps.accept("Rule", "Class1.cs")).isTrue();
+    assertThat(caps.accept("Rule", "Class2.cs")).isTrue();
+    assertThat(caps.accept("Rule", "Class3.cs")).isFalse();
+    assertThat(caps.accept("OtherRule", "Class3.cs")).isTrue();
+    assertThat(caps.suppressed()).isEqualTo(1);
+  }
+
+  @Test
+  public void limit_per_file() {
+    ReSharperIssueCaps caps = new ReSharperIssueCaps(0, 2);
+    assertThat(caps.accept("Rule1", "Class1.cs")).isTrue();
+    assertThat(caps.accept("Rule2", "Class1.cs")).isTrue();
+    assertThat(caps.accept("Rule3", "Class1.cs")).isFalse();
+    assertThat(caps.accept("Rule3", "Class2.cs")).isTrue();
+    assertThat(caps.suppressed()).isEqualTo(1);
+  }
+
+  @Test
+  public void suppressed_issues_do_not_count_towards_the_other_limit() {
+    ReSharperIssueCaps caps = new ReSharperIssueCaps(1, 1);
+    assertThat(caps.accept("Rule1", "Class1.cs")).isTrue();
+    assertThat(caps.accept("Rule1", "Class2.cs")).isFalse();
+    assertThat(caps.accept("Rule2", "Class2.cs")).isTrue();
+    assertThat(caps.accept("Rule3", "Class2.cs")).isFalse();
+    assertThat(caps.suppressed()).isEqualTo(2);
+  }
+
+  @Test
+  public void summary() {
+    Multiset<String> suppressed = HashMultiset.create();
+    suppressed.add("B", 3);
+    suppressed.add("A", 3);
+    suppressed.add("C", 7);
+    assertThat(ReSharperIssueCaps.summary(suppressed)).isEqualTo("C (7), A (3), B (3)");
+
+    for (int i = 0; i < 12; i++) {
+      suppressed.add("Rule" + i);
+    }
+    assertThat(ReSharperIssueCaps.summary(suppressed)).startsWith("C (7), A (3), B (3), Rule0 (1)").endsWith(", and 5 more");
+  }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperIssueDeduplicatorTest {
+
+  @Test
+  public void duplicates() {
+    ReSharperIssueDeduplicator deduplicator = new ReSharperIssueDeduplicator();
+
+    assertThat(deduplicator.isDuplicate("Rule", "Class1.cs", 1, "message")).isFalse();
+    assertThat(deduplicator.isDuplicate("Rule", "Class1.cs", 1, "message")).isTrue();
+    assertThat(deduplicator.isDuplicate("Rule", "Class1.cs", 1, "message")).isTrue();
+    assertThat(deduplicator.isDuplicate("OtherRule", "Class1.cs", 1, "message")).isFalse();
+    assertThat(deduplicator.isDuplicate("Rule", "Class2.cs", 1, "message")).isFalse();
+    assertThat(deduplicator.isDuplicate("Rule", "Class1.cs", 2, "message")).isFalse();
+    assertThat(deduplicator.isDuplicate("Rule", "Class1.cs", 1, "other message")).isFalse();
+
+    assertThat(deduplicator.duplicates()).isEqualTo(2);
+  }
+
+  @Test
+  public void fingerprint_separates_fields() {
+    assertThat(ReSharperIssueDeduplicator.fingerprint("ab", "c", 1, "m"))
+      .isNotEqualTo(ReSharperIssueDeduplicator.fingerprint("a", "bc", 1, "m"));
+    assertThat(ReSharperIssueDeduplicator.fingerprint("a", "b", 1, "m"))
+      .isEqualTo(ReSharperIssueDeduplicator.fingerprint("a", "b", 1, "m"));
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperIssueFilterTest {
+
+  @Test
+  public void accept_all() {
+    ReSharperIssueFilter filter = ReSharperIssueFilter.acceptAll();
+
+    assertThat(filter.accept("AnyRule", "C:\\Any\\Foo.cs")).isTrue();
+    assertThat(filter.accept("AnyRule", "Any\\Foo.cs")).isTrue();
+    assertThat(filter.accept("AnyRule", null)).isTrue();
+    assertThat(filter.rejected()).isEqualTo(0);
+  }
+
+  @Test
+  public void rule_keys() {
+    ImmutableList.Builder<String> ruleKeys = ImmutableList.builder();
+    for (int i = 0; i < 100; i++) {
+      ruleKeys.add("Rule" + i);
+    }
+    ReSharperIssueFilter filter = new ReSharperIssueFilter(ruleKeys.build(), null, null);
+
+    assertThat(filter.accept("Rule0", null)).isTrue();
+    assertThat(filter.accept(new StringBuilder("Rule99"), null)).isTrue();
+    assertThat(filter.accept("Rule100", null)).isFalse();
+    assertThat(filter.accept("rule1", null)).isFalse();
+    assertThat(filter.accept("", null)).isFalse();
+    assertThat(filter.rejected()).isEqualTo(3);
+
+    assertThat(new ReSharperIssueFilter(ImmutableList.<String>of(), null, null).accept("Rule0", null)).isFalse();
+  }
+
+  @Test
+  public void path_prefixes_ignore_case_and_separators() {
+    ReSharperIssueFilter filter = new ReSharperIssueFilter(null, ImmutableList.of("C:\\Solution\\MyLibrary\\", "/home/solution/MyLibrary/"),
+      ImmutableList.of("MyLibrary\\"));
+
+    assertThat(filter.accept("Rule", "C:\\Solution\\MyLibrary\\Foo.cs")).isTrue();
+    assertThat(filter.accept("Rule", "c:/solution/mylibrary/Foo.cs")).isTrue();
+    assertThat(filter.accept("Rule", "/home/solution/MyLibrary/Foo.cs")).isTrue();
+    assertThat(filter.accept("Rule", "MyLibrary\\Foo.cs")).isTrue();
+    assertThat(filter.accept("Rule", "mylibrary/Foo.cs")).isTrue();
+    assertThat(filter.accept("Rule", null)).isTrue();
+
+    assertThat(filter.accept("Rule", "C:\\Solution\\MyLibraryTests\\Foo.cs")).isFalse();
+    assertThat(filter.accept("Rule", "C:\\Solution\\Foo.cs")).isFalse();
+    assertThat(filter.accept("Rule", "MyApplication\\Foo.cs")).isFalse();
+    assertThat(filter.rejected()).isEqualTo(3);
+  }
+
+  @Test
+  public void null_prefixes_accept_any_path_of_their_kind() {
+    ReSharperIssueFilter filter = new ReSharperIssueFilter(null, ImmutableList.of("C:\\Solution\\"), null);
+
+    assertThat(filter.accept("Rule", "Anything\\Foo.cs")).isTrue();
+    assertThat(filter.accept("Rule", "D:\\Other\\Foo.cs")).isFalse();
+  }
+
+}
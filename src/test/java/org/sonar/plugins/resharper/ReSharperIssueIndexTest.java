@@ -0,0 +1,84 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperIssueIndexTest {
+
+  @Test
+  public void update_replaces_the_issues_of_the_project_only() {
+    ReSharperIssueIndex index = new ReSharperIssueIndex();
+    index.update("MyLibrary", ImmutableList.of(issue("/src/Class1.cs", "First"), issue("/src/Class2.cs", "Second"), issue(null, "Without file")));
+    index.update("MyApplication", ImmutableList.of(issue("/src/Program.cs", "Third")));
+    assertThat(index.size()).isEqualTo(3);
+    assertThat(index.issues("/src/Class1.cs")).hasSize(1);
+
+    index.update("MyLibrary", ImmutableList.of(issue("/src/Class2.cs", "Fourth")));
+
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(index.issues("/src/Class1.cs")).isEmpty();
+    assertThat(index.issues("/src/Class2.cs").get(0).message()).isEqualTo("Fourth");
+    assertThat(index.issues("/src/Program.cs").get(0).message()).isEqualTo("Third");
+  }
+
+  @Test
+  public void retain_the_projects_of_the_solution_only() {
+    ReSharperIssueIndex index = new ReSharperIssueIndex();
+    index.update("MyLibrary", ImmutableList.of(issue("/src/Class1.cs", "First")));
+    index.update("MyApplication", ImmutableList.of(issue("/src/Program.cs", "Second")));
+
+    index.retainProjects(ImmutableList.of("MyApplication", "MyService"));
+
+    assertThat(index.size()).isEqualTo(1);
+    assertThat(index.issues("/src/Class1.cs")).isEmpty();
+    assertThat(index.issues("/src/Program.cs")).hasSize(1);
+  }
+
+  @Test
+  public void files_shared_by_projects_keep_the_issues_of_each_project() {
+    ReSharperIssueIndex index = new ReSharperIssueIndex();
+    index.update("MyLibrary", ImmutableList.of(issue("/src/Shared.cs", "First"), issue("/src/Class1.cs", "Second")));
+    index.update("MyApplication", ImmutableList.of(issue("/src/Shared.cs", "Third")));
+    List<ReSharperIssue> unchanged = index.issues("/src/Class1.cs");
+    assertThat(index.issues("/src/Shared.cs")).hasSize(2);
+
+    index.update("MyApplication", ImmutableList.<ReSharperIssue>of());
+
+    assertThat(index.size()).isEqualTo(2);
+    assertThat(index.issues("/src/Shared.cs")).hasSize(1);
+    assertThat(index.issues("/src/Shared.cs").get(0).message()).isEqualTo("First");
+    assertThat(index.issues("/src/Class1.cs")).isSameAs(unchanged);
+
+    index.retainProjects(ImmutableList.of("MyApplication"));
+    assertThat(index.size()).isEqualTo(0);
+    assertThat(index.issues("/src/Shared.cs")).isEmpty();
+  }
+
+  private static ReSharperIssue issue(String filePath, String message) {
+    return new ReSharperIssue(1, "Rule", filePath, 1, message);
+  }
+
+}
@@ -0,0 +1,231 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.primitives.Bytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperIssueSnapshotTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static final List<ReSharperIssue> ISSUES = ImmutableList.of(
+    new ReSharperIssue(16, "RedundantUsingDirective", "MyLibrary\\Class1.cs", null, 0, "Using directive is not required"),
+    new ReSharperIssue(300000, "JoinDeclarationAndInitializer", "MyLibrary\\Caf\u00e9.cs", 9, 138, "Join \u65e5\u672c"),
+    new ReSharperIssue(12, "RedundantUsingDirective", null, null, null, "Using directive is not required"),
+    new ReSharperIssue(12, "RedundantUsingDirective", "MyLibrary\\Class1.cs", Integer.MAX_VALUE - 1, 1 << 20, ""));
+
+  @Test
+  public void write_and_read() throws Exception {
+    for (boolean compress : new boolean[] {false, true}) {
+      File file = new File(tmp.getRoot(), "issues-" + compress);
+      write(file, compress);
+
+      assertThat(ReSharperCompression.isCompressed(file)).isEqualTo(compress);
+      assertThat(ReSharperReportFormat.detect(file)).isEqualTo(ReSharperReportFormat.SNAPSHOT);
+      List<ReSharperIssue> issues = Lists.newArrayList();
+      ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(issues));
+      assertSameIssues(issues, ISSUES);
+      assertThat(tmp.getRoot().list()).hasSize(compress ? 2 : 1);
+    }
+  }
+
+  @Test
+  public void strings_are_stored_once() throws Exception {
+    File file = tmp.newFile("issues");
+    ReSharperIssueSnapshot.Writer writer = ReSharperIssueSnapshot.writer(file, false);
+    for (int i = 0; i < 1000; i++) {
+      writer.accept(new ReSharperIssue(i + 1, "RedundantUsingDirective", "MyLibrary\\Class1.cs", i, i, "Using directive is not required by the code and can be safely removed"));
+    }
+    writer.close();
+
+    assertThat(writer.size()).isEqualTo(1000);
+    assertThat(file.length()).isLessThan(10000);
+  }
+
+  @Test
+  public void merge_reports_skipping_duplicated_issues() throws Exception {
+    File file = tmp.newFile("issues");
+    int duplicates = ReSharperIssueSnapshot.merge(ImmutableList.of(
+      new File("src/test/resources/ReSharperReportParserTest/valid.xml"),
+      new File("src/test/resources/ReSharperReportParserTest/valid.sarif.json")), file, true);
+
+    assertThat(duplicates).isEqualTo(3);
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(issues));
+    assertSameIssues(issues, new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/valid.xml")));
+  }
+
+  @Test
+  public void filter_while_reading() throws Exception {
+    File file = tmp.newFile("issues");
+    write(file, false);
+
+    ReSharperIssueFilter filter = new ReSharperIssueFilter(ImmutableList.of("RedundantUsingDirective"), null, null);
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    new ReSharperReportParser().parse(file, new ReSharperIssueSink.Collector(issues), filter);
+
+    assertThat(issues).hasSize(3);
+    assertThat(filter.rejected()).isEqualTo(1);
+  }
+
+  @Test
+  public void convert_reports() throws Exception {
+    for (String name : ImmutableList.of("valid.xml", "entities.xml", "valid.sarif.json")) {
+      File report = new File("src/test/resources/ReSharperReportParserTest/" + name);
+      File file = new File(tmp.getRoot(), name + ".issues");
+      ReSharperIssueSnapshot.convert(report, file, true);
+
+      assertSameIssues(new ReSharperReportParser().parse(file), new ReSharperReportParser().parse(report));
+    }
+  }
+
+  @Test
+  public void unsupported_version() throws Exception {
+    File file = tmp.newFile("issues");
+    write(file, false);
+    byte[] bytes = Files.toByteArray(file);
+    bytes[4] = 1;
+    Files.write(bytes, file);
+
+    thrown.expectMessage("Unable to read the issue snapshot");
+    thrown.expectMessage("unsupported version 1");
+    ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(Lists.<ReSharperIssue>newArrayList()));
+  }
+
+  @Test
+  public void truncated() throws Exception {
+    File file = tmp.newFile("issues");
+    write(file, false);
+    byte[] bytes = Files.toByteArray(file);
+    Files.write(Arrays.copyOf(bytes, bytes.length - 3), file);
+
+    thrown.expectMessage("it is truncated");
+    ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(Lists.<ReSharperIssue>newArrayList()));
+  }
+
+  @Test
+  public void too_long_string() throws Exception {
+    File file = tmp.newFile("issues");
+    Files.write(Bytes.concat(ReSharperIssueSnapshot.MAGIC, new byte[] {ReSharperIssueSnapshot.VERSION, 1, 1, (byte) 0xFF, 0x7F, 'a'}), file);
+
+    thrown.expectMessage("it announces a string of 16383 bytes in 1 bytes");
+    ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(Lists.<ReSharperIssue>newArrayList()));
+  }
+
+  @Test
+  public void too_long_string_compressed() throws Exception {
+    File file = tmp.newFile("issues");
+    ReSharperCompression.gzip(new ByteArrayInputStream(Bytes.concat(ReSharperIssueSnapshot.MAGIC,
+      new byte[] {ReSharperIssueSnapshot.VERSION, 1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a'})), file);
+
+    thrown.expectMessage("it is truncated");
+    ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(Lists.<ReSharperIssue>newArrayList()));
+  }
+
+  @Test
+  public void missing_string() throws Exception {
+    File file = tmp.newFile("issues");
+    Files.write(Bytes.concat(ReSharperIssueSnapshot.MAGIC, new byte[] {ReSharperIssueSnapshot.VERSION, 1, 2}), file);
+
+    thrown.expectMessage("it refers to the missing string 0");
+    ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(Lists.<ReSharperIssue>newArrayList()));
+  }
+
+  @Test
+  public void dictionary_is_cleared_once_full() throws Exception {
+    String longMessage = Strings.repeat("x", 100 * 1024);
+    List<ReSharperIssue> expected = Lists.newArrayList();
+    for (int i = 0; i < 3 * ReSharperIssueSnapshot.DICTIONARY_MAX_BYTES / longMessage.length(); i++) {
+      expected.add(new ReSharperIssue(i, "RedundantCast", "File" + i % 3 + ".cs", i, null, i + longMessage));
+      expected.add(new ReSharperIssue(i, "RedundantCast", "File" + i % 3 + ".cs", i, null, "Short message"));
+    }
+
+    for (boolean compress : new boolean[] {false, true}) {
+      File file = new File(tmp.getRoot(), "issues-" + compress);
+      ReSharperIssueSnapshot.Writer writer = ReSharperIssueSnapshot.writer(file, compress);
+      for (ReSharperIssue issue : expected) {
+        writer.accept(issue);
+      }
+      writer.close();
+
+      List<ReSharperIssue> issues = Lists.newArrayList();
+      ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(issues));
+      assertSameIssues(issues, expected);
+    }
+  }
+
+  @Test
+  public void concurrent_writers_of_the_same_snapshot_do_not_mix() throws Exception {
+    File file = new File(tmp.getRoot(), "issues");
+    ReSharperIssueSnapshot.Writer first = ReSharperIssueSnapshot.writer(file, false);
+    ReSharperIssueSnapshot.Writer second = ReSharperIssueSnapshot.writer(file, false);
+    first.accept(ISSUES.get(0));
+    for (ReSharperIssue issue : ISSUES) {
+      second.accept(issue);
+    }
+    second.close();
+    first.abortUnlessClosed();
+
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    ReSharperIssueSnapshot.read(file, new ReSharperIssueSink.Collector(issues));
+    assertSameIssues(issues, ISSUES);
+    assertThat(tmp.getRoot().list()).containsOnly("issues");
+  }
+
+  private static void write(File file, boolean compress) throws Exception {
+    ReSharperIssueSnapshot.Writer writer = ReSharperIssueSnapshot.writer(file, compress);
+    for (ReSharperIssue issue : ISSUES) {
+      writer.accept(issue);
+    }
+    writer.close();
+  }
+
+  private static void assertSameIssues(List<ReSharperIssue> actual, List<ReSharperIssue> expected) {
+    assertThat(actual).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(actual.get(i).reportLine()).isEqualTo(expected.get(i).reportLine());
+      assertThat(actual.get(i).ruleKey()).isEqualTo(expected.get(i).ruleKey());
+      assertThat(actual.get(i).filePath()).isEqualTo(expected.get(i).filePath());
+      assertThat(actual.get(i).line()).isEqualTo(expected.get(i).line());
+      assertThat(actual.get(i).offset()).isEqualTo(expected.get(i).offset());
+      assertThat(actual.get(i).message()).isEqualTo(expected.get(i).message());
+    }
+  }
+
+}
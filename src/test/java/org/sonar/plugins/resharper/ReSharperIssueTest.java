@@ -32,6 +32,7 @@ public class ReSharperIssueTest {
     assertThat(issue.ruleKey()).isEqualTo("S007");
     assertThat(issue.filePath()).isEqualTo("foo.cs");
     assertThat(issue.line()).isEqualTo(1);
+    assertThat(issue.offset()).isNull();
     assertThat(issue.message()).isEqualTo("message1");
 
     issue = new ReSharperIssue(42, "AccessToDisposedClosure", "bar.vb", 42, "message2");
@@ -40,6 +41,10 @@ public class ReSharperIssueTest {
     assertThat(issue.filePath()).isEqualTo("bar.vb");
     assertThat(issue.line()).isEqualTo(42);
     assertThat(issue.message()).isEqualTo("message2");
+
+    issue = new ReSharperIssue(43, "RedundantUsingDirective", "baz.cs", null, 138, "message3");
+    assertThat(issue.line()).isNull();
+    assertThat(issue.offset()).isEqualTo(138);
   }
 
 }
@@ -0,0 +1,103 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.StringReader;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperJsonReaderTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void read_tokens() throws Exception {
+    ReSharperJsonReader json = reader("\uFEFF{\n  \"a\": \"x\\\"y\\\\z\\n\\u00e9\",\n  \"b\": [1, -2],\n  \"c\": null\n}");
+
+    assertThat(json.line()).isEqualTo(1);
+    json.beginObject();
+    assertThat(json.line()).isEqualTo(2);
+    assertThat(json.nextName()).isEqualTo("a");
+    assertThat(json.nextString()).isEqualTo("x\"y\\z\n\u00e9");
+    assertThat(json.nextName()).isEqualTo("b");
+    json.beginArray();
+    assertThat(json.nextInt()).isEqualTo(1);
+    assertThat(json.line()).isEqualTo(3);
+    assertThat(json.nextInt()).isEqualTo(-2);
+    assertThat(json.hasNext()).isFalse();
+    json.endArray();
+    assertThat(json.nextName()).isEqualTo("c");
+    assertThat(json.peek()).isEqualTo(ReSharperJsonReader.Token.NULL);
+    json.skipValue();
+    json.endObject();
+    assertThat(json.peek()).isEqualTo(ReSharperJsonReader.Token.END_DOCUMENT);
+  }
+
+  @Test
+  public void skip_nested_values() throws Exception {
+    ReSharperJsonReader json = reader("{\"skipped\": {\"a\": [true, false, {\"b\": 1.5e3}], \"c\": \"]}\"}, \"kept\": 42}");
+
+    json.beginObject();
+    json.skipValue();
+    assertThat(json.nextName()).isEqualTo("kept");
+    assertThat(json.nextInt()).isEqualTo(42);
+    json.endObject();
+  }
+
+  @Test
+  public void read_strings_spanning_several_buffers() throws Exception {
+    StringBuilder value = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      value.append((char) ('a' + i % 26));
+    }
+    ReSharperJsonReader json = reader("[\"" + value + "\", \"\\t\"]");
+
+    json.beginArray();
+    assertThat(json.nextString()).isEqualTo(value.toString());
+    assertThat(json.nextString()).isEqualTo("\t");
+    json.endArray();
+  }
+
+  @Test
+  public void fail_on_unexpected_token() throws Exception {
+    thrown.expectMessage("Expected BEGIN_ARRAY but was BEGIN_OBJECT at line 2");
+
+    reader("\n{}").beginArray();
+  }
+
+  @Test
+  public void fail_on_unterminated_string() throws Exception {
+    thrown.expectMessage("Unterminated string at line 1");
+
+    ReSharperJsonReader json = reader("[\"abc");
+    json.beginArray();
+    json.nextString();
+  }
+
+  private static ReSharperJsonReader reader(String json) {
+    return new ReSharperJsonReader(new StringReader(json));
+  }
+
+}
@@ -0,0 +1,62 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperLineHashesTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void whitespace_is_ignored() throws Exception {
+    File file = tmp.newFile();
+    Files.write("\uFEFFusing System;\r\n  int  a = 1;\rint a=1;\n\nint b = 2;", file, Charsets.UTF_8);
+    ReSharperLineHashes lineHashes = new ReSharperLineHashes(Charsets.UTF_8);
+
+    assertThat(lineHashes.hash(file, 2)).isEqualTo(lineHashes.hash(file, 3));
+    assertThat(lineHashes.hash(file, 1)).isNotEqualTo(lineHashes.hash(file, 2));
+    assertThat(lineHashes.hash(file, 5)).isNotEqualTo(lineHashes.hash(file, 2));
+
+    File other = tmp.newFile();
+    Files.write("using System;", other, Charsets.UTF_8);
+    assertThat(lineHashes.hash(other, 1)).isEqualTo(lineHashes.hash(file, 1));
+  }
+
+  @Test
+  public void lines_out_of_the_file() throws Exception {
+    File file = tmp.newFile();
+    Files.write("a\nb", file, Charsets.UTF_8);
+    ReSharperLineHashes lineHashes = new ReSharperLineHashes(Charsets.UTF_8);
+
+    assertThat(lineHashes.hash(file, 0)).isEqualTo(0);
+    assertThat(lineHashes.hash(file, 3)).isEqualTo(0);
+  }
+
+}
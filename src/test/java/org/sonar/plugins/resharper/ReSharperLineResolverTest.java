@@ -0,0 +1,120 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperLineResolverTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Test
+  public void line_breaks() throws IOException {
+    File file = file("a\nbc\r\nd\re\n\nf", Charsets.UTF_8);
+    ReSharperLineResolver resolver = new ReSharperLineResolver(Charsets.UTF_8);
+
+    assertThat(resolver.line(file, 0)).isEqualTo(1);
+    assertThat(resolver.line(file, 1)).isEqualTo(1);
+    assertThat(resolver.line(file, 2)).isEqualTo(2);
+    assertThat(resolver.line(file, 5)).isEqualTo(2);
+    assertThat(resolver.line(file, 6)).isEqualTo(3);
+    assertThat(resolver.line(file, 8)).isEqualTo(4);
+    assertThat(resolver.line(file, 10)).isEqualTo(5);
+    assertThat(resolver.line(file, 11)).isEqualTo(6);
+    assertThat(resolver.line(file, 12)).isEqualTo(6);
+  }
+
+  @Test
+  public void large_files_are_mapped() throws IOException {
+    File file = file("a\nbc\r\nd\re\n\nf", Charsets.UTF_8);
+    ReSharperLineResolver resolver = new ReSharperLineResolver(Charsets.UTF_8, 4);
+
+    assertThat(resolver.line(file, 0)).isEqualTo(1);
+    assertThat(resolver.line(file, 6)).isEqualTo(3);
+    assertThat(resolver.line(file, 12)).isEqualTo(6);
+    assertThat(resolver.line(file, 13)).isNull();
+  }
+
+  @Test
+  public void offset_beyond_end_of_file() throws IOException {
+    File file = file("a\nb", Charsets.UTF_8);
+    ReSharperLineResolver resolver = new ReSharperLineResolver(Charsets.UTF_8);
+
+    assertThat(resolver.line(file, 4)).isNull();
+    assertThat(resolver.line(file, -1)).isNull();
+  }
+
+  @Test
+  public void offsets_are_in_characters() throws IOException {
+    // BOM, 2 bytes character, 3 bytes character, and a character outside of the BMP counted as 2
+    String content = "\uFEFF\u00E9\n\u20AC\n\uD83D\uDE00\nx";
+    ReSharperLineResolver resolver = new ReSharperLineResolver(Charsets.UTF_8);
+    File file = file(content, Charsets.UTF_8);
+
+    assertThat(resolver.line(file, 1)).isEqualTo(1);
+    assertThat(resolver.line(file, 2)).isEqualTo(2);
+    assertThat(resolver.line(file, 4)).isEqualTo(3);
+    assertThat(resolver.line(file, 7)).isEqualTo(4);
+  }
+
+  @Test
+  public void single_byte_charset() throws IOException {
+    Charset charset = Charset.forName("windows-1252");
+    File file = file("\u00E9\u20AC\nx", charset);
+
+    assertThat(new ReSharperLineResolver(charset).line(file, 3)).isEqualTo(2);
+  }
+
+  @Test
+  public void other_charsets_are_decoded() throws IOException {
+    File file = file("\uFEFF\u00E9\nx", Charsets.UTF_16LE);
+
+    assertThat(new ReSharperLineResolver(Charsets.UTF_16LE).line(file, 2)).isEqualTo(2);
+  }
+
+  @Test
+  public void line_starts_are_cached() throws IOException {
+    File file = file("a\nb", Charsets.UTF_8);
+    ReSharperLineResolver resolver = new ReSharperLineResolver(Charsets.UTF_8);
+    assertThat(resolver.line(file, 2)).isEqualTo(2);
+
+    Files.write("ab\n", file, Charsets.UTF_8);
+    assertThat(resolver.line(file, 2)).isEqualTo(2);
+    assertThat(new ReSharperLineResolver(Charsets.UTF_8).line(file, 2)).isEqualTo(1);
+  }
+
+  private File file(String content, Charset charset) throws IOException {
+    File file = tmp.newFile();
+    Files.write(content, file, charset);
+    return file;
+  }
+
+}
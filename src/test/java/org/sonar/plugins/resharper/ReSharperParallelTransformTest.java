@@ -0,0 +1,111 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperParallelTransformTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static final Function<Integer, String> SLOW_TO_STRING = new Function<Integer, String>() {
+    private final Random random = new Random(42);
+
+    @Override
+    public String apply(Integer i) {
+      try {
+        Thread.sleep(random.nextInt(2));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return i % 10 == 0 ? null : i.toString();
+    }
+  };
+
+  @Test
+  public void results_are_in_the_order_of_the_elements() {
+    List<Integer> elements = Lists.newArrayList();
+    List<String> expected = Lists.newArrayList();
+    for (int i = 0; i < 500; i++) {
+      elements.add(i);
+      expected.add(i % 10 == 0 ? null : Integer.toString(i));
+    }
+
+    ReSharperParallelTransform transform = new ReSharperParallelTransform(4, 7);
+    try {
+      assertThat(Lists.newArrayList(transform.transform(elements.iterator(), SLOW_TO_STRING))).isEqualTo(expected);
+    } finally {
+      transform.close();
+    }
+  }
+
+  @Test
+  public void single_thread() {
+    ReSharperParallelTransform transform = new ReSharperParallelTransform(1, 7);
+    try {
+      assertThat(Lists.newArrayList(transform.transform(ImmutableList.of(1, 2, 10).iterator(), SLOW_TO_STRING))).containsExactly("1", "2", null);
+    } finally {
+      transform.close();
+    }
+  }
+
+  @Test
+  public void no_elements() {
+    ReSharperParallelTransform transform = new ReSharperParallelTransform(4, 7);
+    try {
+      assertThat(transform.transform(ImmutableList.<Integer>of().iterator(), SLOW_TO_STRING).hasNext()).isFalse();
+    } finally {
+      transform.close();
+    }
+  }
+
+  @Test
+  public void failures_are_propagated() {
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Cannot transform 3");
+
+    ReSharperParallelTransform transform = new ReSharperParallelTransform(4, 2);
+    try {
+      Lists.newArrayList(transform.transform(ImmutableList.of(1, 2, 3, 4).iterator(), new Function<Integer, Integer>() {
+        @Override
+        public Integer apply(Integer i) {
+          if (i == 3) {
+            throw new IllegalArgumentException("Cannot transform " + i);
+          }
+          return i;
+        }
+      }));
+    } finally {
+      transform.close();
+    }
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ReSharperProfilerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static final Map<String, Long> RULE_MILLIS = ImmutableMap.<String, Long>builder()
+    .put("RedundantCast", 10L)
+    .put("RedundantUsingDirective", 10L)
+    .put("RedundantThisQualifier", 10L)
+    .put("CSharpWarnings::CS0618", 100L)
+    .put("CSharpWarnings::CS0649", 100L)
+    .put("CSharpWarnings::CS1030", 100L)
+    .put("AccessToDisposedClosure", 5L)
+    .build();
+
+  @Test
+  public void categories() {
+    assertThat(ReSharperProfiler.category("CSharpWarnings::CS0618")).isEqualTo("CSharpWarnings");
+    assertThat(ReSharperProfiler.category("RedundantCast")).isEqualTo("Redundant");
+    assertThat(ReSharperProfiler.category("Xaml.BindingWithContextNotResolved")).isEqualTo("Xaml");
+    assertThat(ReSharperProfiler.category("X")).isEqualTo("X");
+
+    Map<String, List<String>> categories = ReSharperProfiler.categories(ImmutableList.copyOf(RULE_MILLIS.keySet()));
+    assertThat(categories.keySet()).containsOnly("CSharpWarnings", "Redundant", "Other");
+    assertThat(categories.get("Other")).containsOnly("AccessToDisposedClosure");
+  }
+
+  @Test
+  public void rank_categories_by_time_on_top_of_the_baseline() throws Exception {
+    FakeTicker ticker = new FakeTicker();
+    ReSharperExecutor executor = fakeExecutor(ticker);
+
+    ReSharperDotSettingsWriter writer = new ReSharperDotSettingsWriter(ImmutableList.copyOf(RULE_MILLIS.keySet()));
+    List<ReSharperProfiler.Cost> costs = new ReSharperProfiler(executor, new ReSharperReportParser(), writer, ticker)
+      .profile("inspectcode.exe", "MyProject", "MySolution.sln", ImmutableList.copyOf(RULE_MILLIS.keySet()), tmp.getRoot(), 10, 2);
+
+    verify(executor, times(8)).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+    assertThat(costs).hasSize(3);
+    assertCost(costs.get(0), "CSharpWarnings", 3, 300, 3);
+    assertCost(costs.get(1), "Redundant", 3, 30, 3);
+    assertCost(costs.get(2), "Other", 1, 5, 1);
+
+    StringWriter report = new StringWriter();
+    ReSharperProfiler.writeReport(costs, report);
+    String[] lines = report.toString().split("\r?\n");
+    assertThat(lines).hasSize(4);
+    assertThat(lines[0]).startsWith("Category");
+    assertThat(lines[1]).startsWith("CSharpWarnings").contains("89.6%");
+    assertThat(lines[3]).startsWith("Other").contains("1.5%");
+  }
+
+  private static void assertCost(ReSharperProfiler.Cost cost, String category, int rules, long millis, int issues) {
+    assertThat(cost.category()).isEqualTo(category);
+    assertThat(cost.rules()).isEqualTo(rules);
+    assertThat(cost.millis()).isEqualTo(millis);
+    assertThat(cost.issues()).isEqualTo(issues);
+  }
+
+  /**
+   * Takes 1 s to load the solution, plus the time of each enabled rule, and 50 ms more on the first run of each settings,
+   * which the repetitions must filter out. Reports one issue per enabled rule.
+   * As inspectcode does, the rules not disabled by the settings are enabled.
+   */
+  private static ReSharperExecutor fakeExecutor(final FakeTicker ticker) {
+    ReSharperExecutor executor = mock(ReSharperExecutor.class);
+    doAnswer(new Answer<Void>() {
+      private String previousSettings;
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        String settings = Files.toString((File) invocation.getArguments()[3], Charsets.UTF_8);
+        long millis = settings.equals(previousSettings) ? 1000 : 1050;
+        previousSettings = settings;
+
+        StringBuilder issues = new StringBuilder();
+        for (Map.Entry<String, Long> rule : RULE_MILLIS.entrySet()) {
+          String escaped = rule.getKey().replace(":", "_003A");
+          if (!settings.contains("/=" + escaped + "/@EntryIndexedValue\">DO_NOT_SHOW<")) {
+            millis += rule.getValue();
+            issues.append("<Issue TypeId=\"" + rule.getKey() + "\" File=\"Foo.cs\" Line=\"1\" Message=\"Message\" />");
+          }
+        }
+        ticker.advance(millis);
+        Files.write("<Report><Issues><Project Name=\"MyProject\">" + issues + "</Project></Issues></Report>", (File) invocation.getArguments()[4], Charsets.UTF_8);
+        return null;
+      }
+    }).when(executor).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+    return executor;
+  }
+
+  private static class FakeTicker extends Ticker {
+
+    private long nanos;
+
+    void advance(long millis) {
+      nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+
+  }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import org.junit.Test;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperProgressTest {
+
+  @Test
+  public void count_projects_and_files() {
+    ReSharperProgress progress = new ReSharperProgress(System.currentTimeMillis());
+    progress.consumeLine("JetBrains Inspect Code 8.2");
+    progress.consumeLine("Loading project MyLibrary");
+    progress.consumeLine("Inspecting MyLibrary\\Class1.cs");
+    progress.consumeLine("  Analyzing MyLibrary\\Class2.cs");
+    progress.consumeLine("Inspecting");
+
+    assertThat(progress.projects()).isEqualTo(1);
+    assertThat(progress.files()).isEqualTo(2);
+  }
+
+  @Test
+  public void idle_time_and_summary() {
+    ReSharperProgress progress = new ReSharperProgress(1000);
+    assertThat(progress.idleMillis(3000)).isEqualTo(2000);
+    for (int i = 0; i < 5; i++) {
+      progress.consumeLine("Inspecting Class" + i + ".cs");
+    }
+
+    assertThat(progress.summary(3000)).isEqualTo("0 projects loaded, 5 files inspected in 2 s (2.5 files/s)");
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReSharperRemoteCacheClientTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private StubRemoteCacheServer server;
+
+  @Before
+  public void start() throws Exception {
+    server = new StubRemoteCacheServer();
+  }
+
+  @After
+  public void stop() {
+    server.stop();
+  }
+
+  @Test
+  public void put_and_get() throws Exception {
+    ReSharperRemoteCacheClient client = new ReSharperRemoteCacheClient(server.url());
+
+    File report = tmp.newFile("report.xml.gz");
+    Files.write("report", report, Charsets.UTF_8);
+    client.put("abc", report);
+    assertThat(new String(server.entries().get("abc"), Charsets.UTF_8)).isEqualTo("report");
+
+    File downloaded = new File(tmp.getRoot(), "downloaded.xml.gz");
+    assertThat(client.get("abc", downloaded)).isTrue();
+    assertThat(Files.toString(downloaded, Charsets.UTF_8)).isEqualTo("report");
+    assertThat(tmp.getRoot().list()).containsOnly("report.xml.gz", "downloaded.xml.gz");
+  }
+
+  @Test
+  public void failed_download_leaves_no_partial_file() throws Exception {
+    server.respondWith(500);
+    try {
+      new ReSharperRemoteCacheClient(server.url()).get("abc", new File(tmp.getRoot(), "downloaded.xml.gz"));
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("Unexpected HTTP status 500");
+    }
+    assertThat(tmp.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void retry_uploads_on_server_errors_only() throws Exception {
+    ReSharperRemoteCacheClient client = new ReSharperRemoteCacheClient(server.url());
+    File report = tmp.newFile("report.xml.gz");
+
+    server.respondWith(503);
+    try {
+      client.put("abc", report);
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("Unexpected HTTP status 503");
+    }
+    assertThat(server.puts()).isEqualTo(2);
+
+    server.respondWith(403);
+    try {
+      client.put("abc", report);
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("Unexpected HTTP status 403");
+    }
+    assertThat(server.puts()).isEqualTo(3);
+  }
+
+  @Test
+  public void missing_key() throws Exception {
+    File downloaded = new File(tmp.getRoot(), "downloaded.xml.gz");
+    assertThat(new ReSharperRemoteCacheClient(server.url() + "/").get("unknown", downloaded)).isFalse();
+    assertThat(downloaded).doesNotExist();
+  }
+
+  @Test
+  public void unexpected_status() throws Exception {
+    thrown.expect(IOException.class);
+    thrown.expectMessage("Unexpected HTTP status 404");
+
+    File report = tmp.newFile("report.xml.gz");
+    new ReSharperRemoteCacheClient(server.url().replace("/cache", "/other")).put("abc", report);
+  }
+
+}
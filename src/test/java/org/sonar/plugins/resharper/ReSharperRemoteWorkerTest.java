@@ -0,0 +1,102 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperRemoteWorkerTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private StubReSharperWorkerServer server;
+
+  @Before
+  public void before() throws IOException {
+    server = new StubReSharperWorkerServer();
+  }
+
+  @After
+  public void after() {
+    server.stop();
+  }
+
+  @Test
+  public void inspect() throws Exception {
+    server.answer("<Report />".getBytes(Charsets.UTF_8));
+    ReSharperShard shard = shard();
+
+    new ReSharperRemoteWorker(server.url() + "/", tmp.getRoot(), tmp.getRoot()).inspect(shard, 10);
+
+    assertThat(Files.toString(shard.reportFile(), Charsets.UTF_8)).isEqualTo("<Report />");
+    assertThat(tmp.getRoot().list()).containsOnly("resharper-sonarqube.DotSettings", "resharper-report.xml");
+    assertThat(server.queries()).containsOnly("solution=My+Solution.sln&project=MyProject&timeoutMinutes=10");
+  }
+
+  @Test
+  public void relative_solution_paths() throws Exception {
+    File workspace = tmp.newFolder("workspace");
+    File baseDir = new File(workspace, "module");
+
+    ReSharperRemoteWorker worker = new ReSharperRemoteWorker(server.url(), baseDir, workspace);
+    assertThat(worker.solutionPath("My Solution.sln")).isEqualTo("module/My Solution.sln");
+    assertThat(worker.solutionPath("../src/./Backend.sln")).isEqualTo("src/Backend.sln");
+    assertThat(worker.solutionPath(new File(workspace, "web/Frontend.sln").getAbsolutePath())).isEqualTo("web/Frontend.sln");
+
+    ReSharperRemoteWorker withoutSharedRoot = new ReSharperRemoteWorker(server.url(), baseDir, null);
+    assertThat(withoutSharedRoot.solutionPath("My Solution.sln")).isEqualTo(new File(baseDir, "My Solution.sln").getAbsolutePath());
+
+    thrown.expect(IOException.class);
+    thrown.expectMessage("The solution ../../Other.sln is not under the shared root");
+    worker.solutionPath("../../Other.sln");
+  }
+
+  @Test
+  public void failure() throws Exception {
+    server.fail(500);
+
+    thrown.expect(IOException.class);
+    thrown.expectMessage("HTTP status 500: inspectcode crashed");
+
+    new ReSharperRemoteWorker(server.url(), tmp.getRoot(), null).inspect(shard(), 10);
+  }
+
+  private ReSharperShard shard() throws IOException {
+    File dotSettingsFile = tmp.newFile("resharper-sonarqube.DotSettings");
+    Files.write("<wpf:ResourceDictionary />", dotSettingsFile, Charsets.UTF_8);
+    return new ReSharperShard("My Solution.sln", "MyProject", dotSettingsFile, new File(tmp.getRoot(), "resharper-report.xml"));
+  }
+
+}
@@ -0,0 +1,168 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
+
+import java.io.File;
+import java.util.Arrays;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperReportCacheTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private StubRemoteCacheServer server;
+
+  @Before
+  public void start() throws Exception {
+    server = new StubRemoteCacheServer();
+  }
+
+  @After
+  public void stop() {
+    server.stop();
+  }
+
+  @Test
+  public void disabled_by_default() {
+    assertThat(new ReSharperReportCache(new Settings()).isEnabled()).isFalse();
+  }
+
+  @Test
+  public void local_and_remote() throws Exception {
+    File localDirectory = tmp.newFolder("cache");
+    ReSharperReportCache cache = new ReSharperReportCache(localDirectory.getAbsolutePath(), server.url());
+    assertThat(cache.isEnabled()).isTrue();
+
+    File target = new File(tmp.getRoot(), "target.xml.gz");
+    assertThat(cache.fetch("abc", target)).isFalse();
+
+    File snapshot = snapshot("snapshot.issues");
+    cache.store("abc", snapshot);
+    assertThat(localDirectory.list()).containsOnly("abc.issues");
+    assertThat(server.entries()).hasSize(1);
+
+    int gets = server.gets();
+    assertThat(cache.fetch("abc", target)).isTrue();
+    assertThat(Files.equal(target, snapshot)).isTrue();
+    assertThat(server.gets()).isEqualTo(gets);
+  }
+
+  @Test
+  public void remote_hit_populates_local_directory() throws Exception {
+    server.entries().put("abc", Files.toByteArray(snapshot("snapshot.issues")));
+    File localDirectory = tmp.newFolder("cache");
+
+    File target = new File(tmp.getRoot(), "target.xml.gz");
+    assertThat(new ReSharperReportCache(localDirectory.getAbsolutePath(), server.url()).fetch("abc", target)).isTrue();
+    assertThat(Files.toByteArray(target)).isEqualTo(server.entries().get("abc"));
+    assertThat(Files.toByteArray(new File(localDirectory, "abc.issues"))).isEqualTo(server.entries().get("abc"));
+  }
+
+  @Test
+  public void corrupted_entries_are_evicted() throws Exception {
+    byte[] bytes = Files.toByteArray(snapshot("snapshot.issues"));
+    File localDirectory = tmp.newFolder("cache");
+    Files.write(Arrays.copyOf(bytes, bytes.length - 8), new File(localDirectory, "abc.issues"));
+    server.entries().put("abc", "corrupted".getBytes(Charsets.UTF_8));
+
+    File target = new File(tmp.getRoot(), "target.issues");
+    assertThat(new ReSharperReportCache(localDirectory.getAbsolutePath(), server.url()).fetch("abc", target)).isFalse();
+    assertThat(localDirectory.list()).isEmpty();
+    assertThat(target).doesNotExist();
+  }
+
+  @Test
+  public void unreachable_remote_cache_is_not_fatal() throws Exception {
+    String url = server.url();
+    server.stop();
+
+    ReSharperReportCache cache = new ReSharperReportCache(null, url);
+    File report = tmp.newFile("report.xml.gz");
+    cache.store("abc", report);
+    assertThat(cache.fetch("abc", new File(tmp.getRoot(), "target.xml.gz"))).isFalse();
+  }
+
+  @Test
+  public void key() throws Exception {
+    File solutionDir = tmp.newFolder("solution");
+    File solutionFile = new File(solutionDir, "Example.sln");
+    Files.write("solution", solutionFile, Charsets.UTF_8);
+    File source = new File(solutionDir, "Example.Core/Money.cs");
+    Files.createParentDirs(source);
+    Files.write("class Money {}", source, Charsets.UTF_8);
+    File dotSettings = tmp.newFile("resharper-sonarqube.DotSettings");
+    Files.write("settings", dotSettings, Charsets.UTF_8);
+
+    ReSharperReportCache cache = new ReSharperReportCache(null, null);
+    String key = cache.key("inspectcode.exe", "Example.Core", solutionFile, dotSettings);
+    assertThat(key).hasSize(40);
+    assertThat(cache.key("inspectcode.exe", "Example.Core", solutionFile, dotSettings)).isEqualTo(key);
+    assertThat(cache.key("inspectcode.exe", "Example.Application", solutionFile, dotSettings)).isNotEqualTo(key);
+
+    File binary = new File(solutionDir, "Example.Core/bin/Example.Core.dll");
+    Files.createParentDirs(binary);
+    Files.write("binary", binary, Charsets.UTF_8);
+    assertThat(cache.key("inspectcode.exe", "Example.Core", solutionFile, dotSettings)).isEqualTo(key);
+
+    Files.write("class Money { int amount; }", source, Charsets.UTF_8);
+    assertThat(cache.key("inspectcode.exe", "Example.Core", solutionFile, dotSettings)).isNotEqualTo(key);
+  }
+
+  @Test
+  public void source_digest_skips_the_excluded_and_cache_directories() throws Exception {
+    File solutionDir = tmp.newFolder("solution");
+    File solutionFile = new File(solutionDir, "Example.sln");
+    Files.write("solution", solutionFile, Charsets.UTF_8);
+    File workDir = new File(solutionDir, "work");
+    File cacheDir = new File(solutionDir, "cache");
+
+    ReSharperReportCache cache = new ReSharperReportCache(cacheDir.getAbsolutePath(), null);
+    String digest = cache.sourceDigest(solutionFile, ImmutableList.of(workDir));
+    Files.createParentDirs(new File(workDir, "report.xml"));
+    Files.write("report", new File(workDir, "report.xml"), Charsets.UTF_8);
+    Files.createParentDirs(new File(cacheDir, "abc.issues"));
+    Files.write("issues", new File(cacheDir, "abc.issues"), Charsets.UTF_8);
+    assertThat(cache.sourceDigest(solutionFile, ImmutableList.of(workDir))).isEqualTo(digest);
+
+    Files.write("class Money {}", new File(solutionDir, "Money.cs"), Charsets.UTF_8);
+    assertThat(cache.sourceDigest(solutionFile, ImmutableList.of(workDir))).isNotEqualTo(digest);
+  }
+
+  private File snapshot(String name) throws Exception {
+    File file = new File(tmp.getRoot(), name);
+    ReSharperIssueSnapshot.Writer writer = ReSharperIssueSnapshot.writer(file, true);
+    writer.accept(new ReSharperIssue(1, "foo", "Class1.cs", 3, "Cached"));
+    writer.close();
+    return file;
+  }
+
+}
@@ -19,20 +19,32 @@
  */
 package org.sonar.plugins.resharper;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.plugins.resharper.ReSharperReportScanner.UnsupportedReportException;
 
 import java.io.File;
 import java.util.List;
+import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class ReSharperReportParserTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   @Test
   public void valid() {
     List<ReSharperIssue> issues = new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/valid.xml"));
@@ -44,6 +56,7 @@ public class ReSharperReportParserTest {
     assertThat(issue.ruleKey()).isEqualTo("RedundantUsingDirective");
     assertThat(issue.filePath()).isEqualTo("MyLibrary\\Class1.cs");
     assertThat(issue.line()).isNull();
+    assertThat(issue.offset()).isEqualTo(0);
     assertThat(issue.message()).isEqualTo("Using directive is not required by the code and can be safely removed");
 
     issue = issues.get(1);
@@ -51,6 +64,7 @@ public class ReSharperReportParserTest {
     assertThat(issue.ruleKey()).isEqualTo("JoinDeclarationAndInitializer");
     assertThat(issue.filePath()).isEqualTo("MyLibrary\\Class1.cs");
     assertThat(issue.line()).isEqualTo(9);
+    assertThat(issue.offset()).isEqualTo(138);
     assertThat(issue.message()).isEqualTo("Join declaration and assignment");
 
     issue = issues.get(2);
@@ -58,6 +72,7 @@ public class ReSharperReportParserTest {
     assertThat(issue.ruleKey()).isEqualTo("RedundantUsingDirective");
     assertThat(issue.filePath()).isEqualTo("MyLibrary\\Properties\\AssemblyInfo.cs");
     assertThat(issue.line()).isEqualTo(2);
+    assertThat(issue.offset()).isEqualTo(26);
     assertThat(issue.message()).isEqualTo("Using directive is not required by the code and can be safely removed");
   }
 
@@ -69,6 +84,24 @@ public class ReSharperReportParserTest {
     new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/invalid_line.xml"));
   }
 
+  @Test
+  public void invalid_offset() {
+    thrown.expectMessage("Expected an offset range such as \"138-144\" instead of \"26\" for the attribute \"Offset\"");
+    thrown.expectMessage("invalid_offset.xml at line 14");
+
+    new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/invalid_offset.xml"));
+  }
+
+  @Test
+  public void start_offset() {
+    assertThat(ReSharperReportParser.startOffset("138-144")).isEqualTo(138);
+    assertThat(ReSharperReportParser.startOffset("0-0")).isEqualTo(0);
+    assertThat(ReSharperReportParser.startOffset("26")).isNull();
+    assertThat(ReSharperReportParser.startOffset("-1-3")).isNull();
+    assertThat(ReSharperReportParser.startOffset("5-3")).isNull();
+    assertThat(ReSharperReportParser.startOffset("a-b")).isNull();
+  }
+
   @Test
   public void missing_typeid() {
     thrown.expectMessage("Missing attribute \"TypeId\" in element <Issue>");
@@ -85,4 +118,256 @@ public class ReSharperReportParserTest {
     new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/non_existing.xml"));
   }
 
+  @Test
+  public void entities() {
+    List<ReSharperIssue> issues = new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/entities.xml"));
+
+    assertThat(issues).hasSize(3);
+
+    ReSharperIssue issue = issues.get(0);
+    assertThat(issue.reportLine()).isEqualTo(10);
+    assertThat(issue.ruleKey()).isEqualTo("RedundantUsingDirective");
+    assertThat(issue.filePath()).isEqualTo("My & Library\\Class1.cs");
+    assertThat(issue.line()).isEqualTo(1);
+    assertThat(issue.message()).isEqualTo("Say \"hello\" & 'goodbye' <T>");
+
+    issue = issues.get(1);
+    assertThat(issue.reportLine()).isEqualTo(11);
+    assertThat(issue.ruleKey()).isEqualTo("JoinDeclarationAndInitializer");
+    assertThat(issue.filePath()).isEqualTo("MyLibrary\\Caf\u00e9.cs");
+    assertThat(issue.line()).isEqualTo(9);
+    assertThat(issue.message()).isEqualTo("Unicode: caf\u00e9 \u65e5\u672c \u00e9 A'");
+
+    issue = issues.get(2);
+    assertThat(issue.reportLine()).isEqualTo(12);
+    assertThat(issue.ruleKey()).isEqualTo("ConvertToConstant.Local");
+    assertThat(issue.filePath()).isNull();
+    assertThat(issue.line()).isEqualTo(12);
+    assertThat(issue.message()).isEqualTo("Tab here, newline there, windows line, kept\nreference");
+  }
+
+  @Test
+  public void scanner_and_stax_produce_identical_issues() throws Exception {
+    List<File> files = ImmutableList.of(
+      new File("src/test/resources/ReSharperReportParserTest/valid.xml"),
+      new File("src/test/resources/ReSharperReportParserTest/entities.xml"),
+      new File("src/test/resources/csharp-sample/valid.xml"));
+
+    for (File file : files) {
+      List<ReSharperIssue> scanned = new ReSharperReportScanner().scan(file);
+      List<ReSharperIssue> parsed = new ReSharperReportParser().parseWithStax(file);
+
+      assertThat(scanned).hasSize(parsed.size());
+      for (int i = 0; i < parsed.size(); i++) {
+        assertSameIssue(scanned.get(i), parsed.get(i));
+      }
+    }
+  }
+
+  @Test
+  public void fallback_to_stax() throws Exception {
+    File file = new File("src/test/resources/ReSharperReportParserTest/fallback.xml");
+
+    try {
+      new ReSharperReportScanner().scan(file);
+      fail();
+    } catch (UnsupportedReportException e) {
+      assertThat(e.getMessage()).contains("DTD");
+    }
+
+    List<ReSharperIssue> issues = new ReSharperReportParser().parse(file);
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).reportLine()).isEqualTo(8);
+    assertThat(issues.get(0).message()).isEqualTo("ReSharper says hello");
+  }
+
+  @Test
+  public void fallback_keeps_the_issues_of_other_reports_and_does_not_add_scanned_issues_twice() throws Exception {
+    File file = new File("src/test/resources/ReSharperReportParserTest/fallback_after_issues.xml");
+    ReSharperIssue otherReportIssue = new ReSharperIssue(1, "OtherRule", null, null, "Other report");
+    List<ReSharperIssue> issues = Lists.newArrayList(otherReportIssue);
+
+    new ReSharperReportParser().parse(file, new ReSharperIssueSink.Collector(issues));
+
+    assertThat(issues).hasSize(4);
+    assertThat(issues.get(0)).isSameAs(otherReportIssue);
+    assertThat(issues.get(1).message()).isEqualTo("First");
+    assertThat(issues.get(2).message()).isEqualTo("Second");
+    assertThat(issues.get(3).message()).isEqualTo("Third");
+  }
+
+  @Test
+  public void scanner_falls_back_on_invalid_values() throws Exception {
+    for (String name : ImmutableList.of("invalid_line.xml", "invalid_offset.xml", "missing_typeid.xml")) {
+      try {
+        new ReSharperReportScanner().scan(new File("src/test/resources/ReSharperReportParserTest/" + name));
+        fail();
+      } catch (UnsupportedReportException e) {
+        assertThat(e.getMessage()).contains("line 14");
+      }
+    }
+  }
+
+  @Test
+  public void scanner_falls_back_on_truncated_or_unbalanced_reports() throws Exception {
+    String valid = Files.toString(new File("src/test/resources/ReSharperReportParserTest/valid.xml"), Charsets.UTF_8);
+    int cut = valid.indexOf("</Project>");
+    Map<String, String> reports = ImmutableMap.of(
+      valid.substring(0, cut), "it may be truncated",
+      valid.substring(0, cut) + "</Issues></Project></Report>", "unbalanced end tag",
+      valid + "<Report />", "element after the root element");
+
+    for (Map.Entry<String, String> report : reports.entrySet()) {
+      File file = tmp.newFile();
+      Files.write(report.getKey(), file, Charsets.UTF_8);
+      try {
+        new ReSharperReportScanner().scan(file);
+        fail();
+      } catch (UnsupportedReportException e) {
+        assertThat(e.getMessage()).contains(report.getValue());
+      }
+    }
+  }
+
+  @Test
+  public void scan_mapped_report() throws Exception {
+    File file = new File("src/test/resources/ReSharperReportParserTest/valid.xml");
+    List<ReSharperIssue> mapped = new ReSharperReportScanner(0).scan(file);
+    List<ReSharperIssue> read = new ReSharperReportScanner().scan(file);
+
+    assertThat(mapped).hasSize(read.size());
+    for (int i = 0; i < read.size(); i++) {
+      assertSameIssue(mapped.get(i), read.get(i));
+    }
+  }
+
+  @Test
+  public void gzip_compressed() throws Exception {
+    File file = tmp.newFile("report.xml.gz");
+    ReSharperCompression.gzip(new File("src/test/resources/ReSharperReportParserTest/valid.xml"), file);
+
+    List<ReSharperIssue> issues = new ReSharperReportParser().parse(file);
+    List<ReSharperIssue> expected = new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/valid.xml"));
+    assertThat(issues).hasSize(3);
+    for (int i = 0; i < expected.size(); i++) {
+      assertSameIssue(issues.get(i), expected.get(i));
+    }
+  }
+
+  @Test
+  public void sarif_and_xml_produce_the_same_issues() {
+    List<ReSharperIssue> issues = new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/valid.sarif.json"));
+    List<ReSharperIssue> expected = new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/valid.xml"));
+
+    assertThat(issues).hasSize(3);
+    for (int i = 0; i < expected.size(); i++) {
+      assertSameIssueIgnoringReportLine(issues.get(i), expected.get(i));
+    }
+    assertThat(issues.get(0).reportLine()).isEqualTo(16);
+    assertThat(issues.get(1).reportLine()).isEqualTo(22);
+  }
+
+  @Test
+  public void gzip_compressed_sarif() throws Exception {
+    File file = tmp.newFile("report.sarif.gz");
+    ReSharperCompression.gzip(new File("src/test/resources/ReSharperReportParserTest/valid.sarif.json"), file);
+
+    List<ReSharperIssue> issues = new ReSharperReportParser().parse(file);
+    List<ReSharperIssue> expected = new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/valid.sarif.json"));
+    assertThat(issues).hasSize(3);
+    for (int i = 0; i < expected.size(); i++) {
+      assertSameIssue(issues.get(i), expected.get(i));
+    }
+  }
+
+  @Test
+  public void missing_sarif_rule_id() {
+    thrown.expectMessage("Missing property \"ruleId\" in the result at line 5");
+    thrown.expectMessage("missing_ruleid.sarif.json");
+
+    new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/missing_ruleid.sarif.json"));
+  }
+
+  @Test
+  public void sarif_paths() {
+    assertThat(ReSharperSarifReader.path("MyLibrary/Foo%20Bar.cs")).isEqualTo("MyLibrary\\Foo Bar.cs");
+    assertThat(ReSharperSarifReader.path("file:///C:/Solution/Foo.cs")).isEqualTo("C:/Solution/Foo.cs");
+    assertThat(ReSharperSarifReader.path("file:///home/solution/Foo.cs")).isEqualTo("/home/solution/Foo.cs");
+    assertThat(ReSharperSarifReader.path("My Library/Foo.cs")).isEqualTo("My Library\\Foo.cs");
+  }
+
+  @Test
+  public void sarif_uri_base_ids() {
+    List<ReSharperIssue> issues = new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/uri_base_ids.sarif.json"));
+
+    assertThat(issues).hasSize(2);
+    assertThat(issues.get(0).filePath()).isEqualTo("C:/Solution/My Library/Class1.cs");
+    assertThat(issues.get(1).filePath()).isEqualTo("MyLibrary\\Class2.cs");
+  }
+
+  @Test
+  public void undefined_sarif_uri_base_id() {
+    thrown.expectMessage("Unable to resolve the uriBaseId \"srcRoot\" of \"Class1.cs\"");
+    thrown.expectMessage("undefined_uri_base_id.sarif.json");
+
+    new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/undefined_uri_base_id.sarif.json"));
+  }
+
+  @Test
+  public void filter_while_parsing() throws Exception {
+    File gzip = tmp.newFile("report.xml.gz");
+    ReSharperCompression.gzip(new File("src/test/resources/ReSharperReportParserTest/valid.xml"), gzip);
+    List<File> files = ImmutableList.of(
+      new File("src/test/resources/ReSharperReportParserTest/valid.xml"),
+      gzip,
+      new File("src/test/resources/ReSharperReportParserTest/valid.sarif.json"));
+
+    for (File file : files) {
+      ReSharperIssueFilter filter = new ReSharperIssueFilter(ImmutableList.of("RedundantUsingDirective"), null, ImmutableList.of("MyLibrary\\Properties\\"));
+      List<ReSharperIssue> issues = Lists.newArrayList();
+      new ReSharperReportParser().parse(file, new ReSharperIssueSink.Collector(issues), filter);
+
+      assertThat(issues).hasSize(1);
+      assertThat(issues.get(0).filePath()).isEqualTo("MyLibrary\\Properties\\AssemblyInfo.cs");
+      assertThat(filter.rejected()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  public void rejected_issues_are_not_validated() throws Exception {
+    ReSharperIssueFilter filter = new ReSharperIssueFilter(ImmutableList.<String>of(), null, null);
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    new ReSharperReportScanner().scan(new File("src/test/resources/ReSharperReportParserTest/invalid_line.xml"), new ReSharperIssueSink.Collector(issues), filter);
+
+    assertThat(issues).isEmpty();
+    assertThat(filter.rejected()).isGreaterThan(0);
+  }
+
+  @Test
+  public void fallback_does_not_count_rejected_issues_twice() {
+    ReSharperIssueFilter filter = new ReSharperIssueFilter(ImmutableList.of("Unknown"), null, null);
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    new ReSharperReportParser().parse(new File("src/test/resources/ReSharperReportParserTest/fallback_after_issues.xml"), new ReSharperIssueSink.Collector(issues), filter);
+
+    assertThat(issues).isEmpty();
+    assertThat(filter.rejected()).isEqualTo(3);
+  }
+
+  private static void assertSameIssueIgnoringReportLine(ReSharperIssue actual, ReSharperIssue expected) {
+    assertThat(actual.ruleKey()).isEqualTo(expected.ruleKey());
+    assertThat(actual.filePath()).isEqualTo(expected.filePath());
+    assertThat(actual.line()).isEqualTo(expected.line());
+    assertThat(actual.offset()).isEqualTo(expected.offset());
+    assertThat(actual.message()).isEqualTo(expected.message());
+  }
+
+  private static void assertSameIssue(ReSharperIssue actual, ReSharperIssue expected) {
+    assertThat(actual.reportLine()).isEqualTo(expected.reportLine());
+    assertThat(actual.ruleKey()).isEqualTo(expected.ruleKey());
+    assertThat(actual.filePath()).isEqualTo(expected.filePath());
+    assertThat(actual.line()).isEqualTo(expected.line());
+    assertThat(actual.offset()).isEqualTo(expected.offset());
+    assertThat(actual.message()).isEqualTo(expected.message());
+  }
+
 }
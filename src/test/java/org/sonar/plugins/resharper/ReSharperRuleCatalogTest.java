@@ -0,0 +1,87 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import org.junit.Test;
+import org.sonar.api.rules.Rule;
+import org.sonar.api.rules.XMLRuleParser;
+
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperRuleCatalogTest {
+
+  @Test
+  public void same_rules_as_xml_rule_parser() {
+    List<Rule> expected = new XMLRuleParser().parse(getClass().getResourceAsStream("/org/sonar/plugins/resharper/rules.xml"));
+    List<Rule> rules = new ReSharperRuleCatalog().rules();
+
+    assertThat(rules).hasSize(expected.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertThat(rules.get(i).getKey()).isEqualTo(expected.get(i).getKey());
+      assertThat(rules.get(i).getConfigKey()).isEqualTo(expected.get(i).getConfigKey());
+      assertThat(rules.get(i).getSeverity()).isEqualTo(expected.get(i).getSeverity());
+      assertThat(rules.get(i).getName()).isEqualTo(expected.get(i).getName());
+      assertThat(rules.get(i).getDescription()).isEqualTo(expected.get(i).getDescription());
+      assertThat(rules.get(i).getParams()).isEmpty();
+    }
+  }
+
+  @Test
+  public void rule_keys_only() {
+    List<Rule> rules = new ReSharperRuleCatalog().rules();
+    List<String> ruleKeys = ReSharperRuleCatalog.ruleKeys();
+
+    assertThat(ruleKeys).hasSize(rules.size());
+    for (int i = 0; i < rules.size(); i++) {
+      assertThat(ruleKeys.get(i)).isEqualTo(rules.get(i).getKey());
+    }
+  }
+
+  @Test
+  public void rules_are_parsed_once_but_not_shared() {
+    ReSharperRuleCatalog catalog = new ReSharperRuleCatalog();
+    catalog.register();
+    catalog.register();
+    List<Rule> rules = catalog.rules();
+    List<Rule> otherRules = catalog.rules();
+
+    assertThat(otherRules.get(0)).isNotSameAs(rules.get(0));
+    assertThat(otherRules.get(0).getDescription()).isSameAs(rules.get(0).getDescription());
+  }
+
+  @Test
+  public void rules_are_released_once_every_repository_is_defined() {
+    ReSharperRuleCatalog catalog = new ReSharperRuleCatalog();
+    ReSharperRuleRepository csRepository = new ReSharperRuleRepository(new ReSharperConfiguration("cs", "cs-resharper"), catalog);
+    ReSharperRuleRepository vbnetRepository = new ReSharperRuleRepository(new ReSharperConfiguration("vbnet", "vbnet-resharper"), catalog);
+
+    csRepository.createRules();
+    assertThat(catalog.isLoaded()).isTrue();
+
+    vbnetRepository.createRules();
+    assertThat(catalog.isLoaded()).isFalse();
+
+    assertThat(catalog.rules()).hasSize(csRepository.createRules().size());
+    assertThat(catalog.isLoaded()).isFalse();
+  }
+
+}
@@ -21,7 +21,6 @@ package org.sonar.plugins.resharper;
 
 import org.junit.Test;
 import org.sonar.api.rules.Rule;
-import org.sonar.api.rules.XMLRuleParser;
 
 import java.util.List;
 
@@ -31,7 +30,7 @@ public class ReSharperRuleRepositoryTest {
 
   @Test
   public void test() {
-    ReSharperRuleRepository repo = new ReSharperRuleRepository(new ReSharperConfiguration("cs", "cs-resharper"), new XMLRuleParser());
+    ReSharperRuleRepository repo = new ReSharperRuleRepository(new ReSharperConfiguration("cs", "cs-resharper"), new ReSharperRuleCatalog());
     assertThat(repo.getLanguage()).isEqualTo("cs");
     assertThat(repo.getKey()).isEqualTo("cs-resharper");
 
@@ -0,0 +1,237 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.PrefixFileFilter;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.sonar.api.config.Settings;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ReSharperRunnerTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final ReSharperExecutor executor = mock(ReSharperExecutor.class);
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private File cacheDir;
+  private File rulesFile;
+  private List<String> properties;
+
+  @Before
+  public void init() throws Exception {
+    File solutionDir = tmp.newFolder("solution");
+    Files.write("class Class1 {}", new File(solutionDir, "Class1.cs"), Charsets.UTF_8);
+    File inspectCodeDir = tmp.newFolder("inspectcode");
+    Files.write("executable", new File(inspectCodeDir, "inspectcode.exe"), Charsets.UTF_8);
+    cacheDir = tmp.newFolder("cache");
+    rulesFile = tmp.newFile("rules.txt");
+    Files.write("# Rules of the nightly job\nRedundantUsingDirective\n\nRedundantCast\n", rulesFile, Charsets.UTF_8);
+
+    properties = Lists.newArrayList(
+      "-D" + ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY + "=" + new File(solutionDir, "MySolution.sln").getAbsolutePath(),
+      "-D" + ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY + "=MyLibrary",
+      "-D" + ReSharperPlugin.INSPECTCODE_PATH_PROPERTY_KEY + "=" + inspectCodeDir.getAbsolutePath(),
+      "-D" + ReSharperPlugin.CACHE_DIRECTORY_PROPERTY_KEY + "=" + cacheDir.getAbsolutePath(),
+      "-D" + ReSharperRunner.BASE_DIR_PROPERTY_KEY + "=" + tmp.getRoot().getAbsolutePath());
+
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Files.copy(new File("src/test/resources/ReSharperReportParserTest/valid.xml"), (File) invocation.getArguments()[4]);
+        return null;
+      }
+    }).when(executor).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+  }
+
+  @Test
+  public void usage() {
+    assertThat(run()).isEqualTo(ReSharperRunner.EXIT_USAGE);
+    assertThat(run("warm")).isEqualTo(ReSharperRunner.EXIT_USAGE);
+    assertThat(run("convert", "issues")).isEqualTo(ReSharperRunner.EXIT_USAGE);
+    assertThat(run("unknown", "foo")).isEqualTo(ReSharperRunner.EXIT_USAGE);
+    assertThat(output.toString()).contains("Usage: java -cp <classpath> org.sonar.plugins.resharper.ReSharperRunner");
+    assertThat(output.toString()).contains("sonar-plugin-api and its dependencies").contains("SLF4J binding").contains("watch <rules file>").contains("profile <rules file>");
+  }
+
+  @Test
+  public void warm_the_cache() {
+    assertThat(run(command("warm", rulesFile.getAbsolutePath()))).isEqualTo(ReSharperRunner.EXIT_SUCCESS);
+    verify(executor).execute(anyString(), eq("MyLibrary"), anyString(), any(File.class), any(File.class), anyInt());
+    assertThat(cachedSnapshots()).hasSize(1);
+    assertThat(output.toString()).contains("The issues of 1 ReSharper reports are cached");
+
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    ReSharperIssueSnapshot.read(cachedSnapshots().get(0), new ReSharperIssueSink.Collector(issues));
+    assertThat(issues).hasSize(3);
+    assertThat(ReSharperDotSettingsWriter.ruleKeys(new File(tmp.getRoot(), ".sonar/" + ReSharperInspection.DOT_SETTINGS_FILE_NAME)))
+      .containsExactly("RedundantCast", "RedundantUsingDirective");
+
+    assertThat(run(command("warm", rulesFile.getAbsolutePath()))).isEqualTo(ReSharperRunner.EXIT_SUCCESS);
+    verify(executor, times(1)).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+  }
+
+  @Test
+  public void rules_of_a_dot_settings_file() throws Exception {
+    File dotSettingsFile = tmp.newFile("resharper-sonarqube.DotSettings");
+    new ReSharperDotSettingsWriter().write(ImmutableList.of("CSharpWarnings::CS0618", "RedundantCast"), dotSettingsFile);
+
+    assertThat(ReSharperRunner.ruleKeys(dotSettingsFile)).containsExactly("CSharpWarnings::CS0618", "RedundantCast");
+    assertThat(ReSharperRunner.ruleKeys(rulesFile)).containsExactly("RedundantUsingDirective", "RedundantCast");
+  }
+
+  @Test
+  public void watch_the_solution_until_enter_is_pressed() throws Exception {
+    File solutionDir = tmp.newFolder("watched");
+    FileUtils.copyDirectory(new File("src/test/resources/ReSharperSolutionTest"), solutionDir);
+    properties.add("-D" + ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY + "=watched/MySolution.sln");
+
+    assertThat(run(command("watch", rulesFile.getAbsolutePath()))).isEqualTo(ReSharperRunner.EXIT_SUCCESS);
+    verify(executor).execute(anyString(), eq("MyLibrary"), eq(new File(solutionDir, "MySolution.sln").getPath()), any(File.class), any(File.class), anyInt());
+    verify(executor).execute(anyString(), eq("Missing"), anyString(), any(File.class), any(File.class), anyInt());
+    assertThat(output.toString())
+      .contains("Watching " + new File(solutionDir, "MySolution.sln").getPath() + " with 6 ReSharper issues, press Enter to stop")
+      .contains("Stopped watching");
+    assertThat(FileUtils.listFiles(new File(tmp.getRoot(), ".sonar"), new PrefixFileFilter("resharper-watch-report"), null)).isEmpty();
+  }
+
+  @Test
+  public void watch_a_single_solution() {
+    properties.add("-D" + ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY + "=First.sln,Second.sln");
+
+    assertThat(run(command("watch", rulesFile.getAbsolutePath()))).isEqualTo(ReSharperRunner.EXIT_FAILURE);
+    assertThat(output.toString()).contains("Only one solution can be watched");
+  }
+
+  @Test
+  public void profile_the_rule_categories() throws Exception {
+    Files.write("RedundantCast\nRedundantUsingDirective\nRedundantThisQualifier\nAccessToDisposedClosure\n", rulesFile, Charsets.UTF_8);
+
+    assertThat(run(command("profile", rulesFile.getAbsolutePath(), "2"))).isEqualTo(ReSharperRunner.EXIT_SUCCESS);
+    verify(executor, times(6)).execute(anyString(), eq("MyLibrary"), anyString(), any(File.class), any(File.class), anyInt());
+    assertThat(output.toString()).contains("Category").contains("Redundant").contains("Other");
+
+    assertThat(run(command("profile", rulesFile.getAbsolutePath(), "none"))).isEqualTo(ReSharperRunner.EXIT_USAGE);
+    properties.add("-D" + ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY + "=MyLibrary,MyService");
+    assertThat(run(command("profile", rulesFile.getAbsolutePath()))).isEqualTo(ReSharperRunner.EXIT_FAILURE);
+    assertThat(output.toString()).contains("Only one project can be profiled");
+  }
+
+  @Test
+  public void import_reports_then_warm_from_the_cache() {
+    assertThat(run(command("import", rulesFile.getAbsolutePath(), "src/test/resources/ReSharperReportParserTest/valid.xml",
+      "src/test/resources/ReSharperReportParserTest/valid.sarif.json"))).isEqualTo(ReSharperRunner.EXIT_SUCCESS);
+    assertThat(cachedSnapshots()).hasSize(1);
+    assertThat(output.toString()).contains("The issues of 2 ReSharper reports are cached as " + cachedSnapshots().get(0).getName().replace(".issues", ""));
+
+    List<ReSharperIssue> issues = Lists.newArrayList();
+    ReSharperIssueSnapshot.read(cachedSnapshots().get(0), new ReSharperIssueSink.Collector(issues));
+    assertThat(issues).hasSize(3);
+
+    assertThat(run(command("warm", rulesFile.getAbsolutePath()))).isEqualTo(ReSharperRunner.EXIT_SUCCESS);
+    verify(executor, never()).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+  }
+
+  @Test
+  public void import_requires_a_single_project() {
+    properties.add("-D" + ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY + "=MyLibrary,MyService");
+
+    assertThat(run(command("import", rulesFile.getAbsolutePath(), "src/test/resources/ReSharperReportParserTest/valid.xml")))
+      .isEqualTo(ReSharperRunner.EXIT_FAILURE);
+    assertThat(output.toString()).contains("The reports can only be imported for a single project");
+  }
+
+  @Test
+  public void cache_must_be_enabled() {
+    properties.remove("-D" + ReSharperPlugin.CACHE_DIRECTORY_PROPERTY_KEY + "=" + cacheDir.getAbsolutePath());
+
+    assertThat(run(command("warm", rulesFile.getAbsolutePath()))).isEqualTo(ReSharperRunner.EXIT_FAILURE);
+    assertThat(output.toString()).contains("ERROR: The cache is disabled");
+    verify(executor, never()).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+  }
+
+  @Test
+  public void convert_reports() throws Exception {
+    File snapshotFile = new File(tmp.getRoot(), "merged.issues");
+
+    assertThat(run("convert", snapshotFile.getAbsolutePath(), "src/test/resources/ReSharperReportParserTest/valid.xml",
+      "src/test/resources/ReSharperReportParserTest/valid.sarif.json")).isEqualTo(ReSharperRunner.EXIT_SUCCESS);
+    assertThat(output.toString()).contains("Converted 2 ReSharper reports into " + snapshotFile.getAbsolutePath() + ", skipping 3 duplicated issues");
+    assertThat(ReSharperReportFormat.detect(snapshotFile)).isEqualTo(ReSharperReportFormat.SNAPSHOT);
+  }
+
+  private List<File> cachedSnapshots() {
+    List<File> snapshots = Lists.newArrayList();
+    for (File file : cacheDir.listFiles()) {
+      if (file.getName().endsWith(".issues")) {
+        snapshots.add(file);
+      }
+    }
+    return snapshots;
+  }
+
+  private String[] command(String... arguments) {
+    List<String> args = Lists.newArrayList(properties);
+    args.addAll(ImmutableList.copyOf(arguments));
+    return args.toArray(new String[args.size()]);
+  }
+
+  private int run(String... args) {
+    return new ReSharperRunner() {
+      @Override
+      ReSharperExecutor executor(Settings settings) {
+        return executor;
+      }
+
+      @Override
+      InputStream input() {
+        return new ByteArrayInputStream("\n".getBytes(Charsets.UTF_8));
+      }
+    }.run(args, new PrintStream(output));
+  }
+
+}
@@ -19,14 +19,22 @@
  */
 package org.sonar.plugins.resharper;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.apache.commons.io.filefilter.PrefixFileFilter;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.sonar.api.batch.fs.FilePredicate;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultFileSystem;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
@@ -43,24 +51,43 @@ import org.sonar.api.rule.RuleKey;
 import javax.annotation.Nullable;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Fail.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class ReSharperSensorTest {
 
   @Rule
   public ExpectedException thrown = ExpectedException.none();
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
   private ReSharperDotSettingsWriter writer = mock(ReSharperDotSettingsWriter.class);
   private ReSharperExecutor executor = mock(ReSharperExecutor.class);
   private ReSharperReportParser parser = mock(ReSharperReportParser.class);
+  private ReSharperReportCache cache = mock(ReSharperReportCache.class);
+  private ReSharperShardDispatcher dispatcher = mock(ReSharperShardDispatcher.class);
+  private ReSharperEarlyLauncher launcher = mock(ReSharperEarlyLauncher.class);
 
   @Test
   public void describe() {
     DefaultSensorDescriptor descriptor = new DefaultSensorDescriptor();
-    new ReSharperSensor(new ReSharperConfiguration("foo", "bar"), executor, parser, writer).describe(descriptor);
+    sensor(new ReSharperConfiguration("foo", "bar")).describe(descriptor);
     assertThat(descriptor.name()).isEqualTo("ReSharper");
     assertThat(descriptor.languages()).containsOnly("foo");
     assertThat(descriptor.types()).containsOnly(InputFile.Type.MAIN);
@@ -69,7 +96,7 @@ public class ReSharperSensorTest {
 
   @Test
   public void analyze() throws Exception {
-    ReSharperSensor sensor = new ReSharperSensor(new ReSharperConfiguration("foo", "foo-resharper"), executor, parser, writer);
+    ReSharperSensor sensor = sensor(new ReSharperConfiguration("foo", "foo-resharper"));
 
     ActiveRules activeRules = mockActiveRules("foo-resharper", "AccessToDisposedClosure", "AccessToForEachVariableInClosure");
 
@@ -100,7 +127,7 @@ public class ReSharperSensorTest {
 
     });
 
-    when(parser.parse(new File(workingDir, "resharper-report.xml"))).thenReturn(
+    mockReport(new File(workingDir, "resharper-report.xml"),
       ImmutableList.of(
         new ReSharperIssue(100, "AccessToDisposedClosure", null, 1, "Dummy message"),
         new ReSharperIssue(200, "AccessToDisposedClosure", "Class2.cs", null, "Dummy message"),
@@ -137,12 +164,715 @@ public class ReSharperSensorTest {
     assertThat(issue2.message()).isEqualTo("Third message");
   }
 
+  @Test
+  public void resolve_issues_without_the_file_system_and_always_shut_the_threads_down() throws Exception {
+    final ReSharperParallelTransform transform = Mockito.spy(new ReSharperParallelTransform(4, 1));
+    ReSharperSensor sensor = new ReSharperSensor(new ReSharperConfiguration("foo", "foo-resharper"), executor, parser, writer, cache, dispatcher, launcher) {
+      @Override
+      ReSharperParallelTransform parallelTransform() {
+        return transform;
+      }
+    };
+
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = Mockito.spy(new DefaultFileSystem());
+    fileSystem.setWorkDir(workingDir);
+    fileSystem.add(mockInputFile("foo", "Class1.cs"));
+    fileSystem.add(mockInputFile("foo", "Class2.cs"));
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "AccessToDisposedClosure"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) {
+        return new DefaultIssueBuilder();
+      }
+    });
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        Issue issue = (Issue) invocation.getArguments()[0];
+        if (issue.line() == 2) {
+          throw new IllegalStateException("Cannot save the issue");
+        }
+        return null;
+      }
+    }).when(context).addIssue(any(Issue.class));
+
+    mockReport(new File(workingDir, "resharper-report.xml"),
+      ImmutableList.of(
+        new ReSharperIssue(100, "AccessToDisposedClosure", "Class1.cs", 1, "First message"),
+        new ReSharperIssue(200, "AccessToDisposedClosure", "Class2.cs", 2, "Second message")));
+
+    try {
+      sensor.execute(context);
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("Cannot save the issue");
+    }
+
+    verify(context, times(2)).addIssue(any(Issue.class));
+    verify(fileSystem, never()).inputFile(any(FilePredicate.class));
+    verify(transform).close();
+  }
+
+  @Test
+  public void resolve_offsets_to_lines() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+    fileSystem.setEncoding(Charsets.UTF_8);
+
+    File sourceFile = tmp.newFile("Class1.cs");
+    Files.write("using System;\nusing System.Linq;\n", sourceFile, Charsets.UTF_8);
+    InputFile inputFile = mockInputFile("foo", sourceFile.getAbsolutePath());
+    fileSystem.add(inputFile);
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "RedundantUsingDirective"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) throws Throwable {
+        return new DefaultIssueBuilder();
+      }
+
+    });
+
+    mockReport(new File(workingDir, "resharper-report.xml"),
+      ImmutableList.of(
+        new ReSharperIssue(100, "RedundantUsingDirective", sourceFile.getAbsolutePath(), null, 14, "First message"),
+        new ReSharperIssue(200, "RedundantUsingDirective", sourceFile.getAbsolutePath(), null, 1000, "Beyond the end of the file")));
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<Issue> issues = ArgumentCaptor.forClass(Issue.class);
+    verify(context).addIssue(issues.capture());
+    assertThat(issues.getValue().inputPath()).isSameAs(inputFile);
+    assertThat(issues.getValue().line()).isEqualTo(2);
+    assertThat(issues.getValue().message()).isEqualTo("First message");
+  }
+
+  @Test
+  public void resolve_paths_relative_to_the_solution() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+    File solutionFile = new File("src/test/resources/ReSharperSolutionTest/MySolution.sln");
+    InputFile inputFile = mockInputFile("foo", new File(solutionFile.getAbsoluteFile().getParentFile(), "MyLibrary/Class1.cs").getAbsolutePath());
+    fileSystem.add(inputFile);
+
+    File reportFile = tmp.newFile("resharper-report.xml");
+    Settings settings = mockSettings(null, solutionFile.getAbsolutePath(), null);
+    settings.setProperty(ReSharperPlugin.REPORT_PATH_PROPERTY_KEY, reportFile.getAbsolutePath());
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "RedundantUsingDirective"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) throws Throwable {
+        return new DefaultIssueBuilder();
+      }
+
+    });
+    mockReport(reportFile, ImmutableList.of(new ReSharperIssue(100, "RedundantUsingDirective", "mylibrary\\class1.cs", 1, "Relative path")));
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<Issue> issues = ArgumentCaptor.forClass(Issue.class);
+    verify(context).addIssue(issues.capture());
+    assertThat(issues.getValue().inputPath()).isSameAs(inputFile);
+  }
+
+  @Test
+  public void reject_issues_of_inactive_rules_and_of_files_outside_of_the_module_while_parsing() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+    File solutionFile = new File("src/test/resources/ReSharperSolutionTest/MySolution.sln");
+    File solutionDir = solutionFile.getAbsoluteFile().getParentFile();
+    fileSystem.add(mockInputFile("foo", new File(solutionDir, "MyLibrary/Class1.cs").getAbsolutePath()));
+    fileSystem.add(mockInputFile("foo", new File(solutionDir, "MyLibrary/Properties/AssemblyInfo.cs").getAbsolutePath()));
+    fileSystem.add(mockInputFile("bar", new File(solutionDir, "Shared/SharedCode.cs").getAbsolutePath()));
+
+    File reportFile = tmp.newFile("resharper-report.xml");
+    Settings settings = mockSettings(null, solutionFile.getAbsolutePath(), null);
+    settings.setProperty(ReSharperPlugin.REPORT_PATH_PROPERTY_KEY, reportFile.getAbsolutePath());
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "RedundantUsingDirective"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<ReSharperIssueFilter> filter = ArgumentCaptor.forClass(ReSharperIssueFilter.class);
+    verify(parser).parse(eq(reportFile), any(ReSharperIssueSink.class), filter.capture());
+    assertThat(filter.getValue().accept("RedundantUsingDirective", "mylibrary\\class1.cs")).isTrue();
+    assertThat(filter.getValue().accept("RedundantUsingDirective", "MyLibrary/Properties/AssemblyInfo.cs")).isTrue();
+    assertThat(filter.getValue().accept("RedundantUsingDirective", new File(solutionDir, "MyLibrary/Class1.cs").getAbsolutePath())).isTrue();
+    assertThat(filter.getValue().accept("RedundantUsingDirective", null)).isTrue();
+    assertThat(filter.getValue().accept("RedundantUsingDirective", "Shared\\SharedCode.cs")).isFalse();
+    assertThat(filter.getValue().accept("RedundantUsingDirective", new File(solutionDir, "Shared/SharedCode.cs").getAbsolutePath())).isFalse();
+    assertThat(filter.getValue().accept("InactiveRule", "MyLibrary\\Class1.cs")).isFalse();
+  }
+
+  @Test
+  public void skip_projects_which_are_not_in_the_solution() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+    String solutionFile = new File("src/test/resources/ReSharperSolutionTest/MySolution.sln").getAbsolutePath();
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary,Unknown,My*", solutionFile, "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    verify(executor).execute(eq("inspectcode.exe"), eq("MyLibrary"), eq(solutionFile), any(File.class), eq(new File(workingDir, "resharper-report-1.xml")), eq(10));
+    verify(executor).execute(eq("inspectcode.exe"), eq("My*"), eq(solutionFile), any(File.class), eq(new File(workingDir, "resharper-report-3.xml")), eq(10));
+    verify(executor, never()).execute(anyString(), eq("Unknown"), anyString(), any(File.class), any(File.class), anyInt());
+  }
+
+  @Test
+  public void deduplicate_issues() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+    InputFile inputFile = mockInputFile("foo", "Class1.cs");
+    fileSystem.add(inputFile);
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "AccessToDisposedClosure"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) throws Throwable {
+        return new DefaultIssueBuilder();
+      }
+
+    });
+
+    mockReport(new File(fileSystem.workDir(), "resharper-report.xml"),
+      ImmutableList.of(
+        new ReSharperIssue(100, "AccessToDisposedClosure", "Class1.cs", 1, "First message"),
+        new ReSharperIssue(200, "AccessToDisposedClosure", "Class1.cs", 2, "First message"),
+        new ReSharperIssue(300, "AccessToDisposedClosure", "Class1.cs", 1, "First message"),
+        new ReSharperIssue(400, "AccessToDisposedClosure", "Class1.cs", 1, "Second message")));
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<Issue> issues = ArgumentCaptor.forClass(Issue.class);
+    verify(context, Mockito.times(3)).addIssue(issues.capture());
+    assertThat(issues.getAllValues().get(0).line()).isEqualTo(1);
+    assertThat(issues.getAllValues().get(1).line()).isEqualTo(2);
+    assertThat(issues.getAllValues().get(2).message()).isEqualTo("Second message");
+  }
+
+  @Test
+  public void cap_issues_per_rule() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+    fileSystem.add(mockInputFile("foo", "Class1.cs"));
+
+    Settings settings = mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.MAX_ISSUES_PER_RULE_PROPERTY_KEY, "2");
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "AccessToDisposedClosure", "AccessToForEachVariableInClosure"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) throws Throwable {
+        return new DefaultIssueBuilder();
+      }
+
+    });
+
+    mockReport(new File(fileSystem.workDir(), "resharper-report.xml"),
+      ImmutableList.of(
+        new ReSharperIssue(100, "AccessToDisposedClosure", "Class1.cs", 1, "message"),
+        new ReSharperIssue(200, "AccessToDisposedClosure", "Class1.cs", 2, "message"),
+        new ReSharperIssue(300, "AccessToDisposedClosure", "Class1.cs", 3, "message"),
+        new ReSharperIssue(400, "AccessToForEachVariableInClosure", "Class1.cs", 4, "message")));
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<Issue> issues = ArgumentCaptor.forClass(Issue.class);
+    verify(context, Mockito.times(3)).addIssue(issues.capture());
+    assertThat(issues.getAllValues().get(2).line()).isEqualTo(4);
+  }
+
+  @Test
+  public void only_save_issues_which_are_not_in_the_baseline() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setBaseDir(tmp.getRoot());
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+    fileSystem.setEncoding(Charsets.UTF_8);
+
+    File sourceFile = tmp.newFile("Class1.cs");
+    Files.write("using System;\nusing System.Linq;\n", sourceFile, Charsets.UTF_8);
+    fileSystem.add(mockInputFile("foo", sourceFile.getAbsolutePath()));
+
+    Settings settings = mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.BASELINE_PATH_PROPERTY_KEY, "resharper-baseline.bin");
+    settings.setProperty(ReSharperPlugin.UPDATE_BASELINE_PROPERTY_KEY, "true");
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "RedundantUsingDirective"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) throws Throwable {
+        return new DefaultIssueBuilder();
+      }
+
+    });
+
+    File reportFile = new File(fileSystem.workDir(), "resharper-report.xml");
+    mockReport(reportFile, ImmutableList.of(new ReSharperIssue(100, "RedundantUsingDirective", sourceFile.getAbsolutePath(), 2, "message")));
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+    verify(context).addIssue(any(Issue.class));
+    assertThat(new File(tmp.getRoot(), "resharper-baseline.bin")).exists();
+
+    // A line is inserted above the known issue, and a new issue is raised
+    Files.write("// Header\nusing System;\nusing System.Linq;\n", sourceFile, Charsets.UTF_8);
+    settings.setProperty(ReSharperPlugin.UPDATE_BASELINE_PROPERTY_KEY, "false");
+    mockReport(reportFile, ImmutableList.of(
+      new ReSharperIssue(100, "RedundantUsingDirective", sourceFile.getAbsolutePath(), 2, "message"),
+      new ReSharperIssue(200, "RedundantUsingDirective", sourceFile.getAbsolutePath(), 3, "message")));
+    context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "RedundantUsingDirective"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) throws Throwable {
+        return new DefaultIssueBuilder();
+      }
+
+    });
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<Issue> issues = ArgumentCaptor.forClass(Issue.class);
+    verify(context).addIssue(issues.capture());
+    assertThat(issues.getValue().line()).isEqualTo(2);
+  }
+
+  @Test
+  public void issues_on_identical_lines_are_told_apart_by_the_baseline() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setBaseDir(tmp.getRoot());
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+    fileSystem.setEncoding(Charsets.UTF_8);
+
+    File sourceFile = tmp.newFile("Class1.cs");
+    Files.write("try {}\ncatch {}\ntry {}\ncatch {}\n", sourceFile, Charsets.UTF_8);
+    fileSystem.add(mockInputFile("foo", sourceFile.getAbsolutePath()));
+
+    Settings settings = mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.BASELINE_PATH_PROPERTY_KEY, "resharper-baseline.bin");
+    settings.setProperty(ReSharperPlugin.UPDATE_BASELINE_PROPERTY_KEY, "true");
+    File reportFile = new File(fileSystem.workDir(), "resharper-report.xml");
+    mockReport(reportFile, ImmutableList.of(new ReSharperIssue(100, "EmptyGeneralCatchClause", sourceFile.getAbsolutePath(), 2, "message")));
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(baselineContext(settings, fileSystem));
+
+    // The same empty catch block is added further down
+    settings.setProperty(ReSharperPlugin.UPDATE_BASELINE_PROPERTY_KEY, "false");
+    mockReport(reportFile, ImmutableList.of(
+      new ReSharperIssue(100, "EmptyGeneralCatchClause", sourceFile.getAbsolutePath(), 2, "message"),
+      new ReSharperIssue(200, "EmptyGeneralCatchClause", sourceFile.getAbsolutePath(), 4, "message")));
+    SensorContext context = baselineContext(settings, fileSystem);
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<Issue> issues = ArgumentCaptor.forClass(Issue.class);
+    verify(context).addIssue(issues.capture());
+    assertThat(issues.getValue().line()).isEqualTo(4);
+  }
+
+  private SensorContext baselineContext(Settings settings, DefaultFileSystem fileSystem) {
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "EmptyGeneralCatchClause"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenAnswer(new Answer<IssueBuilder>() {
+
+      @Override
+      public IssueBuilder answer(InvocationOnMock invocation) throws Throwable {
+        return new DefaultIssueBuilder();
+      }
+
+    });
+    return context;
+  }
+
+  @Test
+  public void import_existing_report() {
+    ReSharperSensor sensor = sensor(new ReSharperConfiguration("foo", "foo-resharper"));
+
+    File baseDir = new File("target/ReSharperSensorTest/base-dir").getAbsoluteFile();
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setBaseDir(baseDir);
+    fileSystem.setWorkDir(new File("target/ReSharperSensorTest/working-dir").getAbsoluteFile());
+    InputFile inputFile = mockInputFile("foo", "Class1.cs");
+    fileSystem.add(inputFile);
+
+    Settings settings = mockSettings(null, null, null);
+    settings.setProperty(ReSharperPlugin.REPORT_PATH_PROPERTY_KEY, "reports/resharper-report.xml.gz");
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "AccessToDisposedClosure"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(context.issueBuilder()).thenReturn(new DefaultIssueBuilder());
+
+    mockReport(new File(baseDir, "reports/resharper-report.xml.gz"),
+      ImmutableList.of(new ReSharperIssue(100, "AccessToDisposedClosure", "Class1.cs", 1, "Dummy message")));
+
+    sensor.execute(context);
+
+    verifyZeroInteractions(executor, writer);
+    verify(context).addIssue(Mockito.any(Issue.class));
+  }
+
+  @Test
+  public void retained_report_is_compressed() throws Exception {
+    ReSharperSensor sensor = sensor(new ReSharperConfiguration("foo", "foo-resharper"));
+
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    final File reportFile = new File(workingDir, "resharper-report.xml");
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Files.write("<Report />", reportFile, Charsets.UTF_8);
+        return null;
+      }
+
+    }).when(executor).execute(anyString(), anyString(), anyString(), any(File.class), eq(reportFile), anyInt());
+    mockReport(reportFile, ImmutableList.<ReSharperIssue>of());
+
+    sensor.execute(context);
+
+    assertThat(reportFile).doesNotExist();
+    File compressed = new File(workingDir, "resharper-report.xml.gz");
+    assertThat(ReSharperCompression.isCompressed(compressed)).isTrue();
+  }
+
+  @Test
+  public void reuse_cached_report() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setBaseDir(tmp.getRoot());
+    fileSystem.setWorkDir(workingDir);
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    File rulesetFile = new File(workingDir, "resharper-sonarqube.DotSettings");
+    File snapshotFile = new File(workingDir, "resharper-report.issues");
+    when(cache.isEnabled()).thenReturn(true);
+    when(cache.sourceDigest(eq(new File(tmp.getRoot(), "CSharpPlayground.sln")), any(Collection.class))).thenReturn("sources");
+    when(cache.key("inspectcode.exe", "MyLibrary", new File(tmp.getRoot(), "CSharpPlayground.sln"), rulesetFile, "sources")).thenReturn("abc");
+    when(cache.fetch("abc", snapshotFile)).thenReturn(true);
+    mockReport(snapshotFile, ImmutableList.<ReSharperIssue>of());
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    verifyZeroInteractions(executor);
+    verify(parser).parse(eq(snapshotFile), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+    verify(cache, never()).store(anyString(), any(File.class));
+  }
+
+  @Test
+  public void store_report_in_cache() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setBaseDir(tmp.getRoot());
+    fileSystem.setWorkDir(workingDir);
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    final File reportFile = new File(workingDir, "resharper-report.xml");
+    when(cache.isEnabled()).thenReturn(true);
+    when(cache.sourceDigest(any(File.class), any(Collection.class))).thenReturn("sources");
+    when(cache.key(anyString(), anyString(), any(File.class), any(File.class), anyString())).thenReturn("abc");
+    doAnswer(new Answer<Void>() {
+
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        Files.write("<Report><Issues><Project Name=\"MyLibrary\"><Issue TypeId=\"foo\" Message=\"Cached\" /></Project></Issues></Report>",
+          reportFile, Charsets.UTF_8);
+        return null;
+      }
+
+    }).when(executor).execute(anyString(), anyString(), anyString(), any(File.class), eq(reportFile), anyInt());
+    mockReport(reportFile, ImmutableList.of(
+      new ReSharperIssue(100, "foo", null, null, "Parsed"),
+      new ReSharperIssue(200, "bar", null, null, "Inactive")));
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    File snapshotFile = new File(workingDir, "resharper-report.issues");
+    verify(cache).fetch("abc", snapshotFile);
+    verify(cache).store("abc", snapshotFile);
+    assertThat(ReSharperReportFormat.detect(snapshotFile)).isEqualTo(ReSharperReportFormat.SNAPSHOT);
+    List<ReSharperIssue> cachedIssues = Lists.newArrayList();
+    ReSharperIssueSnapshot.read(snapshotFile, new ReSharperIssueSink.Collector(cachedIssues));
+    // Written from the issues parsed by the sensor, including those it filtered out, rather than from a second parse of the report
+    assertThat(cachedIssues).hasSize(2);
+    assertThat(cachedIssues.get(0).message()).isEqualTo("Parsed");
+    assertThat(cachedIssues.get(1).message()).isEqualTo("Inactive");
+    verify(parser).parse(eq(reportFile), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+    assertThat(workingDir.list(new PrefixFileFilter("resharper-report.issues"))).containsOnly("resharper-report.issues");
+  }
+
+  @Test
+  public void hash_the_sources_once_per_solution() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setBaseDir(tmp.getRoot());
+    fileSystem.setWorkDir(workingDir);
+
+    Settings settings = mockSettings("MyLibrary,MyApplication", "CSharpPlayground.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.RULE_GROUPS_PROPERTY_KEY, 2);
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper", "RedundantCast", "CSharpWarnings::CS0618"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    when(cache.isEnabled()).thenReturn(true);
+    when(cache.sourceDigest(any(File.class), any(Collection.class))).thenReturn("sources");
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<Collection> excluded = ArgumentCaptor.forClass(Collection.class);
+    verify(cache, times(1)).sourceDigest(eq(new File(tmp.getRoot(), "CSharpPlayground.sln")), excluded.capture());
+    assertThat(excluded.getValue()).contains(workingDir);
+    verify(cache, times(4)).key(anyString(), anyString(), any(File.class), any(File.class), eq("sources"));
+  }
+
+  @Test
+  public void dispatch_projects_to_remote_workers() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+
+    Settings settings = mockSettings("MyLibrary,MyApplication", "CSharpPlayground.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.WORKER_URLS_PROPERTY_KEY, "http://worker1:8080,http://worker2:8080");
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<List> shards = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<List> workers = ArgumentCaptor.forClass(List.class);
+    verify(dispatcher).dispatch(shards.capture(), workers.capture(), eq(10));
+    verifyZeroInteractions(executor);
+
+    assertThat(shards.getValue()).hasSize(2);
+    ReSharperShard shard = (ReSharperShard) shards.getValue().get(1);
+    assertThat(shard.project()).isEqualTo("MyApplication");
+    assertThat(shard.solutionFile()).isEqualTo("CSharpPlayground.sln");
+    assertThat(shard.reportFile()).isEqualTo(new File(workingDir, "resharper-report-2.xml"));
+    assertThat(workers.getValue().toString()).isEqualTo("[worker http://worker1:8080, worker http://worker2:8080]");
+
+    verify(parser).parse(eq(new File(workingDir, "resharper-report-1.xml")), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+    verify(parser).parse(eq(new File(workingDir, "resharper-report-2.xml")), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+  }
+
+  @Test
+  public void run_several_solutions_concurrently_on_local_workers() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+
+    Settings settings = mockSettings("Common,Backend.sln:Service", "Backend.sln,web/Frontend.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.MAX_CONCURRENT_RUNS_PROPERTY_KEY, 4);
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<List> shards = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<List> workers = ArgumentCaptor.forClass(List.class);
+    verify(dispatcher).dispatch(shards.capture(), workers.capture(), eq(10));
+    verifyZeroInteractions(executor);
+
+    assertThat(shards.getValue().toString()).isEqualTo(
+      "[project \"Common\" of Backend.sln, project \"Service\" of Backend.sln, project \"Common\" of web/Frontend.sln]");
+    assertThat(workers.getValue().toString()).isEqualTo("[local worker 1, local worker 2, local worker 3]");
+    for (int i = 1; i <= 3; i++) {
+      verify(parser).parse(eq(new File(workingDir, "resharper-report-" + i + ".xml")), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+    }
+  }
+
+  @Test
+  public void run_several_solutions_sequentially_by_default() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+
+    SensorContext context = mockSensorContext(mockSettings("Common", "Backend.sln,Frontend.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    verifyZeroInteractions(dispatcher);
+    verify(executor).execute(eq("inspectcode.exe"), eq("Common"), eq("Backend.sln"), any(File.class), eq(new File(workingDir, "resharper-report-1.xml")), eq(10));
+    verify(executor).execute(eq("inspectcode.exe"), eq("Common"), eq("Frontend.sln"), any(File.class), eq(new File(workingDir, "resharper-report-2.xml")), eq(10));
+  }
+
+  @Test
+  public void split_rules_into_groups_inspected_concurrently() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+
+    Settings settings = mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.RULE_GROUPS_PROPERTY_KEY, 2);
+    settings.setProperty(ReSharperPlugin.MAX_CONCURRENT_RUNS_PROPERTY_KEY, 2);
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper",
+      "CSharpWarnings::CS0618", "RedundantCast", "CSharpWarnings::CS0649", "RedundantUsingDirective", "CSharpWarnings::CS1030", "RedundantThisQualifier"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    mockReport(new File(workingDir, "resharper-report-1.xml"), ImmutableList.of(new ReSharperIssue(1, "CSharpWarnings::CS0618", null, null, "Obsolete")));
+    mockReport(new File(workingDir, "resharper-report-2.xml"), ImmutableList.of(new ReSharperIssue(1, "RedundantCast", null, null, "Redundant cast")));
+
+    ReSharperSensor sensor = sensor(new ReSharperConfiguration("foo", "foo-resharper"));
+    sensor.execute(context);
+
+    verify(writer).writeExclusive(ImmutableList.of("CSharpWarnings::CS0618", "CSharpWarnings::CS0649", "CSharpWarnings::CS1030"),
+      new File(workingDir, "resharper-sonarqube-1.DotSettings"));
+    verify(writer).writeExclusive(ImmutableList.of("RedundantCast", "RedundantThisQualifier", "RedundantUsingDirective"),
+      new File(workingDir, "resharper-sonarqube-2.DotSettings"));
+
+    ArgumentCaptor<List> shards = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<List> workers = ArgumentCaptor.forClass(List.class);
+    verify(dispatcher).dispatch(shards.capture(), workers.capture(), eq(10));
+    assertThat(shards.getValue().toString()).isEqualTo(
+      "[project \"MyLibrary\" of CSharpPlayground.sln, rule group 1, project \"MyLibrary\" of CSharpPlayground.sln, rule group 2]");
+    assertThat(workers.getValue().toString()).isEqualTo("[local worker 1, local worker 2]");
+    for (int i = 1; i <= 2; i++) {
+      verify(parser).parse(eq(new File(workingDir, "resharper-report-" + i + ".xml")), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+    }
+  }
+
+  @Test
+  public void rule_groups() {
+    List<String> ruleKeys = ImmutableList.of("RedundantCast", "CSharpWarnings::CS0618", "RedundantUsingDirective", "CSharpWarnings::CS0649",
+      "RedundantThisQualifier", "CSharpWarnings::CS1030", "AccessToDisposedClosure", "UnusedVariable");
+
+    assertThat(ReSharperInspection.ruleGroups(ruleKeys, 1)).containsExactly(ruleKeys);
+    assertThat(ReSharperInspection.ruleGroups(ruleKeys, 0)).containsExactly(ruleKeys);
+    assertThat(ReSharperInspection.ruleGroups(ruleKeys, 2)).containsExactly(
+      ImmutableList.of("AccessToDisposedClosure", "CSharpWarnings::CS0618", "CSharpWarnings::CS0649", "CSharpWarnings::CS1030", "UnusedVariable"),
+      ImmutableList.of("RedundantCast", "RedundantThisQualifier", "RedundantUsingDirective"));
+    assertThat(ReSharperInspection.ruleGroups(Lists.reverse(ruleKeys), 2)).isEqualTo(ReSharperInspection.ruleGroups(ruleKeys, 2));
+
+    // Categories larger than a group are split
+    List<List<String>> groups = ReSharperInspection.ruleGroups(ruleKeys, 4);
+    assertThat(groups).hasSize(4);
+    for (List<String> group : groups) {
+      assertThat(group).hasSize(2);
+    }
+
+    assertThat(ReSharperInspection.ruleGroups(ImmutableList.of("RedundantCast", "UnusedVariable"), 4)).containsExactly(
+      ImmutableList.of("RedundantCast"), ImmutableList.of("UnusedVariable"));
+  }
+
+  @Test
+  public void fail_on_project_prefixed_by_unknown_solution() throws Exception {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("is prefixed by \"Other.sln\", which is not the file name of any solution");
+
+    ReSharperInspection.shards(mockSettings("Other.sln:Common", "Backend.sln", null), new File("resharper.DotSettings"), tmp.getRoot());
+  }
+
+  @Test
+  public void fail_on_solution_without_project() throws Exception {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("No project of the property \"sonar.resharper.projectName\" applies to the solution \"Frontend.sln\"");
+
+    ReSharperInspection.shards(mockSettings("Backend.sln:Common", "Backend.sln,Frontend.sln", null), new File("resharper.DotSettings"), tmp.getRoot());
+  }
+
+  @Test
+  public void dispatch_longest_projects_first() throws Exception {
+    File workingDir = tmp.newFolder("working-dir");
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(workingDir);
+    File historyFile = new File(tmp.getRoot(), "resharper-history.properties");
+
+    Settings settings = mockSettings("MyLibrary,MyApplication", "CSharpPlayground.sln", "inspectcode.exe");
+    settings.setProperty(ReSharperPlugin.WORKER_URLS_PROPERTY_KEY, "http://worker1:8080");
+    settings.setProperty(ReSharperPlugin.HISTORY_PATH_PROPERTY_KEY, historyFile.getAbsolutePath());
+    SensorContext context = mockSensorContext(settings);
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+    mockReport(new File(workingDir, "resharper-report-2.xml"), ImmutableList.of(new ReSharperIssue(1, "foo", null, null, "Issue")));
+    when(dispatcher.dispatch(any(List.class), any(List.class), eq(10))).thenAnswer(new Answer<Map<ReSharperShard, Long>>() {
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public Map<ReSharperShard, Long> answer(InvocationOnMock invocation) throws Throwable {
+        Map<ReSharperShard, Long> durations = Maps.newHashMap();
+        for (ReSharperShard shard : (List<ReSharperShard>) invocation.getArguments()[0]) {
+          durations.put(shard, "MyApplication".equals(shard.project()) ? 5000L : 1000L);
+        }
+        return durations;
+      }
+
+    });
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    ArgumentCaptor<List> shards = ArgumentCaptor.forClass(List.class);
+    verify(dispatcher, times(2)).dispatch(shards.capture(), any(List.class), eq(10));
+    assertThat(((ReSharperShard) shards.getAllValues().get(0).get(0)).project()).isEqualTo("MyLibrary");
+    assertThat(((ReSharperShard) shards.getAllValues().get(1).get(0)).project()).isEqualTo("MyApplication");
+
+    ReSharperShardHistory history = ReSharperShardHistory.load(historyFile);
+    ReSharperShard application = (ReSharperShard) shards.getValue().get(0);
+    assertThat(history.estimatedDurationMillis(application)).isEqualTo(5000L);
+    assertThat(history.issues(application)).isEqualTo(1L);
+  }
+
+  @Test
+  public void wait_for_early_started_run() throws Exception {
+    DefaultFileSystem fileSystem = new DefaultFileSystem();
+    fileSystem.setWorkDir(tmp.newFolder("working-dir"));
+
+    SensorContext context = mockSensorContext(mockSettings("MyLibrary", "CSharpPlayground.sln", "inspectcode.exe"));
+    when(context.activeRules()).thenReturn(mockActiveRules("foo-resharper"));
+    when(context.fileSystem()).thenReturn(fileSystem);
+
+    File reportFile = tmp.newFile("resharper-report.xml");
+    when(launcher.awaitResult()).thenReturn(
+      new ReSharperInspection.Result(ImmutableList.of(reportFile), ImmutableMap.<ReSharperShard, String>of(), cache, ReSharperShardHistory.load(null),
+        ImmutableMap.<File, ReSharperSolution>of()));
+
+    sensor(new ReSharperConfiguration("foo", "foo-resharper")).execute(context);
+
+    verifyZeroInteractions(executor, writer);
+    verify(parser).parse(eq(reportFile), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+  }
+
   @Test
   public void check_project_name_property() {
     thrown.expectMessage(ReSharperPlugin.PROJECT_NAME_PROPERTY_KEY);
     thrown.expect(IllegalStateException.class);
 
-    new ReSharperSensor(new ReSharperConfiguration("", ""), executor, parser, writer).execute(mockSensorContext(mockSettings(null, "dummy.sln", null)));
+    sensor(new ReSharperConfiguration("", "")).execute(mockSensorContext(mockSettings(null, "dummy.sln", null)));
   }
 
   @Test
@@ -150,7 +880,11 @@ public class ReSharperSensorTest {
     thrown.expect(IllegalStateException.class);
     thrown.expectMessage(ReSharperPlugin.SOLUTION_FILE_PROPERTY_KEY);
 
-    new ReSharperSensor(new ReSharperConfiguration("", ""), executor, parser, writer).execute(mockSensorContext(mockSettings("Dummy Project", null, null)));
+    sensor(new ReSharperConfiguration("", "")).execute(mockSensorContext(mockSettings("Dummy Project", null, null)));
+  }
+
+  private ReSharperSensor sensor(ReSharperConfiguration reSharperConf) {
+    return new ReSharperSensor(reSharperConf, executor, parser, writer, cache, dispatcher, launcher);
   }
 
   private static ActiveRules mockActiveRules(String repository, String... activeRuleKeys) {
@@ -172,6 +906,24 @@ public class ReSharperSensorTest {
     return context;
   }
 
+  private void mockReport(File reportFile, final List<ReSharperIssue> issues) {
+    doAnswer(new Answer<Void>() {
+
+      @SuppressWarnings("unchecked")
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        ReSharperIssueFilter filter = (ReSharperIssueFilter) invocation.getArguments()[2];
+        for (ReSharperIssue issue : issues) {
+          if (filter.accept(issue.ruleKey(), issue.filePath())) {
+            ((ReSharperIssueSink) invocation.getArguments()[1]).accept(issue);
+          }
+        }
+        return null;
+      }
+
+    }).when(parser).parse(eq(reportFile), any(ReSharperIssueSink.class), any(ReSharperIssueFilter.class));
+  }
+
   private static Settings mockSettings(@Nullable String projectName, @Nullable String solutionFile, @Nullable String inspectcodePath) {
     Settings settings = new Settings();
 
@@ -186,6 +938,7 @@ public class ReSharperSensorTest {
     }
 
     settings.setProperty(ReSharperPlugin.TIMEOUT_MINUTES_PROPERTY_KEY, "10");
+    settings.setProperty(ReSharperPlugin.ISSUE_BUFFER_SIZE_PROPERTY_KEY, "64");
 
     return settings;
   }
@@ -0,0 +1,118 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperShardDispatcherTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private final ReSharperShardDispatcher dispatcher = new ReSharperShardDispatcher();
+
+  @Test
+  public void every_shard_is_inspected_once() {
+    FakeWorker worker1 = new FakeWorker(false);
+    FakeWorker worker2 = new FakeWorker(false);
+
+    List<ReSharperShard> shards = shards("A", "B", "C", "D", "E");
+    Map<ReSharperShard, Long> durations = dispatcher.dispatch(shards, ImmutableList.of(worker1, worker2), 10);
+
+    List<String> inspected = Lists.newArrayList(worker1.inspected);
+    inspected.addAll(worker2.inspected);
+    assertThat(inspected).hasSize(5).containsOnly("A", "B", "C", "D", "E");
+    assertThat(durations.keySet()).containsOnly(shards.toArray());
+  }
+
+  @Test
+  public void shards_are_assigned_in_the_given_order() {
+    FakeWorker worker = new FakeWorker(false);
+
+    dispatcher.dispatch(shards("C", "A", "B"), ImmutableList.of(worker), 10);
+
+    assertThat(worker.inspected).containsExactly("C", "A", "B");
+  }
+
+  @Test
+  public void failed_shard_is_retried_on_another_worker() {
+    FakeWorker failing = new FakeWorker(true);
+    FakeWorker worker = new FakeWorker(false);
+
+    dispatcher.dispatch(shards("A", "B", "C"), ImmutableList.of(failing, worker), 10);
+
+    assertThat(worker.inspected).hasSize(3).containsOnly("A", "B", "C");
+  }
+
+  @Test
+  public void fail_when_a_shard_failed_on_every_worker() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("ReSharper failed to inspect the project \"A\" of MySolution.sln on every worker");
+
+    dispatcher.dispatch(shards("A"), ImmutableList.of(new FakeWorker(true), new FakeWorker(true)), 10);
+  }
+
+  @Test
+  public void at_least_one_worker() {
+    thrown.expect(IllegalArgumentException.class);
+
+    dispatcher.dispatch(shards("A"), Collections.<ReSharperWorker>emptyList(), 10);
+  }
+
+  private static List<ReSharperShard> shards(String... projects) {
+    ImmutableList.Builder<ReSharperShard> builder = ImmutableList.builder();
+    for (String project : projects) {
+      builder.add(new ReSharperShard("MySolution.sln", project, new File("resharper-sonarqube.DotSettings"), new File(project + ".xml")));
+    }
+    return builder.build();
+  }
+
+  private static class FakeWorker implements ReSharperWorker {
+
+    private final boolean failing;
+    private final List<String> inspected = Collections.synchronizedList(Lists.<String>newArrayList());
+
+    public FakeWorker(boolean failing) {
+      this.failing = failing;
+    }
+
+    @Override
+    public void inspect(ReSharperShard shard, int timeoutMinutes) throws IOException {
+      if (failing) {
+        throw new IOException("inspectcode crashed");
+      }
+      inspected.add(shard.project());
+    }
+
+  }
+
+}
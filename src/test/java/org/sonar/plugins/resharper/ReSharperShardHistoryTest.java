@@ -0,0 +1,139 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperShardHistoryTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final ReSharperShard a = shard("A");
+  private final ReSharperShard b = shard("B");
+  private final ReSharperShard c = shard("C");
+
+  @Test
+  public void record_and_reload() throws Exception {
+    File file = new File(tmp.getRoot(), "history/resharper-history.properties");
+    ReSharperShardHistory history = ReSharperShardHistory.load(file);
+    assertThat(history.estimatedDurationMillis(a)).isNull();
+    assertThat(history.issues(a)).isNull();
+
+    history.recordDuration(a, 1000);
+    history.recordIssues(a, 42);
+    history.save();
+
+    history = ReSharperShardHistory.load(file);
+    assertThat(history.estimatedDurationMillis(a)).isEqualTo(1000L);
+    assertThat(history.issues(a)).isEqualTo(42L);
+    assertThat(history.estimatedDurationMillis(b)).isNull();
+    assertThat(file.getParentFile().list()).containsOnly(file.getName());
+  }
+
+  @Test
+  public void saving_failures_do_not_fail_the_analysis() throws Exception {
+    File file = new File(tmp.newFile("not-a-directory"), "resharper-history.properties");
+    ReSharperShardHistory history = ReSharperShardHistory.load(file);
+    history.recordDuration(a, 1000);
+    history.save();
+
+    assertThat(file).doesNotExist();
+  }
+
+  @Test
+  public void durations_are_averaged() {
+    ReSharperShardHistory history = ReSharperShardHistory.load(null);
+    history.recordDuration(a, 1000);
+    history.recordDuration(a, 3000);
+    assertThat(history.estimatedDurationMillis(a)).isEqualTo(2000L);
+    history.recordDuration(a, 4000);
+    assertThat(history.estimatedDurationMillis(a)).isEqualTo(3000L);
+  }
+
+  @Test
+  public void longest_first_and_unknown_first() {
+    ReSharperShardHistory history = ReSharperShardHistory.load(null);
+    ReSharperShard d = shard("D");
+    history.recordDuration(a, 1000);
+    history.recordDuration(b, 5000);
+    history.recordDuration(d, 1000);
+
+    assertThat(history.longestFirst(ImmutableList.of(a, b, c, d))).containsExactly(c, b, a, d);
+  }
+
+  @Test
+  public void most_issues_first_among_equal_durations() {
+    ReSharperShardHistory history = ReSharperShardHistory.load(null);
+    ReSharperShard d = shard("D");
+    history.recordDuration(a, 1000);
+    history.recordIssues(a, 10);
+    history.recordDuration(b, 1000);
+    history.recordIssues(b, 500);
+    history.recordIssues(c, 3);
+    history.recordIssues(d, 7);
+
+    assertThat(history.longestFirst(ImmutableList.of(a, b, c, d))).containsExactly(d, c, b, a);
+  }
+
+  @Test
+  public void rule_groups_have_their_own_history() {
+    ReSharperShardHistory history = ReSharperShardHistory.load(null);
+    ReSharperShard group1 = new ReSharperShard("MySolution.sln", "A", new File("resharper-sonarqube-1.DotSettings"), new File("A-1.xml"), 1);
+    ReSharperShard group2 = new ReSharperShard("MySolution.sln", "A", new File("resharper-sonarqube-2.DotSettings"), new File("A-2.xml"), 2);
+    history.recordDuration(a, 1000);
+    history.recordDuration(group1, 2000);
+
+    assertThat(history.estimatedDurationMillis(a)).isEqualTo(1000L);
+    assertThat(history.estimatedDurationMillis(group1)).isEqualTo(2000L);
+    assertThat(history.estimatedDurationMillis(group2)).isNull();
+  }
+
+  @Test
+  public void nothing_is_saved_without_file() {
+    ReSharperShardHistory history = ReSharperShardHistory.load(null);
+    history.recordDuration(a, 1000);
+    history.save();
+  }
+
+  @Test
+  public void unreadable_values_are_ignored() throws Exception {
+    File file = tmp.newFile();
+    Files.write("MySolution.sln|A.durationMillis=abc\nMySolution.sln|B.durationMillis=10\n", file, Charsets.ISO_8859_1);
+
+    ReSharperShardHistory history = ReSharperShardHistory.load(file);
+    assertThat(history.estimatedDurationMillis(a)).isNull();
+    assertThat(history.estimatedDurationMillis(b)).isEqualTo(10L);
+  }
+
+  private static ReSharperShard shard(String project) {
+    return new ReSharperShard("MySolution.sln", project, new File("resharper-sonarqube.DotSettings"), new File(project + ".xml"));
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.PrefixFileFilter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+public class ReSharperSolutionTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final File solutionDir = new File("src/test/resources/ReSharperSolutionTest");
+
+  @Test
+  public void projects_and_compile_items() throws Exception {
+    ReSharperSolution solution = ReSharperSolution.load(new File(solutionDir, "MySolution.sln"), tmp.newFolder());
+
+    assertThat(solution.projects()).hasSize(2);
+    ReSharperSolution.Project project = solution.project("mylibrary");
+    assertThat(project.name()).isEqualTo("MyLibrary");
+    assertThat(project.path()).isEqualTo("MyLibrary/MyLibrary.csproj");
+    assertThat(project.compileItems()).containsExactly("MyLibrary/Class1.cs", "MyLibrary/Properties/AssemblyInfo.cs", "MyLibrary/../Shared/SharedCode.cs");
+
+    assertThat(solution.project("Missing").compileItems()).isEmpty();
+    assertThat(solution.project("Solution Items")).isNull();
+  }
+
+  @Test
+  public void resolve_report_paths() throws Exception {
+    ReSharperSolution solution = ReSharperSolution.load(new File(solutionDir, "MySolution.sln"), tmp.newFolder());
+
+    assertThat(solution.resolve("mylibrary\\class1.cs")).isEqualTo(new File(solutionDir, "MyLibrary/Class1.cs").getAbsolutePath());
+    assertThat(solution.resolve("Shared\\SharedCode.cs")).isEqualTo(new File(solutionDir, "Shared/SharedCode.cs").getAbsolutePath());
+    assertThat(solution.resolve("MyLibrary\\Generated\\Foo.cs")).isEqualTo(new File(solutionDir, "MyLibrary/Generated/Foo.cs").getAbsolutePath());
+  }
+
+  @Test
+  public void model_is_cached_by_content() throws Exception {
+    File dir = tmp.newFolder("solution");
+    FileUtils.copyDirectory(solutionDir, dir);
+    File cacheDir = tmp.newFolder("cache");
+
+    ReSharperSolution.load(new File(dir, "MySolution.sln"), cacheDir);
+    assertThat(cacheDir.list()).hasSize(1);
+
+    ReSharperSolution cached = ReSharperSolution.load(new File(dir, "MySolution.sln"), cacheDir);
+    assertThat(cacheDir.list()).hasSize(1);
+    assertThat(cached.project("MyLibrary").compileItems()).hasSize(3);
+
+    File projectFile = new File(dir, "MyLibrary/MyLibrary.csproj");
+    Files.write(Files.toString(projectFile, Charsets.UTF_8).replace("<Compile Include=\"Class1.cs\" />", ""), projectFile, Charsets.UTF_8);
+    ReSharperSolution changed = ReSharperSolution.load(new File(dir, "MySolution.sln"), cacheDir);
+    assertThat(cacheDir.list()).hasSize(1);
+    assertThat(changed.project("MyLibrary").compileItems()).hasSize(2);
+  }
+
+  @Test
+  public void only_the_latest_model_of_each_solution_is_kept() throws Exception {
+    File dir = tmp.newFolder("solution");
+    FileUtils.copyDirectory(solutionDir, dir);
+    FileUtils.copyFile(new File(dir, "MySolution.sln"), new File(dir, "MySolution-Web.sln"));
+    File cacheDir = tmp.newFolder("cache");
+
+    ReSharperSolution.load(new File(dir, "MySolution-Web.sln"), cacheDir);
+    ReSharperSolution.load(new File(dir, "MySolution.sln"), cacheDir);
+    File projectFile = new File(dir, "MyLibrary/MyLibrary.csproj");
+    Files.write(Files.toString(projectFile, Charsets.UTF_8).replace("<Compile Include=\"Class1.cs\" />", ""), projectFile, Charsets.UTF_8);
+    ReSharperSolution.load(new File(dir, "MySolution.sln"), cacheDir);
+
+    assertThat(cacheDir.list()).hasSize(2);
+    assertThat(cacheDir.list(new PrefixFileFilter("resharper-solution-MySolution-Web-"))).hasSize(1);
+  }
+
+  @Test
+  public void corrupted_cache_is_ignored() throws Exception {
+    File cacheDir = tmp.newFolder("cache");
+    ReSharperSolution.load(new File(solutionDir, "MySolution.sln"), cacheDir);
+    Files.write("corrupted", cacheDir.listFiles()[0], Charsets.UTF_8);
+
+    assertThat(ReSharperSolution.load(new File(solutionDir, "MySolution.sln"), cacheDir).projects()).hasSize(2);
+  }
+
+  @Test
+  public void missing_solution() throws Exception {
+    assertThat(ReSharperSolution.load(new File(solutionDir, "Missing.sln"), tmp.newFolder())).isNull();
+  }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.PrefixFileFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.File;
+import java.util.List;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class ReSharperWatcherTest {
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private final ReSharperExecutor executor = mock(ReSharperExecutor.class);
+  private final List<String> inspectedProjects = Lists.newArrayList();
+  private File solutionDir;
+  private File workDir;
+  private ReSharperWatcher watcher;
+
+  @Before
+  public void prepare() throws Exception {
+    solutionDir = tmp.newFolder("solution");
+    FileUtils.copyDirectory(new File("src/test/resources/ReSharperSolutionTest"), solutionDir);
+
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        String project = (String) invocation.getArguments()[1];
+        inspectedProjects.add(project);
+        String firstLine = Files.readFirstLine(new File(solutionDir, "MyLibrary/Class1.cs"), Charsets.UTF_8);
+        String issue = "MyLibrary".equals(project) ? "<Issue TypeId=\"Rule\" File=\"MyLibrary\\Class1.cs\" Offset=\"0-5\" Line=\"1\" Message=\"" + firstLine + "\" />" : "";
+        Files.write("<Report><Issues><Project Name=\"" + project + "\">" + issue + "</Project></Issues></Report>", (File) invocation.getArguments()[4], Charsets.UTF_8);
+        return null;
+      }
+    }).when(executor).execute(anyString(), anyString(), anyString(), any(File.class), any(File.class), anyInt());
+
+    workDir = tmp.newFolder("work");
+    watcher = new ReSharperWatcher(executor, new ReSharperReportParser(), mock(ReSharperDotSettingsWriter.class), "inspectcode.exe",
+      new File(solutionDir, "MySolution.sln"), ImmutableList.of("Rule"), workDir, 10, 500);
+  }
+
+  @After
+  public void close() {
+    watcher.close();
+  }
+
+  @Test
+  public void inspect_every_project_on_start() {
+    watcher.start(Long.MAX_VALUE / 2);
+
+    assertThat(inspectedProjects).containsOnly("MyLibrary", "Missing");
+    List<ReSharperIssue> issues = watcher.index().issues(new File(solutionDir, "MyLibrary/Class1.cs").getAbsolutePath());
+    assertThat(issues).hasSize(1);
+    assertThat(issues.get(0).message()).isEqualTo("class Class1 {}");
+    assertThat(FileUtils.listFiles(workDir, new PrefixFileFilter("resharper-watch-report"), null)).isEmpty();
+  }
+
+  @Test
+  public void debounce_changes_and_inspect_only_the_affected_project() throws Exception {
+    watcher.start(Long.MAX_VALUE / 2);
+    inspectedProjects.clear();
+
+    File class1 = new File(solutionDir, "MyLibrary/Class1.cs");
+    String path = class1.getAbsolutePath();
+    Files.write("class Changed {}\n", class1, Charsets.UTF_8);
+    assertThat(class1.setLastModified(class1.lastModified() + 10000)).isTrue();
+
+    watcher.poll(1000);
+    watcher.poll(1200);
+    assertThat(inspectedProjects).isEmpty();
+    assertThat(watcher.index().issues(path).get(0).message()).isEqualTo("class Class1 {}");
+
+    watcher.poll(1600);
+    assertThat(inspectedProjects).containsExactly("MyLibrary");
+    assertThat(watcher.index().issues(path)).hasSize(1);
+    assertThat(watcher.index().issues(path).get(0).message()).isEqualTo("class Changed {}");
+
+    watcher.poll(5000);
+    assertThat(inspectedProjects).hasSize(1);
+  }
+
+  @Test
+  public void reload_the_model_when_a_project_file_changes() throws Exception {
+    watcher.start(Long.MAX_VALUE / 2);
+    inspectedProjects.clear();
+
+    File projectFile = new File(solutionDir, "MyLibrary/MyLibrary.csproj");
+    Files.write(Files.toString(projectFile, Charsets.UTF_8).replace("<Compile Include=\"Class1.cs\" />", "<Compile Include=\"Class1.cs\" /><Compile Include=\"Class2.cs\" />"),
+      projectFile, Charsets.UTF_8);
+    assertThat(projectFile.setLastModified(projectFile.lastModified() + 10000)).isTrue();
+
+    watcher.poll(1000);
+    watcher.poll(2000);
+    assertThat(inspectedProjects).containsExactly("MyLibrary");
+
+    File class2 = new File(solutionDir, "MyLibrary/Class2.cs");
+    Files.write("class Class2 {}\n", class2, Charsets.UTF_8);
+    watcher.poll(3000);
+    watcher.poll(4000);
+    assertThat(inspectedProjects).containsExactly("MyLibrary", "MyLibrary");
+  }
+
+  @Test
+  public void drop_the_issues_of_projects_removed_from_the_solution() throws Exception {
+    watcher.start(Long.MAX_VALUE / 2);
+    String path = new File(solutionDir, "MyLibrary/Class1.cs").getAbsolutePath();
+    assertThat(watcher.index().issues(path)).hasSize(1);
+    inspectedProjects.clear();
+
+    File solutionFile = new File(solutionDir, "MySolution.sln");
+    String solution = Files.toString(solutionFile, Charsets.UTF_8);
+    Files.write(solution.substring(0, solution.indexOf("Project(")) + solution.substring(solution.indexOf("EndProject") + "EndProject".length()),
+      solutionFile, Charsets.UTF_8);
+    assertThat(solutionFile.setLastModified(solutionFile.lastModified() + 10000)).isTrue();
+
+    watcher.poll(1000);
+    watcher.poll(2000);
+    assertThat(inspectedProjects).containsExactly("Missing");
+    assertThat(watcher.index().issues(path)).isEmpty();
+    assertThat(watcher.index().size()).isEqualTo(0);
+  }
+
+}
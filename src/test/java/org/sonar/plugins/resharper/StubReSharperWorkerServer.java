@@ -0,0 +1,89 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Stand-in for a worker node implementing the protocol documented in {@link ReSharperRemoteWorker}:
+ * it answers every inspection with the same report, or with an error.
+ */
+public class StubReSharperWorkerServer {
+
+  private final HttpServer server;
+  private final List<String> queries = Collections.synchronizedList(Lists.<String>newArrayList());
+  private volatile byte[] report = new byte[0];
+  private volatile int status = 200;
+
+  public StubReSharperWorkerServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/inspect", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        queries.add(exchange.getRequestURI().getRawQuery());
+        ByteStreams.toByteArray(exchange.getRequestBody());
+        byte[] body = status == 200 ? report : "inspectcode crashed".getBytes(Charsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+        exchange.close();
+      }
+
+    });
+    server.start();
+  }
+
+  public StubReSharperWorkerServer answer(byte[] report) {
+    this.report = report;
+    this.status = 200;
+    return this;
+  }
+
+  public StubReSharperWorkerServer fail(int status) {
+    this.status = status;
+    return this;
+  }
+
+  public String url() {
+    return "http://localhost:" + server.getAddress().getPort();
+  }
+
+  public List<String> queries() {
+    return queries;
+  }
+
+  public void stop() {
+    server.stop(0);
+  }
+
+}
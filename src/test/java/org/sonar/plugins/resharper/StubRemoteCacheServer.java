@@ -0,0 +1,109 @@
+/*
+ * SonarQube ReSharper Plugin
+ * Copyright (C) 2014 SonarSource
+ * dev@sonar.codehaus.org
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02
+ */
+package org.sonar.plugins.resharper;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory implementation of the protocol documented in {@link ReSharperRemoteCacheClient}.
+ */
+public class StubRemoteCacheServer {
+
+  private final Map<String, byte[]> entries = Maps.newConcurrentMap();
+  private final HttpServer server;
+  private final AtomicInteger gets = new AtomicInteger();
+  private final AtomicInteger puts = new AtomicInteger();
+  private volatile int status;
+
+  public StubRemoteCacheServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/cache/", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String key = exchange.getRequestURI().getPath().substring("/cache/".length());
+        if ("PUT".equals(exchange.getRequestMethod())) {
+          puts.incrementAndGet();
+        }
+        if (status != 0) {
+          ByteStreams.toByteArray(exchange.getRequestBody());
+          exchange.sendResponseHeaders(status, 0);
+        } else if ("GET".equals(exchange.getRequestMethod())) {
+          gets.incrementAndGet();
+          byte[] entry = entries.get(key);
+          if (entry == null) {
+            exchange.sendResponseHeaders(404, 0);
+          } else {
+            exchange.sendResponseHeaders(200, entry.length);
+            OutputStream os = exchange.getResponseBody();
+            os.write(entry);
+          }
+        } else if ("PUT".equals(exchange.getRequestMethod())) {
+          entries.put(key, ByteStreams.toByteArray(exchange.getRequestBody()));
+          exchange.sendResponseHeaders(201, 0);
+        } else {
+          exchange.sendResponseHeaders(405, 0);
+        }
+        exchange.getResponseBody().close();
+        exchange.close();
+      }
+
+    });
+    server.start();
+  }
+
+  public String url() {
+    return "http://localhost:" + server.getAddress().getPort() + "/cache";
+  }
+
+  public Map<String, byte[]> entries() {
+    return entries;
+  }
+
+  public int gets() {
+    return gets.get();
+  }
+
+  public int puts() {
+    return puts.get();
+  }
+
+  /**
+   * Answers every request with the given status, or serves the entries again with 0.
+   */
+  public void respondWith(int status) {
+    this.status = status;
+  }
+
+  public void stop() {
+    server.stop(0);
+  }
+
+}
@@ -26,6 +26,7 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.config.Settings;
 import org.sonar.batch.mediumtest.BatchMediumTester;
 import org.sonar.batch.mediumtest.BatchMediumTester.TaskResult;
 import org.sonar.batch.protocol.input.ActiveRule;
@@ -56,7 +57,7 @@ public class ReSharperMediumTest {
   }
 
   private ReSharperExecutor mockedResharperExecutor() {
-    return new ReSharperExecutor() {
+    return new ReSharperExecutor(new Settings()) {
       public void execute(String executable, String project, String solutionFile, File rulesetFile, File reportFile, int timeout) {
         try {
           FileUtils.copyFile(new File(ReSharperMediumTest.class.getResource("/csharp-sample/valid.xml").toURI()), reportFile);
@@ -91,7 +92,7 @@ public class ReSharperMediumTest {
       .property("sonar.resharper.solutionFile", "Example.sln")
       .start();
 
-    assertThat(result.issues()).hasSize(2);
+    assertThat(result.issues()).hasSize(3);
   }
 
   private File baseDir() throws URISyntaxException {
@@ -0,0 +1 @@
+class Class1 {}
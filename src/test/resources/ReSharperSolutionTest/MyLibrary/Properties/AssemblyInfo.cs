@@ -0,0 +1 @@
+[assembly: System.CLSCompliant(true)]